@@ -0,0 +1,228 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+
+/**
+ * Base class for perfect hash dictionaries, implementing the {@link NavigableSet} operations in terms
+ * of hash codes. Since hash codes are ranks in the lexicographic order of sequences, these operations
+ * do not require iteration.
+ */
+abstract class AbstractPerfectHashDictionary extends DictionaryImpl implements PerfectHashDictionary {
+    private static final long serialVersionUID = 1L;
+
+    // The number of sequences that are traversed in lockstep by numbers().
+    private static final int NUMBERS_LANES = 8;
+
+    /**
+     * @see DictionaryImpl#DictionaryImpl(CompactIntArray, char[], CompactIntArray, java.util.BitSet, int)
+     */
+    protected AbstractPerfectHashDictionary(CompactIntArray stateOffsets, char[] transitionChars,
+                                            CompactIntArray transitionTo, BitSet finalStates, int nSeqs) {
+        super(stateOffsets, transitionChars, transitionTo, finalStates, nSeqs);
+    }
+
+    @Override
+    public void numbers(CharSequence[] seqs, int[] numbers) {
+        if (numbers.length < seqs.length)
+            throw new IllegalArgumentException(String.format("Output array is too short: %d < %d",
+                    numbers.length, seqs.length));
+
+        // Traversal state of the sequences that are walked in lockstep.
+        int[] lanes = new int[NUMBERS_LANES];
+        int[] states = new int[NUMBERS_LANES];
+        int[] nums = new int[NUMBERS_LANES];
+        int[] positions = new int[NUMBERS_LANES];
+
+        for (int from = 0; from < seqs.length; from += NUMBERS_LANES) {
+            int nActive = 0;
+            for (int i = from; i < Math.min(seqs.length, from + NUMBERS_LANES); ++i) {
+                lanes[nActive] = i;
+                states[nActive] = 0;
+                nums[nActive] = 1;
+                positions[nActive] = 0;
+                ++nActive;
+            }
+
+            // Advance every active sequence by one transition per round. Sequences that are completed
+            // are removed by moving the last active sequence into their lane.
+            while (nActive != 0) {
+                for (int lane = 0; lane < nActive; ) {
+                    CharSequence seq = seqs[lanes[lane]];
+                    int state = states[lane];
+
+                    if (positions[lane] == seq.length()) {
+                        numbers[lanes[lane]] = d_finalStates.get(state) ? nums[lane] : -1;
+                    } else {
+                        int trans = findTransition(state, seq.charAt(positions[lane]));
+                        if (trans == -1)
+                            numbers[lanes[lane]] = -1;
+                        else {
+                            nums[lane] += transitionNumberOffset(state, trans);
+                            states[lane] = d_transitionTo.get(trans);
+                            ++positions[lane];
+                            ++lane;
+                            continue;
+                        }
+                    }
+
+                    --nActive;
+                    lanes[lane] = lanes[nActive];
+                    states[lane] = states[nActive];
+                    nums[lane] = nums[nActive];
+                    positions[lane] = positions[nActive];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void allPrefixMatches(CharSequence text, int offset, PrefixMatchHandler handler) {
+        int num = 1;
+        int state = 0;
+
+        for (int i = offset; ; ++i) {
+            if (d_finalStates.get(state))
+                handler.match(i - offset, num);
+
+            if (i == text.length())
+                return;
+
+            int trans = findTransition(state, text.charAt(i));
+            if (trans == -1)
+                return;
+
+            num += transitionNumberOffset(state, trans);
+            state = d_transitionTo.get(trans);
+        }
+    }
+
+    @Override
+    public int longestPrefixMatchNumber(CharSequence text, int offset) {
+        int longest = -1;
+        int num = 1;
+        int state = 0;
+
+        for (int i = offset; ; ++i) {
+            if (d_finalStates.get(state))
+                longest = num;
+
+            if (i == text.length())
+                return longest;
+
+            int trans = findTransition(state, text.charAt(i));
+            if (trans == -1)
+                return longest;
+
+            num += transitionNumberOffset(state, trans);
+            state = d_transitionTo.get(trans);
+        }
+    }
+
+    @Override
+    public String ceiling(String s) {
+        return rangeSet().ceiling(s);
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    @Override
+    public Iterator<String> descendingIterator() {
+        return rangeSet().descendingIterator();
+    }
+
+    @Override
+    public NavigableSet<String> descendingSet() {
+        return rangeSet().descendingSet();
+    }
+
+    @Override
+    public String first() {
+        return rangeSet().first();
+    }
+
+    @Override
+    public String floor(String s) {
+        return rangeSet().floor(s);
+    }
+
+    @Override
+    public SortedSet<String> headSet(String toElement) {
+        return rangeSet().headSet(toElement);
+    }
+
+    @Override
+    public NavigableSet<String> headSet(String toElement, boolean inclusive) {
+        return rangeSet().headSet(toElement, inclusive);
+    }
+
+    @Override
+    public String higher(String s) {
+        return rangeSet().higher(s);
+    }
+
+    @Override
+    public String last() {
+        return rangeSet().last();
+    }
+
+    @Override
+    public String lower(String s) {
+        return rangeSet().lower(s);
+    }
+
+    @Override
+    public String pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement,
+                                       boolean toInclusive) {
+        return rangeSet().subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public SortedSet<String> subSet(String fromElement, String toElement) {
+        return rangeSet().subSet(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<String> tailSet(String fromElement) {
+        return rangeSet().tailSet(fromElement);
+    }
+
+    @Override
+    public NavigableSet<String> tailSet(String fromElement, boolean inclusive) {
+        return rangeSet().tailSet(fromElement, inclusive);
+    }
+
+    private NavigableSet<String> rangeSet() {
+        return new SequenceRangeSet(this, 1, d_nSeqs + 1, false);
+    }
+}
@@ -0,0 +1,252 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A scanner that finds all occurrences of the sequences of a dictionary in a text, in a single pass
+ * over the text, using the Aho-Corasick algorithm.
+ * <p/>
+ * Failure links are not well-defined on a minimized automaton, since a state can be reached through
+ * many different prefixes. The scanner therefore expands the prefix tree (trie) of the dictionary and
+ * stores the trie, the failure links, and the output links in {@link CompactIntArray} tables. The size
+ * of the scanner is proportional to the number of distinct prefixes in the dictionary.
+ */
+public class AhoCorasickScanner implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    // The trie uses the same representation as the dictionary automaton: the transitions of node n
+    // are in the range [d_nodeOffsets[n], d_nodeOffsets[n + 1]) of the transition table, ordered by
+    // character. Nodes are numbered in breadth-first order, the root is node 0.
+    private final CompactIntArray d_nodeOffsets;
+    private final char[] d_transitionChars;
+    private final CompactIntArray d_transitionTo;
+
+    // Per node: the node of the longest proper suffix that is in the trie, the node of the longest
+    // proper suffix that is a sequence in the dictionary (0 if there is none), the depth, and the
+    // hash code of the sequence (0 if the node does not correspond to a sequence).
+    private final CompactIntArray d_failure;
+    private final CompactIntArray d_output;
+    private final CompactIntArray d_depths;
+    private final CompactIntArray d_numbers;
+
+    /**
+     * Construct a scanner for the sequences in a dictionary. The empty sequence is never reported.
+     *
+     * @param dictionary The dictionary.
+     */
+    public AhoCorasickScanner(PerfectHashDictionary dictionary) {
+        // Expand the trie in breadth-first order. The queue is the list of nodes itself.
+        GrowableIntArray states = new GrowableIntArray();
+        GrowableIntArray numbers = new GrowableIntArray();
+        GrowableIntArray depths = new GrowableIntArray();
+        GrowableIntArray offsets = new GrowableIntArray();
+        GrowableIntArray transitionTo = new GrowableIntArray();
+        StringBuilder transitionChars = new StringBuilder();
+
+        states.add(dictionary.startState());
+        numbers.add(1);
+        depths.add(0);
+
+        for (int node = 0; node < states.size(); ++node) {
+            int state = states.get(node);
+            offsets.add(transitionChars.length());
+
+            int start = dictionary.transitionsStart(state);
+            int end = dictionary.transitionsEnd(state);
+
+            // Offsets are accumulated over the transitions, looking them up per transition is
+            // quadratic in the number of transitions for some dictionaries.
+            int numberOffset = start == end ? 0 : dictionary.transitionNumberOffset(state, start);
+            for (int trans = start; trans < end; ++trans) {
+                transitionChars.append(dictionary.transitionCharacter(trans));
+                transitionTo.add(states.size());
+
+                states.add(dictionary.transitionTarget(trans));
+                numbers.add(numbers.get(node) + numberOffset);
+                depths.add(depths.get(node) + 1);
+
+                if (trans + 1 < end)
+                    numberOffset += dictionary.transitionCardinality(state, trans);
+            }
+        }
+        offsets.add(transitionChars.length());
+
+        int nNodes = states.size();
+
+        d_nodeOffsets = offsets.toCompactIntArray();
+        d_transitionChars = transitionChars.toString().toCharArray();
+        d_transitionTo = transitionTo.toCompactIntArray();
+        d_depths = depths.toCompactIntArray();
+
+        d_numbers = new CompactIntArray(nNodes, CompactIntArray.width(dictionary.size()));
+        for (int node = 1; node < nNodes; ++node)
+            if (dictionary.isFinalState(states.get(node)))
+                d_numbers.set(node, numbers.get(node));
+
+        // Compute failure and output links in breadth-first order, so that the links of shorter
+        // prefixes are available.
+        d_failure = new CompactIntArray(nNodes, CompactIntArray.width(nNodes));
+        d_output = new CompactIntArray(nNodes, CompactIntArray.width(nNodes));
+        for (int node = 0; node < nNodes; ++node) {
+            for (int trans = d_nodeOffsets.get(node); trans < d_nodeOffsets.get(node + 1); ++trans) {
+                int child = d_transitionTo.get(trans);
+
+                int failure = 0;
+                if (node != 0) {
+                    char c = d_transitionChars[trans];
+                    int candidate = d_failure.get(node);
+                    int next;
+                    while ((next = next(candidate, c)) == -1 && candidate != 0)
+                        candidate = d_failure.get(candidate);
+
+                    failure = next == -1 ? 0 : next;
+                }
+
+                d_failure.set(child, failure);
+                d_output.set(child, d_numbers.get(failure) != 0 ? failure : d_output.get(failure));
+            }
+        }
+    }
+
+    /**
+     * Find the occurrences of the sequences of the dictionary in a text.
+     *
+     * @param text    The text.
+     * @param handler The handler that is called for every occurrence.
+     */
+    public void scan(CharSequence text, TextMatchHandler handler) {
+        int node = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            node = step(node, text.charAt(i));
+            report(node, i + 1, handler);
+        }
+    }
+
+    /**
+     * Find the occurrences of the sequences of the dictionary in the text that is read from a reader.
+     * The text is read in blocks, occurrences that span block boundaries are found.
+     *
+     * @param reader  The reader.
+     * @param handler The handler that is called for every occurrence.
+     * @throws IOException If the reader cannot be read.
+     */
+    public void scan(Reader reader, TextMatchHandler handler) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+
+        int node = 0;
+        long offset = 0;
+        int n;
+        while ((n = reader.read(buffer)) != -1) {
+            for (int i = 0; i < n; ++i) {
+                node = step(node, buffer[i]);
+                report(node, offset + i + 1, handler);
+            }
+
+            offset += n;
+        }
+    }
+
+    /**
+     * Follow a transition in the trie, falling back to failure links if the node has no transition
+     * for the character.
+     */
+    private int step(int node, char c) {
+        int next;
+        while ((next = next(node, c)) == -1 && node != 0)
+            node = d_failure.get(node);
+
+        return next == -1 ? 0 : next;
+    }
+
+    /**
+     * Report the sequences that end in a node: the sequence of the node and the sequences of its
+     * output links.
+     */
+    private void report(int node, long end, TextMatchHandler handler) {
+        if (d_numbers.get(node) == 0)
+            node = d_output.get(node);
+
+        while (node != 0) {
+            handler.match(end - d_depths.get(node), end, d_numbers.get(node));
+            node = d_output.get(node);
+        }
+    }
+
+    /**
+     * Get the child of a trie node for the given character.
+     *
+     * @return The child or <tt>-1</tt> if there is no such child.
+     */
+    private int next(int node, char c) {
+        int start = d_nodeOffsets.get(node);
+        int end = d_nodeOffsets.get(node + 1) - 1;
+
+        // Binary search
+        while (end >= start) {
+            int mid = start + ((end - start) / 2);
+
+            if (d_transitionChars[mid] > c)
+                end = mid - 1;
+            else if (d_transitionChars[mid] < c)
+                start = mid + 1;
+            else
+                return d_transitionTo.get(mid);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Growable array of integers, used during construction of the scanner.
+     */
+    private static class GrowableIntArray {
+        private int[] d_data = new int[16];
+        private int d_size = 0;
+
+        void add(int value) {
+            if (d_size == d_data.length)
+                d_data = Arrays.copyOf(d_data, d_data.length * 2);
+
+            d_data[d_size++] = value;
+        }
+
+        int get(int index) {
+            return d_data[index];
+        }
+
+        int size() {
+            return d_size;
+        }
+
+        CompactIntArray toCompactIntArray() {
+            int max = 0;
+            for (int i = 0; i < d_size; ++i)
+                max = Math.max(max, d_data[i]);
+
+            CompactIntArray array = new CompactIntArray(d_size, CompactIntArray.width(max));
+            for (int i = 0; i < d_size; ++i)
+                array.set(i, d_data[i]);
+
+            return array;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+import java.text.Normalizer;
+
+/**
+ * <p>
+ * A character folding maps characters to a canonical character of their equivalence class. For
+ * instance, {@link #CASE} maps characters to their lowercase form and {@link #DIACRITICS} strips
+ * diacritics. Foldings can be used for case- and diacritic-insensitive lookups in a {@link Dictionary}
+ * that stores the original forms, so that a second, folded dictionary is not necessary.
+ * </p>
+ * <p>
+ * The folding of every <tt>char</tt> is precomputed in a table when the folding is first used,
+ * so that folding a character is a single array lookup.
+ * </p>
+ */
+public abstract class CharacterFolding {
+    /**
+     * Case folding: characters are mapped to their lowercase form.
+     */
+    public static final CharacterFolding CASE = new CharacterFolding() {
+        @Override
+        protected char computeFold(char c) {
+            return Character.toLowerCase(c);
+        }
+    };
+
+    /**
+     * Diacritic folding: characters are mapped to their base character without diacritics.
+     */
+    public static final CharacterFolding DIACRITICS = new CharacterFolding() {
+        @Override
+        protected char computeFold(char c) {
+            return stripDiacritics(c);
+        }
+    };
+
+    /**
+     * Case and diacritic folding.
+     */
+    public static final CharacterFolding CASE_AND_DIACRITICS = new CharacterFolding() {
+        @Override
+        protected char computeFold(char c) {
+            return Character.toLowerCase(stripDiacritics(c));
+        }
+    };
+
+    private volatile char[] d_table;
+
+    /**
+     * Compute the folding of a character. This method is called once for every <tt>char</tt>
+     * to construct the folding table.
+     *
+     * @param c The character.
+     * @return The folded character.
+     */
+    protected abstract char computeFold(char c);
+
+    /**
+     * Fold a character.
+     *
+     * @param c The character.
+     * @return The folded character.
+     */
+    public final char fold(char c) {
+        return table()[c];
+    }
+
+    /**
+     * Fold a character sequence.
+     *
+     * @param seq The sequence.
+     * @return The folded sequence.
+     */
+    public final String fold(CharSequence seq) {
+        char[] table = table();
+
+        char[] folded = new char[seq.length()];
+        for (int i = 0; i < folded.length; ++i)
+            folded[i] = table[seq.charAt(i)];
+
+        return new String(folded);
+    }
+
+    private char[] table() {
+        char[] table = d_table;
+
+        // Constructing the table twice in a race is harmless, since the table is always the same.
+        if (table == null) {
+            table = new char[Character.MAX_VALUE + 1];
+            for (int c = 0; c <= Character.MAX_VALUE; ++c)
+                table[c] = computeFold((char) c);
+
+            d_table = table;
+        }
+
+        return table;
+    }
+
+    private static char stripDiacritics(char c) {
+        // Surrogates cannot be normalized in isolation.
+        if (Character.isSurrogate(c))
+            return c;
+
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        char base = decomposed.charAt(0);
+
+        // The character may be a combining mark itself.
+        if (Character.getType(base) == Character.NON_SPACING_MARK)
+            return c;
+
+        // Only strip combining marks. Some characters, such as Hangul syllables, decompose into
+        // several base characters and are kept as they are.
+        for (int i = 1; i < decomposed.length(); ++i)
+            if (Character.getType(decomposed.charAt(i)) != Character.NON_SPACING_MARK)
+                return c;
+
+        return base;
+    }
+}
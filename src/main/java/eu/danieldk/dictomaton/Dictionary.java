@@ -1,6 +1,8 @@
 package eu.danieldk.dictomaton;
 
 import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -22,6 +24,56 @@ public interface Dictionary extends Set<String>, Serializable {
      */
     String toDot();
 
+    /**
+     * Find all sequences in the dictionary that are a prefix of the text starting at the given offset.
+     * The matches are found in a single walk over the automaton.
+     *
+     * @param text    The text.
+     * @param offset  The offset in the text where matches start.
+     * @param handler The handler that is called for every match, in order of increasing length.
+     */
+    void allPrefixMatches(CharSequence text, int offset, PrefixMatchHandler handler);
+
+    /**
+     * Get the sequences in the dictionary that start with the given prefix. The sequences are
+     * enumerated lazily, in lexicographic order.
+     *
+     * @param prefix The prefix.
+     * @return An iterator over the sequences that start with the prefix.
+     */
+    Iterator<String> completions(CharSequence prefix);
+
+    /**
+     * Check whether the dictionary contains a sequence that is equal to the given sequence after
+     * folding. At each state, every transition with a character that folds to the character
+     * of the (folded) sequence is followed.
+     *
+     * @param seq     The sequence.
+     * @param folding The character folding.
+     * @return <tt>true</tt> if the dictionary contains a sequence that folds to the same sequence.
+     */
+    boolean containsFolded(CharSequence seq, CharacterFolding folding);
+
+    /**
+     * Get the sequences in the dictionary that are equal to the given sequence after folding.
+     *
+     * @param seq     The sequence.
+     * @param folding The character folding.
+     * @return The sequences in the dictionary that fold to the same sequence, in lexicographic order.
+     * @see #containsFolded(CharSequence, CharacterFolding)
+     */
+    List<String> foldedMatches(CharSequence seq, CharacterFolding folding);
+
+    /**
+     * Find the longest sequence in the dictionary that is a prefix of the text starting at the given
+     * offset.
+     *
+     * @param text   The text.
+     * @param offset The offset in the text where the match starts.
+     * @return The length of the longest match or <tt>-1</tt> if there is no match.
+     */
+    int longestPrefixMatch(CharSequence text, int offset);
+
     /**
      * Returns <tt>true</tt> if the state is a final state and <tt>false</tt> otherwise.
      * @param state The state.
@@ -45,6 +97,42 @@ public interface Dictionary extends Set<String>, Serializable {
      */
     int startState();
 
+    /**
+     * Get the character of a transition.
+     *
+     * @param transition The transition.
+     * @return The transition character.
+     */
+    char transitionCharacter(int transition);
+
+    /**
+     * Get the state that a transition points to.
+     *
+     * @param transition The transition.
+     * @return The to-state of the transition.
+     */
+    int transitionTarget(int transition);
+
+    /**
+     * Get the first outgoing transition of a state. The outgoing transitions of a state are
+     * numbered consecutively from {@link #transitionsStart(int)} (inclusive) to
+     * {@link #transitionsEnd(int)} (exclusive) and are ordered by character. This allows
+     * for traversal of the automaton without allocating character sets.
+     *
+     * @param state The state.
+     * @return The first outgoing transition.
+     */
+    int transitionsStart(int state);
+
+    /**
+     * Get the upper bound (exclusive) of the outgoing transitions of a state.
+     *
+     * @param state The state.
+     * @return The upper bound of the outgoing transitions.
+     * @see #transitionsStart(int)
+     */
+    int transitionsEnd(int state);
+
     /**
      * Get the transition characters on outgoing transitions of the current state.
      *
@@ -155,6 +155,16 @@ public class DictionaryBuilder {
         return (PerfectHashDictionary) build(true, stateSuffixes);
     }
 
+    /**
+     * Create a perfect hash automaton with an index for substring and suffix queries. This
+     * also finalizes the {@link DictionaryBuilder}.
+     *
+     * @return An infix index.
+     */
+    public InfixIndex buildInfixIndex() {
+        return new InfixIndex(buildPerfectHash(false));
+    }
+
     private void finalizeDictionary() {
         if (!d_finalized) {
             replaceOrRegisterIterative(d_startState);
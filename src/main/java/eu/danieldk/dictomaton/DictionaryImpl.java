@@ -81,6 +81,37 @@ class DictionaryImpl extends AbstractSet<String> implements Dictionary {
         return true;
     }
 
+    @Override
+    public void allPrefixMatches(CharSequence text, int offset, PrefixMatchHandler handler) {
+        int state = 0;
+        for (int i = offset; state != -1; ++i) {
+            if (d_finalStates.get(state))
+                handler.match(i - offset, -1);
+
+            if (i == text.length())
+                break;
+
+            state = next(state, text.charAt(i));
+        }
+    }
+
+    @Override
+    public Iterator<String> completions(CharSequence prefix) {
+        return new CompletionIterator(prefixState(prefix), prefix);
+    }
+
+    @Override
+    public boolean containsFolded(CharSequence seq, CharacterFolding folding) {
+        return foldedSearch(seq, folding, null);
+    }
+
+    @Override
+    public List<String> foldedMatches(CharSequence seq, CharacterFolding folding) {
+        List<String> matches = new ArrayList<>();
+        foldedSearch(seq, folding, matches);
+        return matches;
+    }
+
     @Override
     public boolean isEmpty() {
         return size() == 0;
@@ -93,7 +124,25 @@ class DictionaryImpl extends AbstractSet<String> implements Dictionary {
 
     @Override
     public Iterator<String> iterator() {
-        return new DictionaryIterator();
+        return new CompletionIterator(0, "");
+    }
+
+    @Override
+    public int longestPrefixMatch(CharSequence text, int offset) {
+        int longest = -1;
+
+        int state = 0;
+        for (int i = offset; state != -1; ++i) {
+            if (d_finalStates.get(state))
+                longest = i - offset;
+
+            if (i == text.length())
+                break;
+
+            state = next(state, text.charAt(i));
+        }
+
+        return longest;
     }
 
     @Override
@@ -179,6 +228,26 @@ class DictionaryImpl extends AbstractSet<String> implements Dictionary {
         return 0;
     }
 
+    @Override
+    public char transitionCharacter(int transition) {
+        return d_transitionChars[transition];
+    }
+
+    @Override
+    public int transitionTarget(int transition) {
+        return d_transitionTo.get(transition);
+    }
+
+    @Override
+    public int transitionsStart(int state) {
+        return d_stateOffsets.get(state);
+    }
+
+    @Override
+    public int transitionsEnd(int state) {
+        return transitionsUpperBound(state);
+    }
+
     @Override
     public Set<Character> transitionCharacters(int state) {
         Set<Character> transChars = new HashSet<>();
@@ -189,41 +258,53 @@ class DictionaryImpl extends AbstractSet<String> implements Dictionary {
         return transChars;
     }
 
-    private class DictionaryIterator implements Iterator<String> {
-        private final Stack<StateStringPair> d_stack;
-
-        public DictionaryIterator() {
-            d_stack = new Stack<>();
-            d_stack.push(new StateStringPair(0, ""));
+    /**
+     * Lazy depth-first iterator over the sequences in the right language of a state, in lexicographic
+     * order. The iterator keeps a stack of states and transitions and a single path buffer, so that the
+     * only allocations are the sequences that are returned.
+     */
+    private class CompletionIterator implements Iterator<String> {
+        private final int d_prefixLength;
+        private char[] d_path;
+        private int[] d_states;
+        private int[] d_transitions;
+        private int d_depth;
+        private String d_next;
+
+        /**
+         * Construct an iterator.
+         *
+         * @param state  The state to start from, or <tt>-1</tt> for an empty iterator.
+         * @param prefix The prefix that leads to the state.
+         */
+        public CompletionIterator(int state, CharSequence prefix) {
+            d_prefixLength = prefix.length();
+            d_path = new char[d_prefixLength + 16];
+            for (int i = 0; i < d_prefixLength; ++i)
+                d_path[i] = prefix.charAt(i);
+
+            d_states = new int[16];
+            d_transitions = new int[16];
+            d_states[0] = state;
+            d_transitions[0] = -1;
+            d_depth = state == -1 ? -1 : 0;
+
+            d_next = findNext();
         }
 
         @Override
         public boolean hasNext() {
-            return !(d_stack.isEmpty() || d_nSeqs == 0);
-
+            return d_next != null;
         }
 
         @Override
         public String next() {
-            if (d_stack.isEmpty() || d_nSeqs == 0)
+            if (d_next == null)
                 throw new NoSuchElementException();
 
-            StateStringPair pair;
-            while (d_stack.size() != 0) {
-                pair = d_stack.pop();
-                int state = pair.getState();
-                String string = pair.getString();
-
-                // Put states reachable through outgoing transitions on the stack.
-                for (int trans = transitionsUpperBound(state) - 1; trans >= d_stateOffsets.get(state); --trans)
-                    d_stack.push(new StateStringPair(d_transitionTo.get(trans), string + d_transitionChars[trans]));
-
-                if (d_finalStates.get(state))
-                    return string;
-            }
-
-            // Impossible to reach.
-            throw new NoSuchElementException();
+            String next = d_next;
+            d_next = findNext();
+            return next;
         }
 
         @Override
@@ -231,26 +312,41 @@ class DictionaryImpl extends AbstractSet<String> implements Dictionary {
             throw new UnsupportedOperationException();
         }
 
-    }
-
-    private class StateStringPair {
-        private final int d_state;
-
-        private final String d_string;
-
-        public StateStringPair(int state, String string) {
-            d_state = state;
-            d_string = string;
-        }
-
-        public int getState() {
-            return d_state;
-        }
+        private String findNext() {
+            while (d_depth >= 0) {
+                int state = d_states[d_depth];
+
+                // First visit of this state.
+                if (d_transitions[d_depth] == -1) {
+                    d_transitions[d_depth] = d_stateOffsets.get(state);
+                    if (d_finalStates.get(state))
+                        return new String(d_path, 0, d_prefixLength + d_depth);
+                }
+
+                int trans = d_transitions[d_depth];
+                if (trans == transitionsUpperBound(state)) {
+                    --d_depth;
+                    continue;
+                }
+
+                d_transitions[d_depth] = trans + 1;
+
+                if (d_prefixLength + d_depth == d_path.length)
+                    d_path = Arrays.copyOf(d_path, d_path.length * 2);
+                d_path[d_prefixLength + d_depth] = d_transitionChars[trans];
+
+                ++d_depth;
+                if (d_depth == d_states.length) {
+                    d_states = Arrays.copyOf(d_states, d_states.length * 2);
+                    d_transitions = Arrays.copyOf(d_transitions, d_transitions.length * 2);
+                }
+
+                d_states[d_depth] = d_transitionTo.get(trans);
+                d_transitions[d_depth] = -1;
+            }
 
-        public String getString() {
-            return d_string;
+            return null;
         }
-
     }
 
     /**
@@ -309,6 +405,86 @@ class DictionaryImpl extends AbstractSet<String> implements Dictionary {
         return -1;
     }
 
+    /**
+     * Search sequences that are equal to the given sequence after folding. Since multiple transitions
+     * of a state can fold to the same character, this is a depth-first search over the paths that
+     * match the folded sequence.
+     *
+     * @param seq     The sequence.
+     * @param folding The character folding.
+     * @param matches The list to add matching sequences to. If <tt>null</tt>, the search stops after
+     *                the first match.
+     * @return <tt>true</tt> if a match was found.
+     */
+    private boolean foldedSearch(CharSequence seq, CharacterFolding folding, List<String> matches) {
+        String folded = folding.fold(seq);
+        int len = folded.length();
+
+        char[] path = new char[len];
+
+        // Stack of states and of the transitions that led to them, the depth of a state is implied
+        // by its stack position.
+        int[] states = new int[len + 1];
+        int[] transitions = new int[len + 1];
+        int depth = 0;
+        states[0] = 0;
+        transitions[0] = -1;
+
+        boolean found = false;
+
+        while (depth >= 0) {
+            int state = states[depth];
+
+            if (depth == len) {
+                if (d_finalStates.get(state)) {
+                    found = true;
+                    if (matches == null)
+                        return true;
+
+                    matches.add(new String(path));
+                }
+
+                --depth;
+                continue;
+            }
+
+            // Find the next transition of this state that matches the folded character.
+            char c = folded.charAt(depth);
+            int trans = transitions[depth] == -1 ? d_stateOffsets.get(state) : transitions[depth] + 1;
+            int upper = transitionsUpperBound(state);
+            while (trans < upper && folding.fold(d_transitionChars[trans]) != c)
+                ++trans;
+
+            if (trans == upper) {
+                --depth;
+                continue;
+            }
+
+            transitions[depth] = trans;
+            path[depth] = d_transitionChars[trans];
+
+            ++depth;
+            states[depth] = d_transitionTo.get(trans);
+            transitions[depth] = -1;
+        }
+
+        return found;
+    }
+
+    /**
+     * Get the state that is reached after reading the given prefix.
+     *
+     * @param prefix The prefix.
+     * @return The state, or <tt>-1</tt> if no sequence in the dictionary has the prefix.
+     */
+    protected int prefixState(CharSequence prefix) {
+        int state = 0;
+        for (int i = 0; i < prefix.length() && state != -1; i++)
+            state = next(state, prefix.charAt(i));
+
+        return state;
+    }
+
     /**
      * Check whether the dictionary contains the given sequence.
      *
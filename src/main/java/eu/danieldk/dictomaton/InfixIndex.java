@@ -0,0 +1,185 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index for finding the sequences of a dictionary that contain a substring or end with a suffix.
+ * Infix indexes are constructed using {@link DictionaryBuilder#buildInfixIndex()}.
+ * <p/>
+ * The index consists of a minimized perfect hash automaton of all non-empty suffixes of the sequences
+ * in the dictionary, plus for each suffix the perfect hash codes of the sequences that end with that
+ * suffix. The suffixes that start with a substring form a contiguous hash code range in the suffix
+ * automaton ({@link PerfectHashDictionary#hashRange(CharSequence)}), so a substring query only visits
+ * the postings of matching suffixes, rather than all sequences of the dictionary.
+ */
+public class InfixIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final PerfectHashDictionary d_dictionary;
+    private final PerfectHashDictionary d_suffixes;
+
+    // The hash codes of the sequences that end with the suffix with hash code h are stored in
+    // d_postings[d_postingsOffsets[h - 1]..d_postingsOffsets[h]), in ascending order.
+    private final CompactIntArray d_postingsOffsets;
+    private final CompactIntArray d_postings;
+
+    InfixIndex(PerfectHashDictionary dictionary) {
+        d_dictionary = dictionary;
+
+        TreeMap<String, List<Integer>> suffixPostings = new TreeMap<>();
+        int number = 1;
+        int nPostings = 0;
+        for (String seq : dictionary) {
+            for (int i = 0; i < seq.length(); ++i) {
+                String suffix = seq.substring(i);
+
+                List<Integer> postings = suffixPostings.get(suffix);
+                if (postings == null) {
+                    postings = new ArrayList<>(1);
+                    suffixPostings.put(suffix, postings);
+                }
+
+                // A sequence can have the same suffix only once.
+                postings.add(number);
+                ++nPostings;
+            }
+
+            ++number;
+        }
+
+        try {
+            d_suffixes = new DictionaryBuilder().addAll(suffixPostings.keySet()).buildPerfectHash(false);
+        } catch (DictionaryBuilderException e) {
+            // Cannot happen, the suffixes are added in sorted order.
+            throw new IllegalStateException(e);
+        }
+
+        d_postingsOffsets = new CompactIntArray(suffixPostings.size() + 1, CompactIntArray.width(nPostings));
+        d_postings = new CompactIntArray(nPostings, CompactIntArray.width(dictionary.size()));
+
+        int suffix = 0;
+        int posting = 0;
+        for (Map.Entry<String, List<Integer>> entry : suffixPostings.entrySet()) {
+            d_postingsOffsets.set(suffix++, posting);
+            for (int seqNumber : entry.getValue())
+                d_postings.set(posting++, seqNumber);
+        }
+        d_postingsOffsets.set(suffix, posting);
+    }
+
+    /**
+     * Get the dictionary of the index.
+     *
+     * @return The dictionary.
+     */
+    public PerfectHashDictionary dictionary() {
+        return d_dictionary;
+    }
+
+    /**
+     * Get the sequences that contain a substring.
+     *
+     * @param infix The substring.
+     * @return The sequences that contain the substring, in lexicographic order.
+     */
+    public List<String> containing(CharSequence infix) {
+        return sequences(containingNumbers(infix));
+    }
+
+    /**
+     * Get the perfect hash codes of the sequences that contain a substring.
+     *
+     * @param infix The substring.
+     * @return The hash codes of the sequences that contain the substring, in ascending order.
+     */
+    public int[] containingNumbers(CharSequence infix) {
+        if (infix.length() == 0) {
+            int[] all = new int[d_dictionary.size()];
+            for (int i = 0; i < all.length; ++i)
+                all[i] = i + 1;
+            return all;
+        }
+
+        int[] range = d_suffixes.hashRange(infix);
+        if (range[0] == range[1])
+            return new int[0];
+
+        int from = d_postingsOffsets.get(range[0] - 1);
+        int to = d_postingsOffsets.get(range[1] - 1);
+
+        int[] numbers = new int[to - from];
+        for (int i = from; i < to; ++i)
+            numbers[i - from] = d_postings.get(i);
+
+        // A sequence that contains the substring more than once occurs in the postings of multiple
+        // suffixes.
+        Arrays.sort(numbers);
+        int n = 0;
+        for (int i = 0; i < numbers.length; ++i)
+            if (n == 0 || numbers[n - 1] != numbers[i])
+                numbers[n++] = numbers[i];
+
+        return n == numbers.length ? numbers : Arrays.copyOf(numbers, n);
+    }
+
+    /**
+     * Get the sequences that end with a suffix.
+     *
+     * @param suffix The suffix.
+     * @return The sequences that end with the suffix, in lexicographic order.
+     */
+    public List<String> endingWith(CharSequence suffix) {
+        return sequences(endingWithNumbers(suffix));
+    }
+
+    /**
+     * Get the perfect hash codes of the sequences that end with a suffix.
+     *
+     * @param suffix The suffix.
+     * @return The hash codes of the sequences that end with the suffix, in ascending order.
+     */
+    public int[] endingWithNumbers(CharSequence suffix) {
+        if (suffix.length() == 0)
+            return containingNumbers(suffix);
+
+        int hash = d_suffixes.number(suffix);
+        if (hash == -1)
+            return new int[0];
+
+        int from = d_postingsOffsets.get(hash - 1);
+        int to = d_postingsOffsets.get(hash);
+
+        int[] numbers = new int[to - from];
+        for (int i = from; i < to; ++i)
+            numbers[i - from] = d_postings.get(i);
+
+        return numbers;
+    }
+
+    private List<String> sequences(int[] numbers) {
+        List<String> sequences = new ArrayList<>(numbers.length);
+        for (int number : numbers)
+            sequences.add(d_dictionary.sequence(number));
+
+        return sequences;
+    }
+}
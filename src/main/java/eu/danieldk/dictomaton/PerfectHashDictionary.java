@@ -1,5 +1,7 @@
 package eu.danieldk.dictomaton;
 
+import java.util.NavigableSet;
+
 /**
  * Perfect hash dictionary interface. A perfect hash dictionary provides
  * the functionality of a {@link Dictionary}, plus:
@@ -7,8 +9,10 @@ package eu.danieldk.dictomaton;
  * <li>A hash code for each sequence in the dictionary ({@link #number(CharSequence)}).</li>
  * <li>The character sequence of a given hash ({@link #sequence(int)}).</li>
  * </ul>
+ * Since hash codes are ranks in the lexicographic order of the sequences, a perfect hash dictionary
+ * is also a {@link NavigableSet}, with navigation and range views in O(|sequence|) time.
  */
-public interface PerfectHashDictionary extends Dictionary {
+public interface PerfectHashDictionary extends Dictionary, NavigableSet<String> {
     /**
      * Compute the perfect hash code of the given character sequence.
      *
@@ -18,6 +22,38 @@ public interface PerfectHashDictionary extends Dictionary {
      */
     int number(CharSequence seq);
 
+    /**
+     * Compute the perfect hash codes of a batch of character sequences. This is equivalent to calling
+     * {@link #number(CharSequence)} for each sequence, but the automaton is traversed for several
+     * sequences in an interleaved fashion, so that their memory accesses can overlap.
+     *
+     * @param seqs    The sequences.
+     * @param numbers The array to store the hash codes in, <tt>-1</tt> for sequences that are not
+     *                in the automaton. Must have at least the length of <tt>seqs</tt>.
+     */
+    void numbers(CharSequence[] seqs, int[] numbers);
+
+    /**
+     * Get the number of sequences in the dictionary that start with the given prefix. The number
+     * is computed without enumerating the sequences.
+     *
+     * @param prefix The prefix.
+     * @return The number of sequences that start with the prefix.
+     */
+    int countWithPrefix(CharSequence prefix);
+
+    /**
+     * Get the range of perfect hash codes of the sequences that start with the given prefix. Since
+     * hash codes follow the lexicographic order of sequences, these sequences have consecutive hash
+     * codes. The range is returned as an array <i>{from, to}</i>, where <i>from</i> is inclusive and
+     * <i>to</i> exclusive. If no sequence starts with the prefix, the range is empty and <i>from</i>
+     * is the hash code that the prefix would have in the dictionary.
+     *
+     * @param prefix The prefix.
+     * @return The hash code range.
+     */
+    int[] hashRange(CharSequence prefix);
+
     /**
      * Compute the state for traversing the automaton given CharSequence seq. The
      * perfect hash code is available via {@link StateInfo#getHash()}. The traversal 
@@ -40,6 +76,42 @@ public interface PerfectHashDictionary extends Dictionary {
      */
     StateInfo getStateInfo(CharSequence seq, StateInfo startInfo);
     
+    /**
+     * Get the number of sequences that are skipped when following an outgoing transition
+     * of a state. This is the number of sequences that end in the state plus the number of
+     * sequences that can be reached through the preceding transitions of the state. The
+     * perfect hash code of a sequence is one plus the sum of the offsets of the transitions
+     * on its path. This allows for computing perfect hash codes while traversing the automaton.
+     *
+     * @param state      The state.
+     * @param transition An outgoing transition of the state.
+     * @return The number of sequences that are skipped.
+     */
+    int transitionNumberOffset(int state, int transition);
+
+    /**
+     * Get the number of sequences that can be reached through an outgoing transition of a state.
+     * The offset of a transition ({@link #transitionNumberOffset(int, int)}) is the offset of its
+     * preceding transition plus the cardinality of that transition. When all transitions of a
+     * state are visited, the offsets should be computed this way, since computing the offset of
+     * a single transition can take time linear in the number of preceding transitions.
+     *
+     * @param state      The state.
+     * @param transition An outgoing transition of the state.
+     * @return The number of sequences that can be reached through the transition.
+     */
+    int transitionCardinality(int state, int transition);
+
+    /**
+     * Find the longest sequence in the dictionary that is a prefix of the text starting at the given
+     * offset, see {@link #longestPrefixMatch(CharSequence, int)}.
+     *
+     * @param text   The text.
+     * @param offset The offset in the text where the match starts.
+     * @return The perfect hash code of the longest match or <tt>-1</tt> if there is no match.
+     */
+    int longestPrefixMatchNumber(CharSequence text, int offset);
+
     /**
      * Compute the sequence corresponding to the given hash code.
      *
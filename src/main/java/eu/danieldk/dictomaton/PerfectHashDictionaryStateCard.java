@@ -29,7 +29,7 @@ import java.util.List;
  *
  * @author Daniel de Kok
  */
-class PerfectHashDictionaryStateCard extends DictionaryImpl implements PerfectHashDictionary {
+class PerfectHashDictionaryStateCard extends AbstractPerfectHashDictionary {
     private static final long serialVersionUID = 2L;
 
     private final CompactIntArray d_stateNSuffixes;
@@ -86,6 +86,54 @@ class PerfectHashDictionaryStateCard extends DictionaryImpl implements PerfectHa
         return info;
     }
 
+    @Override
+    public int countWithPrefix(CharSequence prefix) {
+        int state = prefixState(prefix);
+        return state == -1 ? 0 : d_stateNSuffixes.get(state);
+    }
+
+    @Override
+    public int[] hashRange(CharSequence prefix) {
+        int num = 0;
+        int state = 0;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            char ch = prefix.charAt(i);
+
+            // A final state is another suffix.
+            if (d_finalStates.get(state))
+                ++num;
+
+            // Count the number of suffixes in the preceding transitions.
+            int trans;
+            for (trans = d_stateOffsets.get(state); trans < transitionsUpperBound(state) &&
+                    d_transitionChars[trans] < ch; ++trans)
+                num += d_stateNSuffixes.get(d_transitionTo.get(trans));
+
+            if (trans == transitionsUpperBound(state) || d_transitionChars[trans] != ch)
+                return new int[]{num + 1, num + 1};
+
+            state = d_transitionTo.get(trans);
+        }
+
+        return new int[]{num + 1, num + 1 + d_stateNSuffixes.get(state)};
+    }
+
+    @Override
+    public int transitionCardinality(int state, int transition) {
+        return d_stateNSuffixes.get(d_transitionTo.get(transition));
+    }
+
+    @Override
+    public int transitionNumberOffset(int state, int transition) {
+        int num = d_finalStates.get(state) ? 1 : 0;
+
+        for (int trans = d_stateOffsets.get(state); trans < transition; ++trans)
+            num += d_stateNSuffixes.get(d_transitionTo.get(trans));
+
+        return num;
+    }
+
     /**
      * Compute the sequence corresponding to the given hash code.
      *
@@ -29,7 +29,7 @@ import java.util.List;
  *
  * @author Daniel de Kok
  */
-class PerfectHashDictionaryTransCard extends DictionaryImpl implements PerfectHashDictionary {
+class PerfectHashDictionaryTransCard extends AbstractPerfectHashDictionary {
     private static final long serialVersionUID = 1L;
 
     private final CompactIntArray d_transitionNSuffixes;
@@ -84,6 +84,65 @@ class PerfectHashDictionaryTransCard extends DictionaryImpl implements PerfectHa
         return info;
     }
 
+    @Override
+    public int countWithPrefix(CharSequence prefix) {
+        int state = prefixState(prefix);
+        return state == -1 ? 0 : stateCardinality(state);
+    }
+
+    @Override
+    public int[] hashRange(CharSequence prefix) {
+        int num = 0;
+        int state = 0;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            char ch = prefix.charAt(i);
+
+            // A final state is another suffix.
+            if (d_finalStates.get(state))
+                ++num;
+
+            int trans = findTransition(state, ch);
+            if (trans == -1) {
+                // Count the suffixes of the transitions with a smaller character.
+                int start = d_stateOffsets.get(state);
+                int upper = transitionsUpperBound(state);
+                int insert = start;
+                while (insert < upper && d_transitionChars[insert] < ch)
+                    ++insert;
+
+                if (insert < upper)
+                    num += d_transitionNSuffixes.get(insert);
+                else if (insert != start)
+                    num += d_transitionNSuffixes.get(upper - 1) + stateCardinality(d_transitionTo.get(upper - 1));
+
+                return new int[]{num + 1, num + 1};
+            }
+
+            // Count the number of preceding suffixes in the preceding transitions.
+            num += d_transitionNSuffixes.get(trans);
+
+            state = d_transitionTo.get(trans);
+        }
+
+        return new int[]{num + 1, num + 1 + stateCardinality(state)};
+    }
+
+    @Override
+    public int transitionCardinality(int state, int transition) {
+        // The cardinality is the difference between the preceding suffixes of this transition
+        // and the next transition. The last transition of a state has no next transition.
+        if (transition + 1 < transitionsUpperBound(state))
+            return d_transitionNSuffixes.get(transition + 1) - d_transitionNSuffixes.get(transition);
+
+        return stateCardinality(d_transitionTo.get(transition));
+    }
+
+    @Override
+    public int transitionNumberOffset(int state, int transition) {
+        return d_transitionNSuffixes.get(transition) + (d_finalStates.get(state) ? 1 : 0);
+    }
+
     /**
      * Compute the sequence corresponding to the given hash code.
      *
@@ -249,6 +308,30 @@ class PerfectHashDictionaryTransCard extends DictionaryImpl implements PerfectHa
 		return reverseTopologicalOrder;
 	}
 
+    /**
+     * Compute the cardinality of the right language of a state. Since the cardinalities are stored
+     * as the number of suffixes preceding a transition, the cardinality is found by following the
+     * last transition of each state.
+     *
+     * @param state The state.
+     * @return The number of suffixes of the state.
+     */
+    private int stateCardinality(int state) {
+        int card = 0;
+
+        while (true) {
+            if (d_finalStates.get(state))
+                ++card;
+
+            int upper = transitionsUpperBound(state);
+            if (d_stateOffsets.get(state) == upper)
+                return card;
+
+            card += d_transitionNSuffixes.get(upper - 1);
+            state = d_transitionTo.get(upper - 1);
+        }
+    }
+
     private CompactIntArray transitionPrecedingTable(int magicMarker, CompactIntArray stateRightCard)
     {
         CompactIntArray table = new CompactIntArray(d_transitionTo.size(), CompactIntArray.width(magicMarker - 1));
@@ -0,0 +1,30 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+/**
+ * Handler for sequences in a dictionary that are prefixes of a text, see
+ * {@link Dictionary#allPrefixMatches(CharSequence, int, PrefixMatchHandler)}.
+ */
+public interface PrefixMatchHandler {
+    /**
+     * Called for each match, in order of increasing length.
+     *
+     * @param length The length of the match.
+     * @param number The perfect hash code of the match, or <tt>-1</tt> if the dictionary is not
+     *               a {@link PerfectHashDictionary}.
+     */
+    void match(int length, int number);
+}
@@ -0,0 +1,236 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A navigable view of the sequences of a {@link PerfectHashDictionary} with hash codes in the range
+ * <i>[lo, hi)</i>. Since hash codes are ranks in the lexicographic order of the sequences, navigation
+ * operations are performed by computing ranks, in O(|sequence|) time, without iterating over sequences.
+ * <p/>
+ * Views of views are clamped to the range of the enclosing view.
+ */
+class SequenceRangeSet extends AbstractSet<String> implements NavigableSet<String> {
+    private final PerfectHashDictionary d_dictionary;
+    private final int d_lo;
+    private final int d_hi;
+    private final boolean d_descending;
+
+    /**
+     * Construct a view.
+     *
+     * @param dictionary The dictionary.
+     * @param lo         The first hash code in the view (inclusive).
+     * @param hi         The last hash code of the view (exclusive).
+     * @param descending <tt>true</tt> if the view is in descending order.
+     */
+    SequenceRangeSet(PerfectHashDictionary dictionary, int lo, int hi, boolean descending) {
+        d_dictionary = dictionary;
+        d_lo = lo;
+        d_hi = Math.max(lo, hi);
+        d_descending = descending;
+    }
+
+    @Override
+    public String ceiling(String s) {
+        return d_descending ? ascendingFloor(s) : ascendingCeiling(s);
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return d_descending ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String))
+            return false;
+
+        int hash = d_dictionary.number((String) o);
+        return hash >= d_lo && hash < d_hi;
+    }
+
+    @Override
+    public Iterator<String> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<String> descendingSet() {
+        return new SequenceRangeSet(d_dictionary, d_lo, d_hi, !d_descending);
+    }
+
+    @Override
+    public String first() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+
+        return d_dictionary.sequence(d_descending ? d_hi - 1 : d_lo);
+    }
+
+    @Override
+    public String floor(String s) {
+        return d_descending ? ascendingCeiling(s) : ascendingFloor(s);
+    }
+
+    @Override
+    public SortedSet<String> headSet(String toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public NavigableSet<String> headSet(String toElement, boolean inclusive) {
+        if (d_descending)
+            return view(bound(toElement, !inclusive), d_hi);
+
+        return view(d_lo, bound(toElement, inclusive));
+    }
+
+    @Override
+    public String higher(String s) {
+        return d_descending ? ascendingLower(s) : ascendingHigher(s);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return d_lo == d_hi;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int d_next = d_descending ? d_hi - 1 : d_lo;
+
+            @Override
+            public boolean hasNext() {
+                return d_next >= d_lo && d_next < d_hi;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                String seq = d_dictionary.sequence(d_next);
+                d_next += d_descending ? -1 : 1;
+                return seq;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String last() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+
+        return d_dictionary.sequence(d_descending ? d_lo : d_hi - 1);
+    }
+
+    @Override
+    public String lower(String s) {
+        return d_descending ? ascendingHigher(s) : ascendingLower(s);
+    }
+
+    @Override
+    public String pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        return d_hi - d_lo;
+    }
+
+    @Override
+    public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement,
+                                       boolean toInclusive) {
+        if (comparator() == null ? fromElement.compareTo(toElement) > 0 : fromElement.compareTo(toElement) < 0)
+            throw new IllegalArgumentException("fromElement > toElement");
+
+        if (d_descending)
+            return view(bound(toElement, !toInclusive), bound(fromElement, fromInclusive));
+
+        return view(bound(fromElement, !fromInclusive), bound(toElement, toInclusive));
+    }
+
+    @Override
+    public SortedSet<String> subSet(String fromElement, String toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<String> tailSet(String fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public NavigableSet<String> tailSet(String fromElement, boolean inclusive) {
+        if (d_descending)
+            return view(d_lo, bound(fromElement, inclusive));
+
+        return view(bound(fromElement, !inclusive), d_hi);
+    }
+
+    private String ascendingCeiling(String s) {
+        return sequenceInView(Math.max(d_lo, bound(s, false)));
+    }
+
+    private String ascendingFloor(String s) {
+        return sequenceInView(Math.min(d_hi - 1, bound(s, true) - 1));
+    }
+
+    private String ascendingHigher(String s) {
+        return sequenceInView(Math.max(d_lo, bound(s, true)));
+    }
+
+    private String ascendingLower(String s) {
+        return sequenceInView(Math.min(d_hi - 1, bound(s, false) - 1));
+    }
+
+    /**
+     * Get the hash code of the first sequence that is larger than the given sequence or, if
+     * <i>inclusive</i> is <tt>false</tt>, that is larger than or equal to the given sequence.
+     * If there is no such sequence, the size of the dictionary plus one is returned.
+     */
+    private int bound(String s, boolean inclusive) {
+        int rank = d_dictionary.hashRange(s)[0];
+        return inclusive && d_dictionary.contains(s) ? rank + 1 : rank;
+    }
+
+    private String sequenceInView(int hash) {
+        return hash >= d_lo && hash < d_hi ? d_dictionary.sequence(hash) : null;
+    }
+
+    private NavigableSet<String> view(int lo, int hi) {
+        return new SequenceRangeSet(d_dictionary, Math.max(d_lo, lo), Math.min(d_hi, hi), d_descending);
+    }
+}
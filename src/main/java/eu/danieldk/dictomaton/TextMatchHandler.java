@@ -0,0 +1,30 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+/**
+ * Handler for occurrences of dictionary sequences in a text, see {@link AhoCorasickScanner}.
+ */
+public interface TextMatchHandler {
+    /**
+     * Called for each occurrence of a sequence of the dictionary in the text. Occurrences are reported
+     * in order of their end offset. Occurrences with the same end offset are reported from long to short.
+     *
+     * @param start  The start offset of the occurrence (inclusive).
+     * @param end    The end offset of the occurrence (exclusive).
+     * @param number The perfect hash code of the sequence.
+     */
+    void match(long start, long end, int number);
+}
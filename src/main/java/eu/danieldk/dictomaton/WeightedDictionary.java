@@ -0,0 +1,231 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * A dictionary that associates a non-negative weight with every sequence, supporting the retrieval
+ * of the <i>k</i> completions of a prefix with the highest weights.
+ * <p/>
+ * Since states are shared between sequences in a minimized automaton, the maximum weight of the sequences
+ * below a state depends on the path to that state. Instead, the weights are stored in perfect hash order,
+ * where the completions of a prefix form a contiguous range ({@link PerfectHashDictionary#hashRange(CharSequence)}).
+ * A bit-packed segment tree that stores the maximum weight of each subrange is used to find the heaviest
+ * completions in that range with a best-first search. The time needed to find the top <i>k</i> completions
+ * is therefore independent of the number of completions.
+ */
+public class WeightedDictionary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final PerfectHashDictionary d_dictionary;
+
+    // Segment tree of maximum weights. Node 1 is the root, the children of node n are 2n and 2n + 1. The
+    // weight of the sequence with hash code h is stored in leaf d_leaves + h - 1.
+    private final int d_leaves;
+    private final CompactIntArray d_maxWeights;
+
+    /**
+     * A builder for {@link WeightedDictionary}.
+     */
+    public static class Builder {
+        private final TreeMap<String, Integer> d_weights;
+
+        public Builder() {
+            d_weights = new TreeMap<>();
+        }
+
+        /**
+         * Put a sequence with its weight. If the sequence was already added, its weight is replaced.
+         *
+         * @throws IllegalArgumentException If the weight is negative.
+         */
+        public synchronized Builder put(String seq, int weight) {
+            if (weight < 0)
+                throw new IllegalArgumentException(String.format("Weight of '%s' is negative: %d", seq, weight));
+
+            d_weights.put(seq, weight);
+            return this;
+        }
+
+        /**
+         * Put all sequence/weight pairs from a {@link java.util.Map}.
+         *
+         * @throws IllegalArgumentException If a weight is negative.
+         */
+        public synchronized Builder putAll(Map<String, Integer> weights) {
+            for (Map.Entry<String, Integer> entry : weights.entrySet())
+                put(entry.getKey(), entry.getValue());
+            return this;
+        }
+
+        /**
+         * Construct a {@link WeightedDictionary}.
+         */
+        public synchronized WeightedDictionary build() throws DictionaryBuilderException {
+            PerfectHashDictionary dict = new DictionaryBuilder().addAll(d_weights.keySet()).buildPerfectHash();
+
+            int[] weights = new int[d_weights.size()];
+
+            int i = 0;
+            for (int weight : d_weights.values())
+                weights[i++] = weight;
+
+            return new WeightedDictionary(dict, weights);
+        }
+    }
+
+    /**
+     * A completion and its weight.
+     */
+    public static class Completion {
+        private final String d_sequence;
+        private final int d_weight;
+
+        Completion(String sequence, int weight) {
+            d_sequence = sequence;
+            d_weight = weight;
+        }
+
+        /**
+         * Get the completed sequence.
+         *
+         * @return The sequence.
+         */
+        public String getSequence() {
+            return d_sequence;
+        }
+
+        /**
+         * Get the weight of the sequence.
+         *
+         * @return The weight.
+         */
+        public int getWeight() {
+            return d_weight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d)", d_sequence, d_weight);
+        }
+    }
+
+    private WeightedDictionary(PerfectHashDictionary dictionary, int[] weights) {
+        d_dictionary = dictionary;
+
+        int leaves = 1;
+        while (leaves < weights.length)
+            leaves <<= 1;
+        d_leaves = leaves;
+
+        int maxWeight = 0;
+        for (int weight : weights)
+            maxWeight = Math.max(maxWeight, weight);
+
+        d_maxWeights = new CompactIntArray(2 * leaves, CompactIntArray.width(maxWeight));
+        for (int i = 0; i < weights.length; ++i)
+            d_maxWeights.set(leaves + i, weights[i]);
+        for (int node = leaves - 1; node > 0; --node)
+            d_maxWeights.set(node, Math.max(d_maxWeights.get(2 * node), d_maxWeights.get(2 * node + 1)));
+    }
+
+    /**
+     * Get the dictionary of sequences.
+     *
+     * @return The dictionary.
+     */
+    public PerfectHashDictionary dictionary() {
+        return d_dictionary;
+    }
+
+    /**
+     * Get the number of sequences in the dictionary.
+     *
+     * @return The number of sequences.
+     */
+    public int size() {
+        return d_dictionary.size();
+    }
+
+    /**
+     * Get the weight of a sequence.
+     *
+     * @param seq The sequence.
+     * @return The weight of the sequence or <tt>-1</tt> if the sequence is not in the dictionary.
+     */
+    public int weight(CharSequence seq) {
+        int hash = d_dictionary.number(seq);
+        return hash == -1 ? -1 : d_maxWeights.get(d_leaves + hash - 1);
+    }
+
+    /**
+     * Get the <i>k</i> completions of a prefix with the highest weights. Completions with the same weight
+     * are ordered lexicographically.
+     *
+     * @param prefix The prefix.
+     * @param k      The maximum number of completions.
+     * @return The completions, ordered by descending weight.
+     */
+    public List<Completion> topCompletions(CharSequence prefix, int k) {
+        List<Completion> completions = new ArrayList<>();
+
+        int[] range = d_dictionary.hashRange(prefix);
+        if (k <= 0 || range[0] == range[1])
+            return completions;
+
+        // Queue of segment tree nodes, ordered by descending maximum weight. Ties are broken by the
+        // node number, which puts inner nodes before leaves and lexicographically smaller leaves first.
+        PriorityQueue<Long> queue = new PriorityQueue<>(16, Collections.reverseOrder());
+
+        // Queue the nodes that cover the hash code range exactly.
+        int lo = d_leaves + range[0] - 1;
+        int hi = d_leaves + range[1] - 1;
+        while (lo < hi) {
+            if ((lo & 1) == 1)
+                queue.add(queueKey(lo++));
+            if ((hi & 1) == 1)
+                queue.add(queueKey(--hi));
+
+            lo >>= 1;
+            hi >>= 1;
+        }
+
+        while (!queue.isEmpty() && completions.size() < k) {
+            long key = queue.poll();
+            int node = Integer.MAX_VALUE - (int) key;
+            int weight = (int) (key >>> 32);
+
+            if (node >= d_leaves)
+                completions.add(new Completion(d_dictionary.sequence(node - d_leaves + 1), weight));
+            else {
+                queue.add(queueKey(2 * node));
+                queue.add(queueKey(2 * node + 1));
+            }
+        }
+
+        return completions;
+    }
+
+    private long queueKey(int node) {
+        return ((long) d_maxWeights.get(node) << 32) | (Integer.MAX_VALUE - node);
+    }
+}
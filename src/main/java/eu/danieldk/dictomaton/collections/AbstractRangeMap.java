@@ -0,0 +1,169 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.PerfectHashDictionary;
+
+import java.util.*;
+
+/**
+ * Base class for views of the immutable maps that cover a range of keys, such as the keys
+ * with a certain prefix. Since perfect hash codes follow the order of the keys, such a range
+ * is a contiguous range of hash codes. The range is computed once when the view is created.
+ * Values are retrieved by hash code, so that iteration does not require a lookup per key.
+ *
+ * @param <V> The value type.
+ */
+abstract class AbstractRangeMap<V> extends AbstractMap<String, V> {
+    protected final PerfectHashDictionary d_keys;
+    protected final int d_from;
+    protected final int d_to;
+
+    /**
+     * Construct a view.
+     *
+     * @param keys The keys of the underlying map.
+     * @param from The first hash code in the view (inclusive).
+     * @param to   The last hash code in the view (exclusive).
+     */
+    AbstractRangeMap(PerfectHashDictionary keys, int from, int to) {
+        d_keys = keys;
+        d_from = from;
+        d_to = to;
+    }
+
+    /**
+     * Get the hash code range of the keys that are in [<tt>fromKey</tt>, <tt>toKey</tt>).
+     *
+     * @throws IllegalArgumentException If <tt>fromKey</tt> is larger than <tt>toKey</tt>.
+     */
+    static int[] keyRange(PerfectHashDictionary keys, String fromKey, String toKey) {
+        if (fromKey.compareTo(toKey) > 0)
+            throw new IllegalArgumentException(String.format("fromKey > toKey: %s > %s", fromKey, toKey));
+
+        // The lower bound of the hash range of a prefix is the rank of the prefix.
+        return new int[]{keys.hashRange(fromKey)[0], keys.hashRange(toKey)[0]};
+    }
+
+    /**
+     * Get the value of the key with the given hash code.
+     */
+    abstract V valueByNumber(int number);
+
+    /**
+     * Get the first hash code of the view (inclusive).
+     */
+    public int fromNumber() {
+        return d_from;
+    }
+
+    /**
+     * Get the last hash code of the view (exclusive).
+     */
+    public int toNumber() {
+        return d_to;
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        return o instanceof String && inRange(d_keys.number((String) o));
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+                    private final Iterator<String> d_keyIter = keySet().iterator();
+                    private int d_number = d_from;
+
+                    @Override
+                    public boolean hasNext() {
+                        return d_keyIter.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        String key = d_keyIter.next();
+                        return new SimpleEntry<>(key, valueByNumber(d_number++));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return d_to - d_from;
+            }
+        };
+    }
+
+    @Override
+    public V get(Object o) {
+        if (!(o instanceof String))
+            return null;
+
+        int number = d_keys.number((String) o);
+        return inRange(number) ? valueByNumber(number) : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return d_from == d_to;
+    }
+
+    /**
+     * Get the keys of the view.
+     */
+    @Override
+    public NavigableSet<String> keySet() {
+        if (d_from == d_to)
+            return d_keys.subSet("", true, "", false);
+
+        return d_keys.subSet(d_keys.sequence(d_from), true, d_keys.sequence(d_to - 1), true);
+    }
+
+    @Override
+    public int size() {
+        return d_to - d_from;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                if (index < 0 || index >= d_to - d_from)
+                    throw new IndexOutOfBoundsException(Integer.toString(index));
+
+                return valueByNumber(d_from + index);
+            }
+
+            @Override
+            public int size() {
+                return d_to - d_from;
+            }
+        };
+    }
+
+    protected boolean inRange(int number) {
+        return number >= d_from && number < d_to;
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.PerfectHashDictionary;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A value store that deduplicates values by storing them in a perfect hash automaton. Each
+ * index is linked to the hash code of its value. This store is compact when values are
+ * repeated or share prefixes and suffixes.
+ */
+class DictionaryValueStore implements StringValueStore {
+    private final PerfectHashDictionary d_values;
+    private final int[] d_link;
+
+    /**
+     * Construct a value store.
+     *
+     * @param values The distinct values.
+     * @param link The hash code of the value in <tt>values</tt> for each index.
+     */
+    DictionaryValueStore(PerfectHashDictionary values, int[] link) {
+        d_values = values;
+        d_link = link;
+    }
+
+    @Override
+    public String get(int index) {
+        return d_values.sequence(d_link[index]);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        // The values are ordered by their own hash codes, so each value has to be looked up.
+        return new Iterator<String>() {
+            private int d_index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return d_index < d_link.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return get(d_index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public long sizeInBytes() {
+        // Count the states and transitions that are reachable from the start state.
+        BitSet seen = new BitSet();
+        int[] stack = new int[16];
+        int stackSize = 0;
+
+        long nStates = 0;
+        long nTransitions = 0;
+
+        stack[stackSize++] = d_values.startState();
+        seen.set(d_values.startState());
+        while (stackSize != 0) {
+            int state = stack[--stackSize];
+            ++nStates;
+
+            for (int trans = d_values.transitionsStart(state); trans < d_values.transitionsEnd(state); ++trans) {
+                ++nTransitions;
+
+                int to = d_values.transitionTarget(trans);
+                if (!seen.get(to)) {
+                    seen.set(to);
+                    if (stackSize == stack.length)
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[stackSize++] = to;
+                }
+            }
+        }
+
+        // A transition has a character and a (packed) target, a state has an offset and a
+        // suffix count. The link table uses an int per value.
+        return nTransitions * (Character.SIZE / 8 + Integer.SIZE / 8) + nStates * 2 * (Integer.SIZE / 8) +
+                (long) d_link.length * (Integer.SIZE / 8);
+    }
+
+    @Override
+    public Collection<String> values() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return DictionaryValueStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return d_link.length;
+            }
+        };
+    }
+}
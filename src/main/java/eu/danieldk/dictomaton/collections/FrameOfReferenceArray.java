@@ -0,0 +1,146 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.io.Serializable;
+
+/**
+ * An immutable array of <tt>long</tt> values that is compressed using block-wise frame-of-reference
+ * coding. The array is divided in blocks of {@link #BLOCK_SIZE} values. In each block, values are
+ * stored as the difference to the minimum value of the block, using the minimum number of bits
+ * required for the largest difference in the block. Like {@link eu.danieldk.dictomaton.CompactIntArray},
+ * retrieval of a value is O(1).
+ * <p/>
+ * The array is used to store the values of the primitive maps compactly when the values fit in
+ * a small number of bits or lie within a narrow range.
+ */
+class FrameOfReferenceArray implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final int BLOCK_SIZE = 128;
+    private static final int BLOCK_SHIFT = 7;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final int d_size;
+    private final long[] d_bases;
+    private final byte[] d_widths;
+    private final long[] d_blockBitOffsets;
+    private final long[] d_data;
+
+    /**
+     * Construct a compressed array.
+     *
+     * @param values The values.
+     */
+    FrameOfReferenceArray(long[] values) {
+        d_size = values.length;
+
+        int nBlocks = (values.length + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        d_bases = new long[nBlocks];
+        d_widths = new byte[nBlocks];
+        d_blockBitOffsets = new long[nBlocks];
+
+        long bits = 0;
+        for (int block = 0; block < nBlocks; ++block) {
+            int from = block << BLOCK_SHIFT;
+            int to = Math.min(values.length, from + BLOCK_SIZE);
+
+            long min = values[from];
+            for (int i = from + 1; i < to; ++i)
+                min = Math.min(min, values[i]);
+
+            // The differences are unsigned, the width of their disjunction is the width of the largest.
+            long deltas = 0;
+            for (int i = from; i < to; ++i)
+                deltas |= values[i] - min;
+
+            d_bases[block] = min;
+            d_widths[block] = (byte) (Long.SIZE - Long.numberOfLeadingZeros(deltas));
+            d_blockBitOffsets[block] = bits;
+            bits += (long) (to - from) * d_widths[block];
+        }
+
+        d_data = new long[(int) ((bits + Long.SIZE - 1) / Long.SIZE)];
+
+        for (int block = 0; block < nBlocks; ++block) {
+            int width = d_widths[block];
+            if (width == 0)
+                continue;
+
+            int from = block << BLOCK_SHIFT;
+            int to = Math.min(values.length, from + BLOCK_SIZE);
+
+            long bitPos = d_blockBitOffsets[block];
+            for (int i = from; i < to; ++i, bitPos += width) {
+                long delta = values[i] - d_bases[block];
+
+                int word = (int) (bitPos >>> 6);
+                int shift = (int) (bitPos & 63);
+
+                d_data[word] |= delta << shift;
+                if (shift + width > Long.SIZE)
+                    d_data[word + 1] |= delta >>> (Long.SIZE - shift);
+            }
+        }
+    }
+
+    /**
+     * Get the value at the given index.
+     *
+     * @param index The index.
+     * @return The value.
+     * @throws ArrayIndexOutOfBoundsException If the index is not in the array.
+     */
+    long get(int index) {
+        if (index < 0 || index >= d_size)
+            throw new ArrayIndexOutOfBoundsException(index);
+
+        int block = index >>> BLOCK_SHIFT;
+        int width = d_widths[block];
+        if (width == 0)
+            return d_bases[block];
+
+        long bitPos = d_blockBitOffsets[block] + (long) (index & BLOCK_MASK) * width;
+        int word = (int) (bitPos >>> 6);
+        int shift = (int) (bitPos & 63);
+
+        long delta = d_data[word] >>> shift;
+        if (shift + width > Long.SIZE)
+            delta |= d_data[word + 1] << (Long.SIZE - shift);
+
+        if (width != Long.SIZE)
+            delta &= (1L << width) - 1;
+
+        return d_bases[block] + delta;
+    }
+
+    /**
+     * Get the number of values in the array.
+     *
+     * @return The number of values.
+     */
+    int size() {
+        return d_size;
+    }
+
+    /**
+     * Estimate of the memory used by the compressed array, excluding object headers.
+     *
+     * @return The size in bytes.
+     */
+    long sizeInBytes() {
+        return (long) d_bases.length * (Long.SIZE / 8 + 1 + Long.SIZE / 8) + (long) d_data.length * (Long.SIZE / 8);
+    }
+}
@@ -0,0 +1,261 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A value store that uses front coding. Values are stored in index order in blocks of
+ * {@link #BLOCK_SIZE} values. The first value of a block is stored completely, every following
+ * value is stored as the length of the prefix that it shares with its predecessor plus the
+ * remaining suffix. The start of each block is stored in a bit-packed offset table.
+ * <p/>
+ * This store is compact for mostly-unique values, such as URLs, where values of adjacent keys
+ * share prefixes. Retrieval decodes at most one block, which is much faster than retrieving a
+ * long value from a perfect hash automaton.
+ */
+class FrontCodedValueStore implements StringValueStore {
+    static final int BLOCK_SIZE = 16;
+
+    private final int d_size;
+    private final char[] d_data;
+    private final FrameOfReferenceArray d_blockOffsets;
+
+    /**
+     * Construct a value store.
+     *
+     * @param values The values, in index order.
+     */
+    FrontCodedValueStore(List<String> values) {
+        d_size = values.size();
+
+        long[] blockOffsets = new long[(d_size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        CharBuffer data = new CharBuffer();
+
+        String prev = null;
+        for (int i = 0; i < d_size; ++i) {
+            String value = values.get(i);
+
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = data.size();
+                data.appendLength(value.length());
+                data.append(value, 0);
+            } else {
+                int prefix = commonPrefixLength(prev, value);
+                data.appendLength(prefix);
+                data.appendLength(value.length() - prefix);
+                data.append(value, prefix);
+            }
+
+            prev = value;
+        }
+
+        d_data = data.toArray();
+        d_blockOffsets = new FrameOfReferenceArray(blockOffsets);
+    }
+
+    /**
+     * Compute the memory that a store for the given values would use in bytes, without
+     * constructing the store.
+     *
+     * @param values The values, in index order.
+     */
+    static long sizeInBytes(List<String> values) {
+        long[] blockOffsets = new long[(values.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        long nChars = 0;
+
+        String prev = null;
+        for (int i = 0; i < values.size(); ++i) {
+            String value = values.get(i);
+
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = nChars;
+                nChars += lengthChars(value.length()) + value.length();
+            } else {
+                int prefix = commonPrefixLength(prev, value);
+                int suffix = value.length() - prefix;
+                nChars += lengthChars(prefix) + lengthChars(suffix) + suffix;
+            }
+
+            prev = value;
+        }
+
+        return nChars * (Character.SIZE / 8) + new FrameOfReferenceArray(blockOffsets).sizeInBytes();
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= d_size)
+            throw new ArrayIndexOutOfBoundsException(index);
+
+        int pos = (int) d_blockOffsets.get(index / BLOCK_SIZE);
+
+        // Decode the first value of the block.
+        int length = readLength(pos);
+        pos += lengthChars(length);
+        StringBuilder sb = new StringBuilder(Math.max(16, length));
+        sb.append(d_data, pos, length);
+        pos += length;
+
+        // Apply the suffixes of the following values up to the requested value.
+        for (int i = index % BLOCK_SIZE; i > 0; --i) {
+            int prefix = readLength(pos);
+            pos += lengthChars(prefix);
+            int suffix = readLength(pos);
+            pos += lengthChars(suffix);
+            sb.setLength(prefix);
+            sb.append(d_data, pos, suffix);
+            pos += suffix;
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        // Values are decoded in a single pass over the data, each value is built from its predecessor.
+        return new Iterator<String>() {
+            private final StringBuilder d_value = new StringBuilder();
+            private int d_pos = 0;
+            private int d_index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return d_index < d_size;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                int prefix = 0;
+                if (d_index % BLOCK_SIZE != 0) {
+                    prefix = readLength(d_pos);
+                    d_pos += lengthChars(prefix);
+                }
+
+                int suffix = readLength(d_pos);
+                d_pos += lengthChars(suffix);
+                d_value.setLength(prefix);
+                d_value.append(d_data, d_pos, suffix);
+                d_pos += suffix;
+
+                ++d_index;
+                return d_value.toString();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return (long) d_data.length * (Character.SIZE / 8) + d_blockOffsets.sizeInBytes();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return FrontCodedValueStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return d_size;
+            }
+        };
+    }
+
+    /**
+     * Read a length, stored in 15-bit groups where the high bit indicates that more groups follow.
+     * The number of chars that the length uses is given by {@link #lengthChars(int)}.
+     */
+    private int readLength(int pos) {
+        int length = 0;
+        int shift = 0;
+        char c;
+        do {
+            c = d_data[pos++];
+            length |= (c & 0x7fff) << shift;
+            shift += 15;
+        } while ((c & 0x8000) != 0);
+
+        return length;
+    }
+
+    /**
+     * Get the number of chars that are used to store a length.
+     */
+    private static int lengthChars(int length) {
+        if (length < 0x8000)
+            return 1;
+
+        return length < 0x40000000 ? 2 : 3;
+    }
+
+    private static int commonPrefixLength(String s1, String s2) {
+        int max = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < max && s1.charAt(i) == s2.charAt(i))
+            ++i;
+
+        return i;
+    }
+
+    private static class CharBuffer {
+        private char[] d_chars = new char[1024];
+        private int d_size = 0;
+
+        void append(String s, int from) {
+            ensureCapacity(s.length() - from);
+            s.getChars(from, s.length(), d_chars, d_size);
+            d_size += s.length() - from;
+        }
+
+        void appendLength(int length) {
+            ensureCapacity(3);
+            while (length >= 0x8000) {
+                d_chars[d_size++] = (char) ((length & 0x7fff) | 0x8000);
+                length >>>= 15;
+            }
+
+            d_chars[d_size++] = (char) length;
+        }
+
+        int size() {
+            return d_size;
+        }
+
+        char[] toArray() {
+            return Arrays.copyOf(d_chars, d_size);
+        }
+
+        private void ensureCapacity(int n) {
+            if (d_size + n > d_chars.length)
+                d_chars = Arrays.copyOf(d_chars, Math.max(d_chars.length * 2, d_size + n));
+        }
+    }
+}
@@ -17,46 +17,77 @@ package eu.danieldk.dictomaton.collections;
 import eu.danieldk.dictomaton.DictionaryBuilder;
 import eu.danieldk.dictomaton.DictionaryBuilderException;
 import eu.danieldk.dictomaton.PerfectHashDictionary;
+import eu.danieldk.dictomaton.levenshtein.LevenshteinAutomaton;
+import eu.danieldk.dictomaton.levenshtein.LevenshteinMatch;
 
 import java.io.Serializable;
 import java.util.*;
 
 /**
- * An immutable mapping from {@link String} to <tt>boolean</tt>.
+ * An immutable mapping from {@link String} to <tt>boolean</tt>. Values are stored in a bitset that
+ * is indexed by the perfect hash codes of the keys, so that a value uses a single bit.
  */
 public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     private final PerfectHashDictionary d_keys;
-    private final boolean[] d_values;
+
+    // Bit i is set when the value of the key with hash code i + 1 is true.
+    private final long[] d_bits;
+
+    private final int d_trueCount;
 
     /**
      * A builder for {@link ImmutableStringBooleanMap}. Mappings
      * can be added to the builder using the {@link #put} and
      * {@link #putAll} methods. The {@link ImmutableStringBooleanMap}
      * can then be constructed using the {@link #build} method.
+     * <p/>
+     * Keys and values are stored in parallel arrays, values are not boxed.
+     * The keys are sorted when the map is constructed. If a key is put more
+     * than once, the last value is used.
      */
     public static class Builder {
-
-        private final TreeMap<String, Boolean> d_map;
+        private String[] d_keys;
+        private boolean[] d_values;
+        private int d_size;
 
         public Builder() {
-            d_map = new TreeMap<>();
+            d_keys = new String[16];
+            d_values = new boolean[16];
+            d_size = 0;
         }
 
         /**
          * Put a key/value pair.
          */
-        public synchronized Builder put(String key, Boolean value) {
-            d_map.put(key, value);
+        public synchronized Builder put(String key, boolean value) {
+            if (d_size == d_keys.length) {
+                d_keys = Arrays.copyOf(d_keys, d_keys.length * 2);
+                d_values = Arrays.copyOf(d_values, d_values.length * 2);
+            }
+
+            d_keys[d_size] = key;
+            d_values[d_size] = value;
+            ++d_size;
+
             return this;
         }
 
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized Builder put(String key, Boolean value) {
+            return put(key, (boolean) value);
+        }
+
         /**
          * Put all key/value pairs from a {@link Map}.
          */
         public synchronized Builder putAll(Map<String, Boolean> map) {
-            d_map.putAll(map);
+            for (Map.Entry<String, Boolean> entry : map.entrySet())
+                put(entry.getKey(), (boolean) entry.getValue());
+
             return this;
         }
 
@@ -64,15 +95,29 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
          * Construct a {@link ImmutableStringBooleanMap}.
          */
         public synchronized ImmutableStringBooleanMap build() throws DictionaryBuilderException {
-            PerfectHashDictionary dict = new DictionaryBuilder().addAll(d_map.keySet()).buildPerfectHash(false);
+            int[] order = KeyIndexSort.sortedIndex(d_keys, d_size);
+
+            DictionaryBuilder dictBuilder = new DictionaryBuilder();
+            long[] bits = new long[bitsetLength(d_size)];
 
-            boolean[] values = new boolean[d_map.size()];
+            int n = 0;
+            for (int i = 0; i < d_size; ++i) {
+                int idx = order[i];
 
-            int i = 0;
-            for (boolean value : d_map.values())
-                values[i++] = value;
+                // The sort is stable, so the last occurrence of a key has the value that was put last.
+                if (i + 1 < d_size && d_keys[order[i + 1]].equals(d_keys[idx]))
+                    continue;
 
-            return new ImmutableStringBooleanMap(dict, values);
+                dictBuilder.add(d_keys[idx]);
+                if (d_values[idx])
+                    bits[n >>> 6] |= 1L << n;
+                ++n;
+            }
+
+            PerfectHashDictionary dict = dictBuilder.buildPerfectHash(false);
+
+            return new ImmutableStringBooleanMap(dict, bits.length == bitsetLength(n) ? bits :
+                    Arrays.copyOf(bits, bitsetLength(n)));
         }
 
     }
@@ -86,22 +131,38 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
     public static class OrderedBuilder {
         private final DictionaryBuilder dictionaryBuilder;
 
-        private final ArrayList<Boolean> values;
+        private long[] bits;
+
+        private int size;
 
         public OrderedBuilder() {
             this.dictionaryBuilder = new DictionaryBuilder();
-            this.values = new ArrayList<>();
+            this.bits = new long[1];
+            this.size = 0;
         }
 
         /**
          * Put a key/value pair.
          */
-        public synchronized OrderedBuilder put(String key, Boolean value) throws DictionaryBuilderException {
+        public synchronized OrderedBuilder put(String key, boolean value) throws DictionaryBuilderException {
             dictionaryBuilder.add(key);
-            values.add(value);
+
+            if (size == bits.length * Long.SIZE)
+                bits = Arrays.copyOf(bits, bits.length * 2);
+            if (value)
+                bits[size >>> 6] |= 1L << size;
+            ++size;
+
             return this;
         }
 
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized OrderedBuilder put(String key, Boolean value) throws DictionaryBuilderException {
+            return put(key, (boolean) value);
+        }
+
         /**
          * Put all key/value pairs from a {@link Map}. The map should be an ordered map (by key). If
          * not, a {@link IllegalArgumentException} is thrown.
@@ -110,12 +171,11 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
             if (map.comparator() != null)
                 throw new IllegalArgumentException("SortedMap does not use the natural ordering of its keys");
 
-            values.ensureCapacity(values.size() + map.size());
+            if (bitsetLength(size + map.size()) > bits.length)
+                bits = Arrays.copyOf(bits, Math.max(bits.length * 2, bitsetLength(size + map.size())));
 
-            for (SortedMap.Entry<String, Boolean> entry: map.entrySet()) {
-                dictionaryBuilder.add(entry.getKey());
-                values.add(entry.getValue());
-            }
+            for (SortedMap.Entry<String, Boolean> entry: map.entrySet())
+                put(entry.getKey(), (boolean) entry.getValue());
 
             return this;
         }
@@ -126,21 +186,135 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
         public synchronized ImmutableStringBooleanMap build() throws DictionaryBuilderException {
             PerfectHashDictionary dict = dictionaryBuilder.buildPerfectHash(false);
 
-            boolean[] arr = new boolean[values.size()];
+            return new ImmutableStringBooleanMap(dict, Arrays.copyOf(bits, bitsetLength(size)));
+        }
+    }
+
+    /**
+     * A key/value pair of which the key is within a certain edit distance of a query. Fuzzy
+     * entries are returned by {@link ImmutableStringBooleanMap#fuzzyGet(String, int)}.
+     */
+    public static class FuzzyEntry {
+        private final String d_key;
+        private final boolean d_value;
+        private final int d_distance;
+
+        private FuzzyEntry(String key, boolean value, int distance) {
+            d_key = key;
+            d_value = value;
+            d_distance = distance;
+        }
+
+        /**
+         * Get the Levenshtein distance between the key and the query.
+         */
+        public int getDistance() {
+            return d_distance;
+        }
+
+        /**
+         * Get the key.
+         */
+        public String getKey() {
+            return d_key;
+        }
 
-            for (int i = 0; i < values.size(); ++i)
-                arr[i] = values.get(i);
+        /**
+         * Get the value.
+         */
+        public boolean getValue() {
+            return d_value;
+        }
 
-            return new ImmutableStringBooleanMap(dict, arr);
+        @Override
+        public String toString() {
+            return String.format("%s=%s (%d)", d_key, d_value, d_distance);
+        }
+    }
+
+    /**
+     * A visitor of the key/value pairs of the mapping, see {@link #forEachEntry(EntryVisitor)}.
+     */
+    public interface EntryVisitor {
+        /**
+         * Visit a key and its value.
+         */
+        void visit(String key, boolean value);
+    }
+
+    /**
+     * A view of the mappings of a range of keys, see {@link #prefixMap(String)} and
+     * {@link #subMap(String, String)}. Values are read directly from the bitset of the map.
+     */
+    public class SubMap extends AbstractRangeMap<Boolean> {
+        private SubMap(PerfectHashDictionary keys, int from, int to) {
+            super(keys, from, to);
+        }
+
+        /**
+         * Get the number of keys in the view that map to <tt>true</tt>. The bits of the
+         * range are counted a word at a time.
+         */
+        public int countTrue() {
+            int from = d_from - 1;
+            int to = d_to - 1;
+            if (from == to)
+                return 0;
+
+            int firstWord = from >>> 6;
+            int lastWord = (to - 1) >>> 6;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> (-to & 63);
+
+            if (firstWord == lastWord)
+                return Long.bitCount(d_bits[firstWord] & firstMask & lastMask);
+
+            int count = Long.bitCount(d_bits[firstWord] & firstMask);
+            for (int word = firstWord + 1; word < lastWord; ++word)
+                count += Long.bitCount(d_bits[word]);
+
+            return count + Long.bitCount(d_bits[lastWord] & lastMask);
+        }
+
+        /**
+         * Get the value associated with a key, returning a default value is it
+         * is not in the view.
+         */
+        public boolean getOrElse(String key, boolean defaultValue) {
+            int hash = d_keys.number(key);
+            return inRange(hash) ? value(hash - 1) : defaultValue;
+        }
+
+        /**
+         * Store the values of the view in key order in <tt>dest</tt>, starting at <tt>destOffset</tt>.
+         */
+        public void getValues(boolean[] dest, int destOffset) {
+            getRangeByNumber(d_from, d_to, dest, destOffset);
+        }
+
+        /**
+         * Get the values of the view in key order.
+         */
+        public boolean[] toValueArray() {
+            boolean[] values = new boolean[d_to - d_from];
+            getValues(values, 0);
+            return values;
+        }
+
+        @Override
+        Boolean valueByNumber(int number) {
+            return value(number - 1);
         }
     }
 
     private class EntrySet extends AbstractSet<Entry<String, Boolean>> {
         private class EntrySetIterator implements Iterator<Entry<String, Boolean>> {
             private final Iterator<String> d_keyIter;
+            private int d_idx;
 
             public EntrySetIterator() {
                 d_keyIter = d_keys.iterator();
+                d_idx = 0;
             }
 
             @Override
@@ -150,9 +324,9 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
 
             @Override
             public Entry<String, Boolean> next() {
+                // Keys are enumerated in the order of their perfect hash codes.
                 String key = d_keyIter.next();
-                int idx = d_keys.number(key) - 1;
-                return new SimpleEntry<>(key, d_values[idx]);
+                return new SimpleEntry<>(key, value(d_idx++));
             }
 
             @Override
@@ -187,7 +361,7 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
             if (hash == -1)
                 return false;
 
-            return d_values[hash - 1] == value;
+            return value(hash - 1) == value;
 
         }
 
@@ -211,18 +385,23 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
     private class BooleanArrayList extends AbstractList<Boolean> {
         @Override
         public Boolean get(int index) {
-            return d_values[index];
+            return value(index);
         }
 
         @Override
         public int size() {
-            return d_values.length;
+            return d_keys.size();
         }
     }
 
-    private ImmutableStringBooleanMap(PerfectHashDictionary keys, boolean[] values) {
+    private ImmutableStringBooleanMap(PerfectHashDictionary keys, long[] bits) {
         d_keys = keys;
-        d_values = values;
+        d_bits = bits;
+
+        int trueCount = 0;
+        for (long word : bits)
+            trueCount += Long.bitCount(word);
+        d_trueCount = trueCount;
     }
 
     @Override
@@ -230,6 +409,14 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Get the number of keys that map to <tt>true</tt>. This count is computed when the
+     * map is constructed.
+     */
+    public int countTrue() {
+        return d_trueCount;
+    }
+
     @Override
     public boolean containsKey(Object o) {
         return d_keys.contains(o);
@@ -251,7 +438,35 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
         if (hashcode == -1)
             return null;
 
-        return d_values[hashcode - 1];
+        return value(hashcode - 1);
+    }
+
+    /**
+     * Get the value of the key with the given perfect hash code in {@link #keySet()}.
+     * This avoids a second lookup when the hash code is known, e.g. after a traversal
+     * of the key automaton.
+     *
+     * @throws ArrayIndexOutOfBoundsException If there is no key with the hash code.
+     */
+    public boolean getByNumber(int number) {
+        return value(number - 1);
+    }
+
+    /**
+     * Get the values of the keys with perfect hash codes in [<tt>fromNumber</tt>, <tt>toNumber</tt>)
+     * and store them in <tt>dest</tt>, starting at <tt>destOffset</tt>. The range can be obtained
+     * using {@link PerfectHashDictionary#hashRange(CharSequence)} to decode the values of all keys
+     * with a given prefix. Values are decoded in one pass, without a lookup per key.
+     *
+     * @throws IndexOutOfBoundsException If the range is not within the hash codes of the keys.
+     */
+    public void getRangeByNumber(int fromNumber, int toNumber, boolean[] dest, int destOffset) {
+        if (fromNumber < 1 || toNumber > d_keys.size() + 1 || fromNumber > toNumber)
+            throw new IndexOutOfBoundsException(String.format("Invalid hash code range: [%d, %d)",
+                    fromNumber, toNumber));
+
+        for (int i = fromNumber - 1; i < toNumber - 1; ++i)
+            dest[destOffset++] = (d_bits[i >>> 6] & (1L << i)) != 0;
     }
 
     /**
@@ -263,7 +478,75 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
         if (hash == -1)
             return defaultValue;
 
-        return d_values[hash - 1];
+        return value(hash - 1);
+    }
+
+    /**
+     * Get the values associated with a batch of keys. The value of <tt>keys[i]</tt> is stored in
+     * <tt>out[i]</tt>, or <tt>missing</tt> if the key is not in the mapping. The perfect hash codes
+     * of the keys are computed with {@link PerfectHashDictionary#numbers(CharSequence[], int[])},
+     * which interleaves the traversals of the automaton for several keys.
+     * <p/>
+     * This method allocates an array for the hash codes, use
+     * {@link #getAll(CharSequence[], boolean[], boolean, int[])} to avoid an allocation per batch.
+     *
+     * @throws IllegalArgumentException If <tt>out</tt> is shorter than <tt>keys</tt>.
+     */
+    public void getAll(CharSequence[] keys, boolean[] out, boolean missing) {
+        getAll(keys, out, missing, new int[keys.length]);
+    }
+
+    /**
+     * Get the values associated with a batch of keys, see {@link #getAll(CharSequence[], boolean[], boolean)}.
+     * The perfect hash codes are stored in the caller-provided <tt>numbers</tt> array, which can be
+     * reused for every batch.
+     *
+     * @throws IllegalArgumentException If <tt>out</tt> or <tt>numbers</tt> is shorter than <tt>keys</tt>.
+     */
+    public void getAll(CharSequence[] keys, boolean[] out, boolean missing, int[] numbers) {
+        if (out.length < keys.length)
+            throw new IllegalArgumentException(String.format("Output array is too short: %d < %d",
+                    out.length, keys.length));
+
+        d_keys.numbers(keys, numbers);
+
+        for (int i = 0; i < keys.length; ++i)
+            out[i] = numbers[i] == -1 ? missing : value(numbers[i] - 1);
+    }
+
+    /**
+     * Visit all key/value pairs in key order. Since keys are enumerated in the order of their
+     * perfect hash codes, the values are read by position from the bitset, without a lookup
+     * per key and without boxing.
+     */
+    public void forEachEntry(EntryVisitor visitor) {
+        Iterator<String> keyIter = d_keys.iterator();
+        for (int i = 0; keyIter.hasNext(); ++i)
+            visitor.visit(keyIter.next(), (d_bits[i >>> 6] & (1L << i)) != 0);
+    }
+
+    /**
+     * Get the entries of which the keys are within the given Levenshtein distance of a
+     * key. The maximum distance can currently be 1 or 2. The entries are ordered by key.
+     */
+    public List<FuzzyEntry> fuzzyGet(String key, int maxDistance) {
+        return fuzzyGet(new LevenshteinAutomaton(key, maxDistance));
+    }
+
+    /**
+     * Get the entries of which the keys are accepted by a Levenshtein automaton. The
+     * values are retrieved using the perfect hash codes that are computed during the
+     * intersection of the automaton and the keys. The entries are ordered by key.
+     */
+    public List<FuzzyEntry> fuzzyGet(LevenshteinAutomaton automaton) {
+        List<LevenshteinMatch> matches = automaton.intersectionMatches(d_keys);
+
+        List<FuzzyEntry> entries = new ArrayList<>(matches.size());
+        for (LevenshteinMatch match : matches)
+            entries.add(new FuzzyEntry(match.getSequence(), value(match.getNumber() - 1),
+                    match.getDistance()));
+
+        return entries;
     }
 
     @Override
@@ -271,11 +554,34 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
         return d_keys.isEmpty();
     }
 
+    /**
+     * Get the keys of the mapping. The keys are stored in a perfect hash automaton, the
+     * hash code of a key gives the position of its value.
+     */
     @Override
-    public Set<String> keySet() {
+    public PerfectHashDictionary keySet() {
         return d_keys;
     }
 
+    /**
+     * Get a view of the mappings of which the keys start with the given prefix. The range of
+     * hash codes of these keys is computed once, when the view is created.
+     */
+    public SubMap prefixMap(String prefix) {
+        int[] range = d_keys.hashRange(prefix);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
+    /**
+     * Get a view of the mappings of which the keys are in [<tt>fromKey</tt>, <tt>toKey</tt>).
+     *
+     * @throws IllegalArgumentException If <tt>fromKey</tt> is larger than <tt>toKey</tt>.
+     */
+    public SubMap subMap(String fromKey, String toKey) {
+        int[] range = AbstractRangeMap.keyRange(d_keys, fromKey, toKey);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
     @Override
     public Boolean put(String k, Boolean v) {
         throw new UnsupportedOperationException();
@@ -303,8 +609,73 @@ public class ImmutableStringBooleanMap extends AbstractMap<String, Boolean> impl
         return d_keys.iterator();
     }
 
+    /**
+     * Get the smallest perfect hash code that is at least <tt>number</tt> and of which the
+     * key maps to <tt>true</tt>. Keys that map to <tt>false</tt> are skipped a word of the
+     * bitset at a time.
+     *
+     * @param number The hash code to start from.
+     * @return The hash code, or <tt>-1</tt> if there are no further keys that map to <tt>true</tt>.
+     */
+    public int nextTrueNumber(int number) {
+        int index = Math.max(number, 1) - 1;
+        if (index >= d_keys.size())
+            return -1;
+
+        int word = index >>> 6;
+        long bits = d_bits[word] & (-1L << index);
+
+        while (bits == 0) {
+            if (++word == d_bits.length)
+                return -1;
+            bits = d_bits[word];
+        }
+
+        return (word << 6) + Long.numberOfTrailingZeros(bits) + 1;
+    }
+
+    /**
+     * Get an iterator over the keys that map to <tt>true</tt>, in key order.
+     */
+    public Iterator<String> trueKeyIterator() {
+        return new Iterator<String>() {
+            private int d_next = nextTrueNumber(1);
+
+            @Override
+            public boolean hasNext() {
+                return d_next != -1;
+            }
+
+            @Override
+            public String next() {
+                if (d_next == -1)
+                    throw new NoSuchElementException();
+
+                String key = d_keys.sequence(d_next);
+                d_next = nextTrueNumber(d_next + 1);
+                return key;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     @Override
     public Collection<Boolean> values() {
         return new BooleanArrayList();
     }
+
+    private boolean value(int index) {
+        if (index < 0 || index >= d_keys.size())
+            throw new ArrayIndexOutOfBoundsException(index);
+
+        return (d_bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int bitsetLength(int size) {
+        return (size + Long.SIZE - 1) >>> 6;
+    }
 }
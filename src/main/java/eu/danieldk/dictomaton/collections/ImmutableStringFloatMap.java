@@ -17,6 +17,8 @@ package eu.danieldk.dictomaton.collections;
 import eu.danieldk.dictomaton.DictionaryBuilder;
 import eu.danieldk.dictomaton.DictionaryBuilderException;
 import eu.danieldk.dictomaton.PerfectHashDictionary;
+import eu.danieldk.dictomaton.levenshtein.LevenshteinAutomaton;
+import eu.danieldk.dictomaton.levenshtein.LevenshteinMatch;
 
 import java.io.Serializable;
 import java.util.*;
@@ -28,35 +30,88 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
     private static final long serialVersionUID = 1L;
 
     private final PerfectHashDictionary d_keys;
+
+    // Values are stored either in a plain array or, when packing was requested and saves space,
+    // in a frame-of-reference array. Exactly one of these fields is non-null.
     private final float[] d_values;
+    private final FrameOfReferenceArray d_packedValues;
+
+    // Quantized values, if quantization was requested. In that case, the other value fields are null.
+    private final QuantizedArray d_quantizedValues;
 
     /**
      * A builder for {@link ImmutableStringFloatMap}. Mappings
      * can be added to the builder using the {@link #put} and
      * {@link #putAll} methods. The {@link ImmutableStringFloatMap}
      * can then be constructed using the {@link #build} method.
+     * <p/>
+     * Keys and values are stored in parallel arrays, values are not boxed.
+     * The keys are sorted when the map is constructed. If a key is put more
+     * than once, the last value is used.
      */
     public static class Builder {
-
-        private final TreeMap<String, Float> d_map;
+        private String[] d_keys;
+        private float[] d_values;
+        private int d_size;
+        private boolean d_packValues;
+        private ValueQuantization d_quantization;
 
         public Builder() {
-            d_map = new TreeMap<>();
+            d_keys = new String[16];
+            d_values = new float[16];
+            d_size = 0;
+            d_packValues = false;
+        }
+
+        /**
+         * Store values using bit packing with frame-of-reference coding, if that uses less
+         * memory than a plain array. This is effective when the values fit in a few bits or
+         * lie within narrow ranges.
+         */
+        public synchronized Builder packValues() {
+            d_packValues = true;
+            return this;
+        }
+
+        /**
+         * Store values lossily using the given quantization. The largest error introduced
+         * by quantization is available through {@link #maxQuantizationError()}.
+         */
+        public synchronized Builder quantizeValues(ValueQuantization quantization) {
+            d_quantization = quantization;
+            return this;
         }
 
         /**
          * Put a key/value pair.
          */
-        public synchronized Builder put(String key, Float value) {
-            d_map.put(key, value);
+        public synchronized Builder put(String key, float value) {
+            if (d_size == d_keys.length) {
+                d_keys = Arrays.copyOf(d_keys, d_keys.length * 2);
+                d_values = Arrays.copyOf(d_values, d_values.length * 2);
+            }
+
+            d_keys[d_size] = key;
+            d_values[d_size] = value;
+            ++d_size;
+
             return this;
         }
 
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized Builder put(String key, Float value) {
+            return put(key, (float) value);
+        }
+
         /**
          * Put all key/value pairs from a {@link Map}.
          */
         public synchronized Builder putAll(Map<String, Float> map) {
-            d_map.putAll(map);
+            for (Map.Entry<String, Float> entry : map.entrySet())
+                put(entry.getKey(), (float) entry.getValue());
+
             return this;
         }
 
@@ -64,15 +119,31 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
          * Construct a {@link ImmutableStringFloatMap}.
          */
         public synchronized ImmutableStringFloatMap build() throws DictionaryBuilderException {
-            PerfectHashDictionary dict = new DictionaryBuilder().addAll(d_map.keySet()).buildPerfectHash(false);
+            int[] order = KeyIndexSort.sortedIndex(d_keys, d_size);
+
+            DictionaryBuilder dictBuilder = new DictionaryBuilder();
+            float[] values = new float[d_size];
 
-            float[] values = new float[d_map.size()];
+            int n = 0;
+            for (int i = 0; i < d_size; ++i) {
+                int idx = order[i];
+
+                // The sort is stable, so the last occurrence of a key has the value that was put last.
+                if (i + 1 < d_size && d_keys[order[i + 1]].equals(d_keys[idx]))
+                    continue;
+
+                dictBuilder.add(d_keys[idx]);
+                values[n++] = d_values[idx];
+            }
 
-            int i = 0;
-            for (float value : d_map.values())
-                values[i++] = value;
+            PerfectHashDictionary dict = dictBuilder.buildPerfectHash(false);
+            if (n != values.length)
+                values = Arrays.copyOf(values, n);
 
-            return new ImmutableStringFloatMap(dict, values);
+            if (d_quantization != null)
+                return new ImmutableStringFloatMap(dict, values, d_quantization);
+
+            return new ImmutableStringFloatMap(dict, values, d_packValues);
         }
 
     }
@@ -86,22 +157,60 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
     public static class OrderedBuilder {
         private final DictionaryBuilder dictionaryBuilder;
 
-        private final ArrayList<Float> values;
+        private float[] values;
+
+        private int size;
+
+        private boolean packValues;
+
+        private ValueQuantization quantization;
 
         public OrderedBuilder() {
             this.dictionaryBuilder = new DictionaryBuilder();
-            this.values = new ArrayList<>();
+            this.values = new float[16];
+            this.size = 0;
+            this.packValues = false;
+        }
+
+        /**
+         * Store values using bit packing with frame-of-reference coding, if that uses less
+         * memory than a plain array. This is effective when the values fit in a few bits or
+         * lie within narrow ranges.
+         */
+        public synchronized OrderedBuilder packValues() {
+            packValues = true;
+            return this;
+        }
+
+        /**
+         * Store values lossily using the given quantization. The largest error introduced
+         * by quantization is available through {@link #maxQuantizationError()}.
+         */
+        public synchronized OrderedBuilder quantizeValues(ValueQuantization quantization) {
+            this.quantization = quantization;
+            return this;
         }
 
         /**
          * Put a key/value pair.
          */
-        public synchronized OrderedBuilder put(String key, Float value) throws DictionaryBuilderException {
+        public synchronized OrderedBuilder put(String key, float value) throws DictionaryBuilderException {
             dictionaryBuilder.add(key);
-            values.add(value);
+
+            if (size == values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[size++] = value;
+
             return this;
         }
 
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized OrderedBuilder put(String key, Float value) throws DictionaryBuilderException {
+            return put(key, (float) value);
+        }
+
         /**
          * Put all key/value pairs from a {@link Map}. The map should be an ordered map (by key). If
          * not, a {@link IllegalArgumentException} is thrown.
@@ -110,12 +219,11 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
             if (map.comparator() != null)
                 throw new IllegalArgumentException("SortedMap does not use the natural ordering of its keys");
 
-            values.ensureCapacity(values.size() + map.size());
+            if (size + map.size() > values.length)
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + map.size()));
 
-            for (SortedMap.Entry<String, Float> entry: map.entrySet()) {
-                dictionaryBuilder.add(entry.getKey());
-                values.add(entry.getValue());
-            }
+            for (SortedMap.Entry<String, Float> entry: map.entrySet())
+                put(entry.getKey(), (float) entry.getValue());
 
             return this;
         }
@@ -126,21 +234,114 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
         public synchronized ImmutableStringFloatMap build() throws DictionaryBuilderException {
             PerfectHashDictionary dict = dictionaryBuilder.buildPerfectHash(false);
 
-            float[] arr = new float[values.size()];
+            if (quantization != null)
+                return new ImmutableStringFloatMap(dict, Arrays.copyOf(values, size), quantization);
+
+            return new ImmutableStringFloatMap(dict, Arrays.copyOf(values, size), packValues);
+        }
+    }
+
+    /**
+     * A key/value pair of which the key is within a certain edit distance of a query. Fuzzy
+     * entries are returned by {@link ImmutableStringFloatMap#fuzzyGet(String, int)}.
+     */
+    public static class FuzzyEntry {
+        private final String d_key;
+        private final float d_value;
+        private final int d_distance;
+
+        private FuzzyEntry(String key, float value, int distance) {
+            d_key = key;
+            d_value = value;
+            d_distance = distance;
+        }
+
+        /**
+         * Get the Levenshtein distance between the key and the query.
+         */
+        public int getDistance() {
+            return d_distance;
+        }
+
+        /**
+         * Get the key.
+         */
+        public String getKey() {
+            return d_key;
+        }
+
+        /**
+         * Get the value.
+         */
+        public float getValue() {
+            return d_value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s=%s (%d)", d_key, d_value, d_distance);
+        }
+    }
+
+    /**
+     * A visitor of the key/value pairs of the mapping, see {@link #forEachEntry(EntryVisitor)}.
+     */
+    public interface EntryVisitor {
+        /**
+         * Visit a key and its value.
+         */
+        void visit(String key, float value);
+    }
+
+    /**
+     * A view of the mappings of a range of keys, see {@link #prefixMap(String)} and
+     * {@link #subMap(String, String)}. Values are read directly from the value storage
+     * of the map.
+     */
+    public class SubMap extends AbstractRangeMap<Float> {
+        private SubMap(PerfectHashDictionary keys, int from, int to) {
+            super(keys, from, to);
+        }
+
+        /**
+         * Get the value associated with a key, returning a default value is it
+         * is not in the view.
+         */
+        public float getOrElse(String key, float defaultValue) {
+            int hash = d_keys.number(key);
+            return inRange(hash) ? value(hash - 1) : defaultValue;
+        }
 
-            for (int i = 0; i < values.size(); ++i)
-                arr[i] = values.get(i);
+        /**
+         * Store the values of the view in key order in <tt>dest</tt>, starting at <tt>destOffset</tt>.
+         */
+        public void getValues(float[] dest, int destOffset) {
+            getRangeByNumber(d_from, d_to, dest, destOffset);
+        }
+
+        /**
+         * Get the values of the view in key order.
+         */
+        public float[] toValueArray() {
+            float[] values = new float[d_to - d_from];
+            getValues(values, 0);
+            return values;
+        }
 
-            return new ImmutableStringFloatMap(dict, arr);
+        @Override
+        Float valueByNumber(int number) {
+            return value(number - 1);
         }
     }
 
     private class EntrySet extends AbstractSet<Entry<String, Float>> {
         private class EntrySetIterator implements Iterator<Entry<String, Float>> {
             private final Iterator<String> d_keyIter;
+            private int d_idx;
 
             public EntrySetIterator() {
                 d_keyIter = d_keys.iterator();
+                d_idx = 0;
             }
 
             @Override
@@ -150,9 +351,9 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
 
             @Override
             public Entry<String, Float> next() {
+                // Keys are enumerated in the order of their perfect hash codes.
                 String key = d_keyIter.next();
-                int idx = d_keys.number(key) - 1;
-                return new SimpleEntry<>(key, d_values[idx]);
+                return new SimpleEntry<>(key, value(d_idx++));
             }
 
             @Override
@@ -187,7 +388,7 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
             if (hash == -1)
                 return false;
 
-            return d_values[hash - 1] == value;
+            return value(hash - 1) == value;
 
         }
 
@@ -211,18 +412,45 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
     private class FloatArrayList extends AbstractList<Float> {
         @Override
         public Float get(int index) {
-            return d_values[index];
+            return value(index);
         }
 
         @Override
         public int size() {
-            return d_values.length;
+            return d_keys.size();
         }
     }
 
-    private ImmutableStringFloatMap(PerfectHashDictionary keys, float[] values) {
+    private ImmutableStringFloatMap(PerfectHashDictionary keys, float[] values, boolean packValues) {
         d_keys = keys;
-        d_values = values;
+
+        FrameOfReferenceArray packed = null;
+        if (packValues) {
+            long[] longValues = new long[values.length];
+            for (int i = 0; i < values.length; ++i)
+                longValues[i] = toLong(values[i]);
+
+            packed = new FrameOfReferenceArray(longValues);
+            if (packed.sizeInBytes() >= (long) values.length * 4)
+                packed = null;
+        }
+
+        d_values = packed == null ? values : null;
+        d_packedValues = packed;
+        d_quantizedValues = null;
+    }
+
+    private ImmutableStringFloatMap(PerfectHashDictionary keys, float[] values,
+            ValueQuantization quantization) {
+        d_keys = keys;
+
+        double[] doubleValues = new double[values.length];
+        for (int i = 0; i < values.length; ++i)
+            doubleValues[i] = values[i];
+
+        d_values = null;
+        d_packedValues = null;
+        d_quantizedValues = quantization.quantize(doubleValues);
     }
 
     @Override
@@ -251,7 +479,53 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
         if (hashcode == -1)
             return null;
 
-        return d_values[hashcode - 1];
+        return value(hashcode - 1);
+    }
+
+    /**
+     * Get the value of the key with the given perfect hash code in {@link #keySet()}.
+     * This avoids a second lookup when the hash code is known, e.g. after a traversal
+     * of the key automaton.
+     *
+     * @throws ArrayIndexOutOfBoundsException If there is no key with the hash code.
+     */
+    public float getByNumber(int number) {
+        return value(number - 1);
+    }
+
+    /**
+     * Get the values of the keys with perfect hash codes in [<tt>fromNumber</tt>, <tt>toNumber</tt>)
+     * and store them in <tt>dest</tt>, starting at <tt>destOffset</tt>. The range can be obtained
+     * using {@link PerfectHashDictionary#hashRange(CharSequence)} to decode the values of all keys
+     * with a given prefix. Values are decoded in one pass, without a lookup per key.
+     *
+     * @throws IndexOutOfBoundsException If the range is not within the hash codes of the keys.
+     */
+    public void getRangeByNumber(int fromNumber, int toNumber, float[] dest, int destOffset) {
+        if (fromNumber < 1 || toNumber > d_keys.size() + 1 || fromNumber > toNumber)
+            throw new IndexOutOfBoundsException(String.format("Invalid hash code range: [%d, %d)",
+                    fromNumber, toNumber));
+
+        if (d_quantizedValues != null) {
+            d_quantizedValues.decode(fromNumber - 1, toNumber - 1, dest, destOffset);
+            return;
+        }
+
+        if (d_values != null) {
+            System.arraycopy(d_values, fromNumber - 1, dest, destOffset, toNumber - fromNumber);
+            return;
+        }
+
+        for (int i = fromNumber - 1; i < toNumber - 1; ++i)
+            dest[destOffset++] = fromLong(d_packedValues.get(i));
+    }
+
+    /**
+     * Get the largest absolute error of a value that was introduced by quantization. If the
+     * values are not quantized, the error is <tt>0</tt>.
+     */
+    public double maxQuantizationError() {
+        return d_quantizedValues == null ? 0 : d_quantizedValues.maxError();
     }
 
     /**
@@ -263,7 +537,75 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
         if (hash == -1)
             return defaultValue;
 
-        return d_values[hash - 1];
+        return value(hash - 1);
+    }
+
+    /**
+     * Get the values associated with a batch of keys. The value of <tt>keys[i]</tt> is stored in
+     * <tt>out[i]</tt>, or <tt>missing</tt> if the key is not in the mapping. The perfect hash codes
+     * of the keys are computed with {@link PerfectHashDictionary#numbers(CharSequence[], int[])},
+     * which interleaves the traversals of the automaton for several keys.
+     * <p/>
+     * This method allocates an array for the hash codes, use
+     * {@link #getAll(CharSequence[], float[], float, int[])} to avoid an allocation per batch.
+     *
+     * @throws IllegalArgumentException If <tt>out</tt> is shorter than <tt>keys</tt>.
+     */
+    public void getAll(CharSequence[] keys, float[] out, float missing) {
+        getAll(keys, out, missing, new int[keys.length]);
+    }
+
+    /**
+     * Get the values associated with a batch of keys, see {@link #getAll(CharSequence[], float[], float)}.
+     * The perfect hash codes are stored in the caller-provided <tt>numbers</tt> array, which can be
+     * reused for every batch.
+     *
+     * @throws IllegalArgumentException If <tt>out</tt> or <tt>numbers</tt> is shorter than <tt>keys</tt>.
+     */
+    public void getAll(CharSequence[] keys, float[] out, float missing, int[] numbers) {
+        if (out.length < keys.length)
+            throw new IllegalArgumentException(String.format("Output array is too short: %d < %d",
+                    out.length, keys.length));
+
+        d_keys.numbers(keys, numbers);
+
+        for (int i = 0; i < keys.length; ++i)
+            out[i] = numbers[i] == -1 ? missing : value(numbers[i] - 1);
+    }
+
+    /**
+     * Visit all key/value pairs in key order. Since keys are enumerated in the order of their
+     * perfect hash codes, the values are read by position, without a lookup per key and
+     * without boxing.
+     */
+    public void forEachEntry(EntryVisitor visitor) {
+        Iterator<String> keyIter = d_keys.iterator();
+        for (int i = 0; keyIter.hasNext(); ++i)
+            visitor.visit(keyIter.next(), value(i));
+    }
+
+    /**
+     * Get the entries of which the keys are within the given Levenshtein distance of a
+     * key. The maximum distance can currently be 1 or 2. The entries are ordered by key.
+     */
+    public List<FuzzyEntry> fuzzyGet(String key, int maxDistance) {
+        return fuzzyGet(new LevenshteinAutomaton(key, maxDistance));
+    }
+
+    /**
+     * Get the entries of which the keys are accepted by a Levenshtein automaton. The
+     * values are retrieved using the perfect hash codes that are computed during the
+     * intersection of the automaton and the keys. The entries are ordered by key.
+     */
+    public List<FuzzyEntry> fuzzyGet(LevenshteinAutomaton automaton) {
+        List<LevenshteinMatch> matches = automaton.intersectionMatches(d_keys);
+
+        List<FuzzyEntry> entries = new ArrayList<>(matches.size());
+        for (LevenshteinMatch match : matches)
+            entries.add(new FuzzyEntry(match.getSequence(), value(match.getNumber() - 1),
+                    match.getDistance()));
+
+        return entries;
     }
 
     @Override
@@ -271,11 +613,34 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
         return d_keys.isEmpty();
     }
 
+    /**
+     * Get the keys of the mapping. The keys are stored in a perfect hash automaton, the
+     * hash code of a key gives the position of its value.
+     */
     @Override
-    public Set<String> keySet() {
+    public PerfectHashDictionary keySet() {
         return d_keys;
     }
 
+    /**
+     * Get a view of the mappings of which the keys start with the given prefix. The range of
+     * hash codes of these keys is computed once, when the view is created.
+     */
+    public SubMap prefixMap(String prefix) {
+        int[] range = d_keys.hashRange(prefix);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
+    /**
+     * Get a view of the mappings of which the keys are in [<tt>fromKey</tt>, <tt>toKey</tt>).
+     *
+     * @throws IllegalArgumentException If <tt>fromKey</tt> is larger than <tt>toKey</tt>.
+     */
+    public SubMap subMap(String fromKey, String toKey) {
+        int[] range = AbstractRangeMap.keyRange(d_keys, fromKey, toKey);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
     @Override
     public Float put(String k, Float v) {
         throw new UnsupportedOperationException();
@@ -307,4 +672,26 @@ public class ImmutableStringFloatMap extends AbstractMap<String, Float> implemen
     public Collection<Float> values() {
         return new FloatArrayList();
     }
+
+    private float value(int index) {
+        if (d_values != null)
+            return d_values[index];
+
+        if (d_quantizedValues != null)
+            return fromDouble(d_quantizedValues.get(index));
+
+        return fromLong(d_packedValues.get(index));
+    }
+
+    private static long toLong(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    private static float fromLong(long value) {
+        return Float.intBitsToFloat((int) value);
+    }
+
+    private static float fromDouble(double value) {
+        return (float) value;
+    }
 }
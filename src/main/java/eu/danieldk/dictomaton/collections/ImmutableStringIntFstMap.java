@@ -0,0 +1,633 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * An immutable mapping from {@link String} to <tt>int</tt> that is stored as a minimized finite state
+ * transducer. Transitions carry outputs and the value of a key is the sum of the outputs on its path,
+ * plus the output of the final state. Since outputs are pushed toward the start state, values that
+ * are correlated with the key order share transitions. For instance, if the values of the keys are
+ * their ranks, the transducer has the same shape as the key automaton and no per-key value storage
+ * is needed.
+ * <p/>
+ * The transducer is constructed incrementally from sorted keys, using the algorithm of Daciuk et al.
+ * that is also used by {@link eu.danieldk.dictomaton.DictionaryBuilder}, extended with output pushing
+ * as described in:
+ * <p/>
+ * <i>Direct Construction of Minimal Acyclic Subsequential Transducers</i>, Stoyan Mihov and Denis
+ * Maurel, 2001, Lecture Notes in Computer Science
+ */
+public class ImmutableStringIntFstMap extends AbstractMap<String, Integer> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Marker for absent keys in lookup, outside the range of int values.
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private final int d_size;
+    private final FrameOfReferenceArray d_stateOffsets;
+    private final char[] d_transitionChars;
+    private final FrameOfReferenceArray d_transitionTo;
+    private final FrameOfReferenceArray d_transitionOutputs;
+    private final BitSet d_finalStates;
+    private final FrameOfReferenceArray d_finalOutputs;
+
+    /**
+     * A builder for {@link ImmutableStringIntFstMap}. Mappings can be added to the builder using the
+     * {@link #put} and {@link #putAll} methods. The {@link ImmutableStringIntFstMap} can then be
+     * constructed using the {@link #build} method. The keys are sorted when the map is constructed.
+     * If a key is put more than once, the last value is used.
+     */
+    public static class Builder {
+        private String[] d_keys;
+        private int[] d_values;
+        private int d_size;
+
+        public Builder() {
+            d_keys = new String[16];
+            d_values = new int[16];
+            d_size = 0;
+        }
+
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized Builder put(String key, int value) {
+            if (d_size == d_keys.length) {
+                d_keys = Arrays.copyOf(d_keys, d_keys.length * 2);
+                d_values = Arrays.copyOf(d_values, d_values.length * 2);
+            }
+
+            d_keys[d_size] = key;
+            d_values[d_size] = value;
+            ++d_size;
+
+            return this;
+        }
+
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized Builder put(String key, Integer value) {
+            return put(key, (int) value);
+        }
+
+        /**
+         * Put all key/value pairs from a {@link Map}.
+         */
+        public synchronized Builder putAll(Map<String, Integer> map) {
+            for (Map.Entry<String, Integer> entry : map.entrySet())
+                put(entry.getKey(), (int) entry.getValue());
+
+            return this;
+        }
+
+        /**
+         * Construct a {@link ImmutableStringIntFstMap}.
+         */
+        public synchronized ImmutableStringIntFstMap build() throws DictionaryBuilderException {
+            int[] order = KeyIndexSort.sortedIndex(d_keys, d_size);
+
+            OrderedBuilder builder = new OrderedBuilder();
+            for (int i = 0; i < d_size; ++i) {
+                int idx = order[i];
+
+                // The sort is stable, so the last occurrence of a key has the value that was put last.
+                if (i + 1 < d_size && d_keys[order[i + 1]].equals(d_keys[idx]))
+                    continue;
+
+                builder.put(d_keys[idx], d_values[idx]);
+            }
+
+            return builder.build();
+        }
+    }
+
+    /**
+     * A builder for {@link ImmutableStringIntFstMap}. Mappings can be added to the builder using the
+     * {@link #put} and {@link #putAll} methods. The {@link ImmutableStringIntFstMap} can then be
+     * constructed using the {@link #build} method. <b>Note:</b> This builder assumes that entries are
+     * put in key order. States are minimized as soon as no further keys can pass through them, so only
+     * the path of the last key is kept uncompressed.
+     */
+    public static class OrderedBuilder {
+        private final Map<State, State> d_register;
+
+        // The states on the path of the previous key.
+        private State[] d_frontier;
+
+        private String d_prevKey;
+        private int d_size;
+        private boolean d_finalized;
+
+        public OrderedBuilder() {
+            d_register = new HashMap<>();
+            d_frontier = new State[16];
+            for (int i = 0; i < d_frontier.length; ++i)
+                d_frontier[i] = new State();
+            d_size = 0;
+            d_finalized = false;
+        }
+
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized OrderedBuilder put(String key, int value) throws DictionaryBuilderException {
+            if (d_finalized)
+                throw new DictionaryBuilderException("Cannot add a key to a finalized builder.");
+
+            if (d_prevKey != null && d_prevKey.compareTo(key) >= 0)
+                throw new DictionaryBuilderException(String.format("Keys are not added in lexicographic order: %s %s",
+                        d_prevKey, key));
+
+            if (key.length() + 1 > d_frontier.length) {
+                int oldLength = d_frontier.length;
+                d_frontier = Arrays.copyOf(d_frontier, Math.max(oldLength * 2, key.length() + 1));
+                for (int i = oldLength; i < d_frontier.length; ++i)
+                    d_frontier[i] = new State();
+            }
+
+            int prefixLen = 0;
+            if (d_prevKey != null) {
+                int max = Math.min(d_prevKey.length(), key.length());
+                while (prefixLen < max && d_prevKey.charAt(prefixLen) == key.charAt(prefixLen))
+                    ++prefixLen;
+
+                // States beyond the shared prefix cannot be reached by later keys.
+                freezeTail(prefixLen + 1);
+            }
+
+            d_prevKey = key;
+            ++d_size;
+
+            // Since keys are sorted, only the empty key can end in the start state.
+            if (key.isEmpty()) {
+                d_frontier[0].d_final = true;
+                d_frontier[0].d_finalOutput = value;
+                return this;
+            }
+
+            for (int i = prefixLen; i < key.length(); ++i)
+                d_frontier[i].addTransition(key.charAt(i), d_frontier[i + 1]);
+
+            d_frontier[key.length()].d_final = true;
+            d_frontier[key.length()].d_finalOutput = 0;
+
+            // Push outputs on the shared prefix toward the start state. The part of a transition
+            // output that is not shared with the new value is moved to the outgoing transitions
+            // of the target state.
+            long output = value;
+            for (int i = 0; i < prefixLen; ++i) {
+                State state = d_frontier[i];
+                long lastOutput = state.lastOutput();
+                long common = Math.min(lastOutput, output);
+
+                state.setLastOutput(common);
+                d_frontier[i + 1].prependOutput(lastOutput - common);
+
+                output -= common;
+            }
+
+            // The remaining output goes to the first transition that is not shared.
+            d_frontier[prefixLen].setLastOutput(output);
+
+            return this;
+        }
+
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized OrderedBuilder put(String key, Integer value) throws DictionaryBuilderException {
+            return put(key, (int) value);
+        }
+
+        /**
+         * Put all key/value pairs from a {@link Map}. The map should be an ordered map (by key). If
+         * not, a {@link IllegalArgumentException} is thrown.
+         */
+        public synchronized OrderedBuilder putAll(SortedMap<String, Integer> map) throws DictionaryBuilderException {
+            if (map.comparator() != null)
+                throw new IllegalArgumentException("SortedMap does not use the natural ordering of its keys");
+
+            for (SortedMap.Entry<String, Integer> entry : map.entrySet())
+                put(entry.getKey(), (int) entry.getValue());
+
+            return this;
+        }
+
+        /**
+         * Construct a {@link ImmutableStringIntFstMap}. This finalizes the builder.
+         */
+        public synchronized ImmutableStringIntFstMap build() {
+            if (!d_finalized) {
+                freezeTail(1);
+                d_finalized = true;
+            }
+
+            // Number the states in breadth-first order.
+            Map<State, Integer> numbers = new IdentityHashMap<>();
+            List<State> states = new ArrayList<>();
+            numbers.put(d_frontier[0], 0);
+            states.add(d_frontier[0]);
+
+            int nTransitions = 0;
+            for (int i = 0; i < states.size(); ++i) {
+                State state = states.get(i);
+                nTransitions += state.d_nTransitions;
+
+                for (int trans = 0; trans < state.d_nTransitions; ++trans) {
+                    State to = state.d_to[trans];
+                    if (!numbers.containsKey(to)) {
+                        numbers.put(to, states.size());
+                        states.add(to);
+                    }
+                }
+            }
+
+            long[] stateOffsets = new long[states.size()];
+            char[] transitionChars = new char[nTransitions];
+            long[] transitionTo = new long[nTransitions];
+            long[] transitionOutputs = new long[nTransitions];
+            BitSet finalStates = new BitSet();
+            long[] finalOutputs = new long[states.size()];
+
+            int offset = 0;
+            for (int i = 0; i < states.size(); ++i) {
+                State state = states.get(i);
+                stateOffsets[i] = offset;
+
+                for (int trans = 0; trans < state.d_nTransitions; ++trans) {
+                    transitionChars[offset] = state.d_chars[trans];
+                    transitionTo[offset] = numbers.get(state.d_to[trans]);
+                    transitionOutputs[offset] = state.d_outputs[trans];
+                    ++offset;
+                }
+
+                if (state.d_final) {
+                    finalStates.set(i);
+                    finalOutputs[i] = state.d_finalOutput;
+                }
+            }
+
+            return new ImmutableStringIntFstMap(d_size, new FrameOfReferenceArray(stateOffsets), transitionChars,
+                    new FrameOfReferenceArray(transitionTo), new FrameOfReferenceArray(transitionOutputs),
+                    finalStates, new FrameOfReferenceArray(finalOutputs));
+        }
+
+        /**
+         * Minimize the states of the previous key from the given depth. Each state is replaced by an
+         * equivalent registered state, or registered itself.
+         */
+        private void freezeTail(int depth) {
+            if (d_prevKey == null)
+                return;
+
+            for (int i = d_prevKey.length(); i >= depth; --i) {
+                State state = d_frontier[i];
+                State registered = d_register.get(state);
+                if (registered == null) {
+                    registered = state;
+                    d_register.put(state, state);
+                }
+
+                d_frontier[i - 1].setLastTarget(registered);
+                d_frontier[i] = new State();
+            }
+        }
+    }
+
+    /**
+     * Transducer state for the builder. Transitions are appended in character order.
+     */
+    private static class State {
+        private char[] d_chars = new char[2];
+        private State[] d_to = new State[2];
+        private long[] d_outputs = new long[2];
+        private int d_nTransitions = 0;
+        private boolean d_final = false;
+        private long d_finalOutput = 0;
+
+        void addTransition(char c, State to) {
+            if (d_nTransitions == d_chars.length) {
+                d_chars = Arrays.copyOf(d_chars, d_nTransitions * 2);
+                d_to = Arrays.copyOf(d_to, d_nTransitions * 2);
+                d_outputs = Arrays.copyOf(d_outputs, d_nTransitions * 2);
+            }
+
+            d_chars[d_nTransitions] = c;
+            d_to[d_nTransitions] = to;
+            d_outputs[d_nTransitions] = 0;
+            ++d_nTransitions;
+        }
+
+        long lastOutput() {
+            return d_outputs[d_nTransitions - 1];
+        }
+
+        void setLastOutput(long output) {
+            d_outputs[d_nTransitions - 1] = output;
+        }
+
+        void setLastTarget(State to) {
+            d_to[d_nTransitions - 1] = to;
+        }
+
+        /**
+         * Add an output to every path through this state.
+         */
+        void prependOutput(long output) {
+            if (output == 0)
+                return;
+
+            for (int i = 0; i < d_nTransitions; ++i)
+                d_outputs[i] += output;
+
+            if (d_final)
+                d_finalOutput += output;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+
+            if (!(obj instanceof State))
+                return false;
+
+            State other = (State) obj;
+            if (d_final != other.d_final || d_finalOutput != other.d_finalOutput ||
+                    d_nTransitions != other.d_nTransitions)
+                return false;
+
+            // Target states are registered, so they are compared by identity.
+            for (int i = 0; i < d_nTransitions; ++i)
+                if (d_chars[i] != other.d_chars[i] || d_to[i] != other.d_to[i] ||
+                        d_outputs[i] != other.d_outputs[i])
+                    return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = d_final ? 1231 : 1237;
+            hash = 31 * hash + (int) (d_finalOutput ^ (d_finalOutput >>> 32));
+
+            for (int i = 0; i < d_nTransitions; ++i) {
+                hash = 31 * hash + d_chars[i];
+                hash = 31 * hash + System.identityHashCode(d_to[i]);
+                hash = 31 * hash + (int) (d_outputs[i] ^ (d_outputs[i] >>> 32));
+            }
+
+            return hash;
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, Integer>> {
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            if (!(e.getKey() instanceof String) || !(e.getValue() instanceof Integer))
+                return false;
+
+            long value = lookup((String) e.getKey());
+            return value != MISSING && (int) value == (Integer) e.getValue();
+        }
+
+        @Override
+        public Iterator<Entry<String, Integer>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return d_size;
+        }
+    }
+
+    /**
+     * Iterator over the entries, in key order. The transducer is traversed depth-first, the sum of
+     * the outputs on the path is kept for every depth.
+     */
+    private class EntryIterator implements Iterator<Entry<String, Integer>> {
+        private int[] d_states;
+        private int[] d_transitions;
+        private long[] d_sums;
+        private char[] d_path;
+        private int d_depth;
+        private Entry<String, Integer> d_next;
+
+        EntryIterator() {
+            d_states = new int[16];
+            d_transitions = new int[16];
+            d_sums = new long[16];
+            d_path = new char[16];
+            d_depth = 0;
+            d_transitions[0] = -1;
+            d_next = d_size == 0 ? null : advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return d_next != null;
+        }
+
+        @Override
+        public Entry<String, Integer> next() {
+            if (d_next == null)
+                throw new NoSuchElementException();
+
+            Entry<String, Integer> next = d_next;
+            d_next = advance();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private Entry<String, Integer> advance() {
+            while (d_depth >= 0) {
+                int state = d_states[d_depth];
+                int trans = d_transitions[d_depth];
+
+                // Visit the state itself before its transitions.
+                if (trans == -1) {
+                    d_transitions[d_depth] = stateStart(state);
+                    if (d_finalStates.get(state))
+                        return new SimpleEntry<>(new String(d_path, 0, d_depth),
+                                (int) (d_sums[d_depth] + d_finalOutputs.get(state)));
+                    continue;
+                }
+
+                if (trans < stateEnd(state)) {
+                    d_transitions[d_depth] = trans + 1;
+
+                    if (d_depth + 1 == d_states.length) {
+                        d_states = Arrays.copyOf(d_states, d_states.length * 2);
+                        d_transitions = Arrays.copyOf(d_transitions, d_transitions.length * 2);
+                        d_sums = Arrays.copyOf(d_sums, d_sums.length * 2);
+                        d_path = Arrays.copyOf(d_path, d_path.length * 2);
+                    }
+
+                    d_path[d_depth] = d_transitionChars[trans];
+                    d_sums[d_depth + 1] = d_sums[d_depth] + d_transitionOutputs.get(trans);
+                    d_states[d_depth + 1] = (int) d_transitionTo.get(trans);
+                    d_transitions[d_depth + 1] = -1;
+                    ++d_depth;
+                    continue;
+                }
+
+                --d_depth;
+            }
+
+            return null;
+        }
+    }
+
+    private ImmutableStringIntFstMap(int size, FrameOfReferenceArray stateOffsets, char[] transitionChars,
+                                     FrameOfReferenceArray transitionTo, FrameOfReferenceArray transitionOutputs,
+                                     BitSet finalStates, FrameOfReferenceArray finalOutputs) {
+        d_size = size;
+        d_stateOffsets = stateOffsets;
+        d_transitionChars = transitionChars;
+        d_transitionTo = transitionTo;
+        d_transitionOutputs = transitionOutputs;
+        d_finalStates = finalStates;
+        d_finalOutputs = finalOutputs;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        return o instanceof String && lookup((String) o) != MISSING;
+    }
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+        return new EntrySet();
+    }
+
+    @Override
+    public Integer get(Object o) {
+        if (!(o instanceof String))
+            return null;
+
+        long value = lookup((String) o);
+        return value == MISSING ? null : (int) value;
+    }
+
+    /**
+     * Get the value associated with a key, returning a default value is it
+     * is not in the mapping.
+     */
+    public int getOrElse(String key, int defaultValue) {
+        long value = lookup(key);
+        return value == MISSING ? defaultValue : (int) value;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return d_size == 0;
+    }
+
+    @Override
+    public Integer put(String k, Integer v) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends Integer> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Integer remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        return d_size;
+    }
+
+    /**
+     * Get the number of states of the transducer.
+     */
+    int stateCount() {
+        return d_stateOffsets.size();
+    }
+
+    /**
+     * Compute the value of a key by summing the outputs along its path.
+     *
+     * @return The value or {@link #MISSING} if the key is not in the mapping.
+     */
+    private long lookup(CharSequence key) {
+        int state = 0;
+        long sum = 0;
+
+        for (int i = 0; i < key.length(); ++i) {
+            int trans = findTransition(state, key.charAt(i));
+            if (trans == -1)
+                return MISSING;
+
+            sum += d_transitionOutputs.get(trans);
+            state = (int) d_transitionTo.get(trans);
+        }
+
+        if (!d_finalStates.get(state))
+            return MISSING;
+
+        return sum + d_finalOutputs.get(state);
+    }
+
+    private int findTransition(int state, char c) {
+        int low = stateStart(state);
+        int high = stateEnd(state) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (d_transitionChars[mid] < c)
+                low = mid + 1;
+            else if (d_transitionChars[mid] > c)
+                high = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    private int stateStart(int state) {
+        return (int) d_stateOffsets.get(state);
+    }
+
+    private int stateEnd(int state) {
+        return state + 1 < d_stateOffsets.size() ? (int) d_stateOffsets.get(state + 1) : d_transitionChars.length;
+    }
+}
@@ -0,0 +1,490 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.PerfectHashDictionary;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * An immutable mapping from {@link String} to lists of <tt>int</tt>s, such as the posting lists of
+ * an inverted index. Keys are stored in a perfect hash automaton. All lists are stored in one
+ * contiguous buffer: each list is stored as its length, followed by the zigzag-encoded differences
+ * between consecutive values as variable-length integers. The start of each list is stored in a
+ * bit-packed offset table that is indexed by the perfect hash code of the key.
+ * <p/>
+ * Lists can be read without copying using {@link #postings(String)}. If all lists are in ascending
+ * order, lists can be intersected using {@link #intersection(String...)}. The {@link Map} methods
+ * return copies of the lists.
+ */
+public class ImmutableStringIntListMap extends AbstractMap<String, int[]> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final PerfectHashDictionary d_keys;
+    private final byte[] d_postings;
+    private final FrameOfReferenceArray d_offsets;
+    private final boolean d_ascending;
+
+    /**
+     * A builder for {@link ImmutableStringIntListMap}. Mappings can be added to the builder using the
+     * {@link #put} and {@link #putAll} methods. The {@link ImmutableStringIntListMap} can then be
+     * constructed using the {@link #build} method. If a key is put more than once, the last list is used.
+     */
+    public static class Builder {
+        private String[] d_keys;
+        private int[][] d_lists;
+        private int d_size;
+
+        public Builder() {
+            d_keys = new String[16];
+            d_lists = new int[16][];
+            d_size = 0;
+        }
+
+        /**
+         * Put a key/list pair. The list is copied.
+         */
+        public synchronized Builder put(String key, int[] list) {
+            if (d_size == d_keys.length) {
+                d_keys = Arrays.copyOf(d_keys, d_keys.length * 2);
+                d_lists = Arrays.copyOf(d_lists, d_lists.length * 2);
+            }
+
+            d_keys[d_size] = key;
+            d_lists[d_size] = list.clone();
+            ++d_size;
+
+            return this;
+        }
+
+        /**
+         * Put all key/list pairs from a {@link Map}.
+         */
+        public synchronized Builder putAll(Map<String, int[]> map) {
+            for (Map.Entry<String, int[]> entry : map.entrySet())
+                put(entry.getKey(), entry.getValue());
+
+            return this;
+        }
+
+        /**
+         * Construct a {@link ImmutableStringIntListMap}.
+         */
+        public synchronized ImmutableStringIntListMap build() throws DictionaryBuilderException {
+            int[] order = KeyIndexSort.sortedIndex(d_keys, d_size);
+
+            DictionaryBuilder dictBuilder = new DictionaryBuilder();
+            ByteBuffer postings = new ByteBuffer();
+            long[] offsets = new long[d_size];
+            boolean ascending = true;
+
+            int n = 0;
+            for (int i = 0; i < d_size; ++i) {
+                int idx = order[i];
+
+                // The sort is stable, so the last occurrence of a key has the list that was put last.
+                if (i + 1 < d_size && d_keys[order[i + 1]].equals(d_keys[idx]))
+                    continue;
+
+                dictBuilder.add(d_keys[idx]);
+
+                int[] list = d_lists[idx];
+                offsets[n++] = postings.size();
+                postings.appendVarInt(list.length);
+
+                int prev = 0;
+                for (int j = 0; j < list.length; ++j) {
+                    if (j != 0 && list[j] < prev)
+                        ascending = false;
+
+                    int delta = list[j] - prev;
+                    postings.appendVarInt((delta << 1) ^ (delta >> 31));
+                    prev = list[j];
+                }
+            }
+
+            PerfectHashDictionary dict = dictBuilder.buildPerfectHash(false);
+
+            return new ImmutableStringIntListMap(dict, postings.toArray(),
+                    new FrameOfReferenceArray(Arrays.copyOf(offsets, n)), ascending);
+        }
+    }
+
+    /**
+     * An iterator over a list of a {@link ImmutableStringIntListMap}. The iterator decodes the list
+     * directly from the buffer of the map, without copying.
+     */
+    public static class PostingsIterator {
+        private final byte[] d_postings;
+        private final int d_length;
+        private int d_pos;
+        private int d_remaining;
+        private int d_prev;
+
+        private PostingsIterator(byte[] postings, int pos) {
+            d_postings = postings;
+
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[pos++];
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            d_length = length;
+            d_pos = pos;
+            d_remaining = length;
+            d_prev = 0;
+        }
+
+        /**
+         * Returns <tt>true</tt> if the list has more values.
+         */
+        public boolean hasNext() {
+            return d_remaining != 0;
+        }
+
+        /**
+         * Get the number of values in the list.
+         */
+        public int length() {
+            return d_length;
+        }
+
+        /**
+         * Get the next value of the list.
+         *
+         * @throws NoSuchElementException If there are no more values.
+         */
+        public int next() {
+            if (d_remaining == 0)
+                throw new NoSuchElementException();
+
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = d_postings[d_pos++];
+                zigzag |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            --d_remaining;
+            d_prev += (zigzag >>> 1) ^ -(zigzag & 1);
+
+            return d_prev;
+        }
+
+        /**
+         * Get the number of values that were not read yet.
+         */
+        public int remaining() {
+            return d_remaining;
+        }
+    }
+
+    /**
+     * A view of the mappings of a range of keys, see {@link #prefixMap(String)} and
+     * {@link #subMap(String, String)}. Lists are read directly from the buffer of the map.
+     */
+    public class SubMap extends AbstractRangeMap<int[]> {
+        private SubMap(PerfectHashDictionary keys, int from, int to) {
+            super(keys, from, to);
+        }
+
+        @Override
+        int[] valueByNumber(int number) {
+            return getByNumber(number);
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, int[]>> {
+        @Override
+        public Iterator<Entry<String, int[]>> iterator() {
+            return new Iterator<Entry<String, int[]>>() {
+                private final Iterator<String> d_keyIter = d_keys.iterator();
+                private int d_number = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return d_keyIter.hasNext();
+                }
+
+                @Override
+                public Entry<String, int[]> next() {
+                    // Keys are enumerated in hash code order.
+                    String key = d_keyIter.next();
+                    return new SimpleEntry<>(key, getByNumber(++d_number));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return d_keys.size();
+        }
+    }
+
+    private ImmutableStringIntListMap(PerfectHashDictionary keys, byte[] postings, FrameOfReferenceArray offsets,
+                                      boolean ascending) {
+        d_keys = keys;
+        d_postings = postings;
+        d_offsets = offsets;
+        d_ascending = ascending;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        return d_keys.contains(o);
+    }
+
+    @Override
+    public Set<Entry<String, int[]>> entrySet() {
+        return new EntrySet();
+    }
+
+    /**
+     * Get a copy of the list of a key.
+     *
+     * @return The list, or <tt>null</tt> if the key is not in the mapping.
+     */
+    @Override
+    public int[] get(Object o) {
+        if (!(o instanceof String))
+            return null;
+
+        int hashcode = d_keys.number((String) o);
+        if (hashcode == -1)
+            return null;
+
+        return getByNumber(hashcode);
+    }
+
+    /**
+     * Get a copy of the list of the key with the given perfect hash code in {@link #keySet()}.
+     *
+     * @throws ArrayIndexOutOfBoundsException If there is no key with the hash code.
+     */
+    public int[] getByNumber(int number) {
+        PostingsIterator iter = postingsByNumber(number);
+
+        int[] list = new int[iter.length()];
+        for (int i = 0; i < list.length; ++i)
+            list[i] = iter.next();
+
+        return list;
+    }
+
+    /**
+     * Get an iterator over the list of a key, without copying the list.
+     *
+     * @return The iterator, or <tt>null</tt> if the key is not in the mapping.
+     */
+    public PostingsIterator postings(String key) {
+        int hashcode = d_keys.number(key);
+        if (hashcode == -1)
+            return null;
+
+        return postingsByNumber(hashcode);
+    }
+
+    /**
+     * Get an iterator over the list of the key with the given perfect hash code in {@link #keySet()},
+     * without copying the list.
+     *
+     * @throws ArrayIndexOutOfBoundsException If there is no key with the hash code.
+     */
+    public PostingsIterator postingsByNumber(int number) {
+        if (number < 1 || number > d_keys.size())
+            throw new ArrayIndexOutOfBoundsException(number);
+
+        return new PostingsIterator(d_postings, (int) d_offsets.get(number - 1));
+    }
+
+    /**
+     * Returns <tt>true</tt> if all lists are in ascending order. Only such lists can be intersected.
+     */
+    public boolean isAscending() {
+        return d_ascending;
+    }
+
+    /**
+     * Intersect the lists of the given keys. If a key is not in the mapping, its list is
+     * considered to be empty.
+     *
+     * @throws IllegalStateException If the lists are not in ascending order.
+     */
+    public int[] intersection(String... keys) {
+        return intersection(Arrays.asList(keys));
+    }
+
+    /**
+     * Intersect the lists of the given keys. If a key is not in the mapping, its list is
+     * considered to be empty. The lists are intersected from short to long, so that the
+     * shortest list determines the candidates. Every list is decoded at most once.
+     *
+     * @throws IllegalStateException If the lists are not in ascending order.
+     */
+    public int[] intersection(Collection<String> keys) {
+        if (!d_ascending)
+            throw new IllegalStateException("Lists can only be intersected when they are in ascending order");
+
+        if (keys.isEmpty())
+            return new int[0];
+
+        PostingsIterator[] iters = new PostingsIterator[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            PostingsIterator iter = postings(key);
+            if (iter == null)
+                return new int[0];
+
+            iters[i++] = iter;
+        }
+
+        Arrays.sort(iters, new Comparator<PostingsIterator>() {
+            @Override
+            public int compare(PostingsIterator i1, PostingsIterator i2) {
+                return Integer.compare(i1.length(), i2.length());
+            }
+        });
+
+        // The current value of each iterator, except the first.
+        int[] heads = new int[iters.length];
+        for (i = 1; i < iters.length; ++i) {
+            if (!iters[i].hasNext())
+                return new int[0];
+            heads[i] = iters[i].next();
+        }
+
+        int[] result = new int[iters[0].length()];
+        int n = 0;
+
+        candidates:
+        while (iters[0].hasNext()) {
+            int candidate = iters[0].next();
+
+            for (i = 1; i < iters.length; ++i) {
+                while (heads[i] < candidate) {
+                    if (!iters[i].hasNext())
+                        break candidates;
+                    heads[i] = iters[i].next();
+                }
+
+                if (heads[i] != candidate)
+                    continue candidates;
+            }
+
+            // Skip duplicates in the shortest list.
+            if (n == 0 || result[n - 1] != candidate)
+                result[n++] = candidate;
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return d_keys.isEmpty();
+    }
+
+    /**
+     * Get the keys of the mapping. The keys are stored in a perfect hash automaton, the
+     * hash code of a key gives the position of its list.
+     */
+    @Override
+    public PerfectHashDictionary keySet() {
+        return d_keys;
+    }
+
+    /**
+     * Get a view of the mappings of which the keys start with the given prefix. The range of
+     * hash codes of these keys is computed once, when the view is created.
+     */
+    public SubMap prefixMap(String prefix) {
+        int[] range = d_keys.hashRange(prefix);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
+    /**
+     * Get a view of the mappings of which the keys are in [<tt>fromKey</tt>, <tt>toKey</tt>).
+     *
+     * @throws IllegalArgumentException If <tt>fromKey</tt> is larger than <tt>toKey</tt>.
+     */
+    public SubMap subMap(String fromKey, String toKey) {
+        int[] range = AbstractRangeMap.keyRange(d_keys, fromKey, toKey);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
+    @Override
+    public int[] put(String k, int[] v) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends int[]> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int[] remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        return d_keys.size();
+    }
+
+    private static class ByteBuffer {
+        private byte[] d_bytes = new byte[1024];
+        private int d_size = 0;
+
+        void appendVarInt(int value) {
+            if (d_size + 5 > d_bytes.length)
+                d_bytes = Arrays.copyOf(d_bytes, d_bytes.length * 2);
+
+            while ((value & ~0x7f) != 0) {
+                d_bytes[d_size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+
+            d_bytes[d_size++] = (byte) value;
+        }
+
+        int size() {
+            return d_size;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(d_bytes, d_size);
+        }
+    }
+}
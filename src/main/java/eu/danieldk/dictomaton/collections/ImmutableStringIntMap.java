@@ -17,6 +17,8 @@ package eu.danieldk.dictomaton.collections;
 import eu.danieldk.dictomaton.DictionaryBuilder;
 import eu.danieldk.dictomaton.DictionaryBuilderException;
 import eu.danieldk.dictomaton.PerfectHashDictionary;
+import eu.danieldk.dictomaton.levenshtein.LevenshteinAutomaton;
+import eu.danieldk.dictomaton.levenshtein.LevenshteinMatch;
 
 import java.io.Serializable;
 import java.util.*;
@@ -28,35 +30,75 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
     private static final long serialVersionUID = 1L;
 
     private final PerfectHashDictionary d_keys;
+
+    // Values are stored either in a plain array or, when packing was requested and saves space,
+    // in a frame-of-reference array. Exactly one of these fields is non-null.
     private final int[] d_values;
+    private final FrameOfReferenceArray d_packedValues;
 
     /**
      * A builder for {@link ImmutableStringIntMap}. Mappings
      * can be added to the builder using the {@link #put} and
      * {@link #putAll} methods. The {@link ImmutableStringIntMap}
      * can then be constructed using the {@link #build} method.
+     * <p/>
+     * Keys and values are stored in parallel arrays, values are not boxed.
+     * The keys are sorted when the map is constructed. If a key is put more
+     * than once, the last value is used.
      */
     public static class Builder {
-
-        private final TreeMap<String, Integer> d_map;
+        private String[] d_keys;
+        private int[] d_values;
+        private int d_size;
+        private boolean d_packValues;
 
         public Builder() {
-            d_map = new TreeMap<>();
+            d_keys = new String[16];
+            d_values = new int[16];
+            d_size = 0;
+            d_packValues = false;
+        }
+
+        /**
+         * Store values using bit packing with frame-of-reference coding, if that uses less
+         * memory than a plain array. This is effective when the values fit in a few bits or
+         * lie within narrow ranges.
+         */
+        public synchronized Builder packValues() {
+            d_packValues = true;
+            return this;
         }
 
         /**
          * Put a key/value pair.
          */
-        public synchronized Builder put(String key, Integer value) {
-            d_map.put(key, value);
+        public synchronized Builder put(String key, int value) {
+            if (d_size == d_keys.length) {
+                d_keys = Arrays.copyOf(d_keys, d_keys.length * 2);
+                d_values = Arrays.copyOf(d_values, d_values.length * 2);
+            }
+
+            d_keys[d_size] = key;
+            d_values[d_size] = value;
+            ++d_size;
+
             return this;
         }
 
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized Builder put(String key, Integer value) {
+            return put(key, (int) value);
+        }
+
         /**
          * Put all key/value pairs from a {@link Map}.
          */
         public synchronized Builder putAll(Map<String, Integer> map) {
-            d_map.putAll(map);
+            for (Map.Entry<String, Integer> entry : map.entrySet())
+                put(entry.getKey(), (int) entry.getValue());
+
             return this;
         }
 
@@ -64,15 +106,28 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
          * Construct a {@link ImmutableStringIntMap}.
          */
         public synchronized ImmutableStringIntMap build() throws DictionaryBuilderException {
-            PerfectHashDictionary dict = new DictionaryBuilder().addAll(d_map.keySet()).buildPerfectHash(false);
+            int[] order = KeyIndexSort.sortedIndex(d_keys, d_size);
 
-            int[] values = new int[d_map.size()];
+            DictionaryBuilder dictBuilder = new DictionaryBuilder();
+            int[] values = new int[d_size];
 
-            int i = 0;
-            for (int value : d_map.values())
-                values[i++] = value;
+            int n = 0;
+            for (int i = 0; i < d_size; ++i) {
+                int idx = order[i];
 
-            return new ImmutableStringIntMap(dict, values);
+                // The sort is stable, so the last occurrence of a key has the value that was put last.
+                if (i + 1 < d_size && d_keys[order[i + 1]].equals(d_keys[idx]))
+                    continue;
+
+                dictBuilder.add(d_keys[idx]);
+                values[n++] = d_values[idx];
+            }
+
+            PerfectHashDictionary dict = dictBuilder.buildPerfectHash(false);
+            if (n != values.length)
+                values = Arrays.copyOf(values, n);
+
+            return new ImmutableStringIntMap(dict, values, d_packValues);
         }
 
     }
@@ -86,22 +141,49 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
     public static class OrderedBuilder {
         private final DictionaryBuilder dictionaryBuilder;
 
-        private final ArrayList<Integer> values;
+        private int[] values;
+
+        private int size;
+
+        private boolean packValues;
 
         public OrderedBuilder() {
             this.dictionaryBuilder = new DictionaryBuilder();
-            this.values = new ArrayList<>();
+            this.values = new int[16];
+            this.size = 0;
+            this.packValues = false;
+        }
+
+        /**
+         * Store values using bit packing with frame-of-reference coding, if that uses less
+         * memory than a plain array. This is effective when the values fit in a few bits or
+         * lie within narrow ranges.
+         */
+        public synchronized OrderedBuilder packValues() {
+            packValues = true;
+            return this;
         }
 
         /**
          * Put a key/value pair.
          */
-        public synchronized OrderedBuilder put(String key, Integer value) throws DictionaryBuilderException {
+        public synchronized OrderedBuilder put(String key, int value) throws DictionaryBuilderException {
             dictionaryBuilder.add(key);
-            values.add(value);
+
+            if (size == values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[size++] = value;
+
             return this;
         }
 
+        /**
+         * Put a key/value pair.
+         */
+        public synchronized OrderedBuilder put(String key, Integer value) throws DictionaryBuilderException {
+            return put(key, (int) value);
+        }
+
         /**
          * Put all key/value pairs from a {@link Map}. The map should be an ordered map (by key). If
          * not, a {@link IllegalArgumentException} is thrown.
@@ -110,12 +192,11 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
             if (map.comparator() != null)
                 throw new IllegalArgumentException("SortedMap does not use the natural ordering of its keys");
 
-            values.ensureCapacity(values.size() + map.size());
+            if (size + map.size() > values.length)
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + map.size()));
 
-            for (SortedMap.Entry<String, Integer> entry: map.entrySet()) {
-                dictionaryBuilder.add(entry.getKey());
-                values.add(entry.getValue());
-            }
+            for (SortedMap.Entry<String, Integer> entry: map.entrySet())
+                put(entry.getKey(), (int) entry.getValue());
 
             return this;
         }
@@ -126,21 +207,111 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
         public synchronized ImmutableStringIntMap build() throws DictionaryBuilderException {
             PerfectHashDictionary dict = dictionaryBuilder.buildPerfectHash(false);
 
-            int[] arr = new int[values.size()];
+            return new ImmutableStringIntMap(dict, Arrays.copyOf(values, size), packValues);
+        }
+    }
+
+    /**
+     * A key/value pair of which the key is within a certain edit distance of a query. Fuzzy
+     * entries are returned by {@link ImmutableStringIntMap#fuzzyGet(String, int)}.
+     */
+    public static class FuzzyEntry {
+        private final String d_key;
+        private final int d_value;
+        private final int d_distance;
+
+        private FuzzyEntry(String key, int value, int distance) {
+            d_key = key;
+            d_value = value;
+            d_distance = distance;
+        }
+
+        /**
+         * Get the Levenshtein distance between the key and the query.
+         */
+        public int getDistance() {
+            return d_distance;
+        }
+
+        /**
+         * Get the key.
+         */
+        public String getKey() {
+            return d_key;
+        }
+
+        /**
+         * Get the value.
+         */
+        public int getValue() {
+            return d_value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s=%s (%d)", d_key, d_value, d_distance);
+        }
+    }
+
+    /**
+     * A visitor of the key/value pairs of the mapping, see {@link #forEachEntry(EntryVisitor)}.
+     */
+    public interface EntryVisitor {
+        /**
+         * Visit a key and its value.
+         */
+        void visit(String key, int value);
+    }
+
+    /**
+     * A view of the mappings of a range of keys, see {@link #prefixMap(String)} and
+     * {@link #subMap(String, String)}. Values are read directly from the value storage
+     * of the map.
+     */
+    public class SubMap extends AbstractRangeMap<Integer> {
+        private SubMap(PerfectHashDictionary keys, int from, int to) {
+            super(keys, from, to);
+        }
+
+        /**
+         * Get the value associated with a key, returning a default value is it
+         * is not in the view.
+         */
+        public int getOrElse(String key, int defaultValue) {
+            int hash = d_keys.number(key);
+            return inRange(hash) ? value(hash - 1) : defaultValue;
+        }
+
+        /**
+         * Store the values of the view in key order in <tt>dest</tt>, starting at <tt>destOffset</tt>.
+         */
+        public void getValues(int[] dest, int destOffset) {
+            getRangeByNumber(d_from, d_to, dest, destOffset);
+        }
 
-            for (int i = 0; i < values.size(); ++i)
-                arr[i] = values.get(i);
+        /**
+         * Get the values of the view in key order.
+         */
+        public int[] toValueArray() {
+            int[] values = new int[d_to - d_from];
+            getValues(values, 0);
+            return values;
+        }
 
-            return new ImmutableStringIntMap(dict, arr);
+        @Override
+        Integer valueByNumber(int number) {
+            return value(number - 1);
         }
     }
 
     private class EntrySet extends AbstractSet<Entry<String, Integer>> {
         private class EntrySetIterator implements Iterator<Entry<String, Integer>> {
             private final Iterator<String> d_keyIter;
+            private int d_idx;
 
             public EntrySetIterator() {
                 d_keyIter = d_keys.iterator();
+                d_idx = 0;
             }
 
             @Override
@@ -150,9 +321,9 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
 
             @Override
             public Entry<String, Integer> next() {
+                // Keys are enumerated in the order of their perfect hash codes.
                 String key = d_keyIter.next();
-                int idx = d_keys.number(key) - 1;
-                return new SimpleEntry<>(key, d_values[idx]);
+                return new SimpleEntry<>(key, value(d_idx++));
             }
 
             @Override
@@ -187,7 +358,7 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
             if (hash == -1)
                 return false;
 
-            return d_values[hash - 1] == value;
+            return value(hash - 1) == value;
 
         }
 
@@ -211,18 +382,31 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
     private class IntArrayList extends AbstractList<Integer> {
         @Override
         public Integer get(int index) {
-            return d_values[index];
+            return value(index);
         }
 
         @Override
         public int size() {
-            return d_values.length;
+            return d_keys.size();
         }
     }
 
-    private ImmutableStringIntMap(PerfectHashDictionary keys, int[] values) {
+    private ImmutableStringIntMap(PerfectHashDictionary keys, int[] values, boolean packValues) {
         d_keys = keys;
-        d_values = values;
+
+        FrameOfReferenceArray packed = null;
+        if (packValues) {
+            long[] longValues = new long[values.length];
+            for (int i = 0; i < values.length; ++i)
+                longValues[i] = toLong(values[i]);
+
+            packed = new FrameOfReferenceArray(longValues);
+            if (packed.sizeInBytes() >= (long) values.length * 4)
+                packed = null;
+        }
+
+        d_values = packed == null ? values : null;
+        d_packedValues = packed;
     }
 
     @Override
@@ -251,7 +435,40 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
         if (hashcode == -1)
             return null;
 
-        return d_values[hashcode - 1];
+        return value(hashcode - 1);
+    }
+
+    /**
+     * Get the value of the key with the given perfect hash code in {@link #keySet()}.
+     * This avoids a second lookup when the hash code is known, e.g. after a traversal
+     * of the key automaton.
+     *
+     * @throws ArrayIndexOutOfBoundsException If there is no key with the hash code.
+     */
+    public int getByNumber(int number) {
+        return value(number - 1);
+    }
+
+    /**
+     * Get the values of the keys with perfect hash codes in [<tt>fromNumber</tt>, <tt>toNumber</tt>)
+     * and store them in <tt>dest</tt>, starting at <tt>destOffset</tt>. The range can be obtained
+     * using {@link PerfectHashDictionary#hashRange(CharSequence)} to decode the values of all keys
+     * with a given prefix. Values are decoded in one pass, without a lookup per key.
+     *
+     * @throws IndexOutOfBoundsException If the range is not within the hash codes of the keys.
+     */
+    public void getRangeByNumber(int fromNumber, int toNumber, int[] dest, int destOffset) {
+        if (fromNumber < 1 || toNumber > d_keys.size() + 1 || fromNumber > toNumber)
+            throw new IndexOutOfBoundsException(String.format("Invalid hash code range: [%d, %d)",
+                    fromNumber, toNumber));
+
+        if (d_values != null) {
+            System.arraycopy(d_values, fromNumber - 1, dest, destOffset, toNumber - fromNumber);
+            return;
+        }
+
+        for (int i = fromNumber - 1; i < toNumber - 1; ++i)
+            dest[destOffset++] = fromLong(d_packedValues.get(i));
     }
 
     /**
@@ -263,7 +480,75 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
         if (hash == -1)
             return defaultValue;
 
-        return d_values[hash - 1];
+        return value(hash - 1);
+    }
+
+    /**
+     * Get the values associated with a batch of keys. The value of <tt>keys[i]</tt> is stored in
+     * <tt>out[i]</tt>, or <tt>missing</tt> if the key is not in the mapping. The perfect hash codes
+     * of the keys are computed with {@link PerfectHashDictionary#numbers(CharSequence[], int[])},
+     * which interleaves the traversals of the automaton for several keys.
+     * <p/>
+     * This method allocates an array for the hash codes, use
+     * {@link #getAll(CharSequence[], int[], int, int[])} to avoid an allocation per batch.
+     *
+     * @throws IllegalArgumentException If <tt>out</tt> is shorter than <tt>keys</tt>.
+     */
+    public void getAll(CharSequence[] keys, int[] out, int missing) {
+        getAll(keys, out, missing, new int[keys.length]);
+    }
+
+    /**
+     * Get the values associated with a batch of keys, see {@link #getAll(CharSequence[], int[], int)}.
+     * The perfect hash codes are stored in the caller-provided <tt>numbers</tt> array, which can be
+     * reused for every batch.
+     *
+     * @throws IllegalArgumentException If <tt>out</tt> or <tt>numbers</tt> is shorter than <tt>keys</tt>.
+     */
+    public void getAll(CharSequence[] keys, int[] out, int missing, int[] numbers) {
+        if (out.length < keys.length)
+            throw new IllegalArgumentException(String.format("Output array is too short: %d < %d",
+                    out.length, keys.length));
+
+        d_keys.numbers(keys, numbers);
+
+        for (int i = 0; i < keys.length; ++i)
+            out[i] = numbers[i] == -1 ? missing : value(numbers[i] - 1);
+    }
+
+    /**
+     * Visit all key/value pairs in key order. Since keys are enumerated in the order of their
+     * perfect hash codes, the values are read by position, without a lookup per key and
+     * without boxing.
+     */
+    public void forEachEntry(EntryVisitor visitor) {
+        Iterator<String> keyIter = d_keys.iterator();
+        for (int i = 0; keyIter.hasNext(); ++i)
+            visitor.visit(keyIter.next(), value(i));
+    }
+
+    /**
+     * Get the entries of which the keys are within the given Levenshtein distance of a
+     * key. The maximum distance can currently be 1 or 2. The entries are ordered by key.
+     */
+    public List<FuzzyEntry> fuzzyGet(String key, int maxDistance) {
+        return fuzzyGet(new LevenshteinAutomaton(key, maxDistance));
+    }
+
+    /**
+     * Get the entries of which the keys are accepted by a Levenshtein automaton. The
+     * values are retrieved using the perfect hash codes that are computed during the
+     * intersection of the automaton and the keys. The entries are ordered by key.
+     */
+    public List<FuzzyEntry> fuzzyGet(LevenshteinAutomaton automaton) {
+        List<LevenshteinMatch> matches = automaton.intersectionMatches(d_keys);
+
+        List<FuzzyEntry> entries = new ArrayList<>(matches.size());
+        for (LevenshteinMatch match : matches)
+            entries.add(new FuzzyEntry(match.getSequence(), value(match.getNumber() - 1),
+                    match.getDistance()));
+
+        return entries;
     }
 
     @Override
@@ -271,11 +556,34 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
         return d_keys.isEmpty();
     }
 
+    /**
+     * Get the keys of the mapping. The keys are stored in a perfect hash automaton, the
+     * hash code of a key gives the position of its value.
+     */
     @Override
-    public Set<String> keySet() {
+    public PerfectHashDictionary keySet() {
         return d_keys;
     }
 
+    /**
+     * Get a view of the mappings of which the keys start with the given prefix. The range of
+     * hash codes of these keys is computed once, when the view is created.
+     */
+    public SubMap prefixMap(String prefix) {
+        int[] range = d_keys.hashRange(prefix);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
+    /**
+     * Get a view of the mappings of which the keys are in [<tt>fromKey</tt>, <tt>toKey</tt>).
+     *
+     * @throws IllegalArgumentException If <tt>fromKey</tt> is larger than <tt>toKey</tt>.
+     */
+    public SubMap subMap(String fromKey, String toKey) {
+        int[] range = AbstractRangeMap.keyRange(d_keys, fromKey, toKey);
+        return new SubMap(d_keys, range[0], range[1]);
+    }
+
     @Override
     public Integer put(String k, Integer v) {
         throw new UnsupportedOperationException();
@@ -307,4 +615,19 @@ public class ImmutableStringIntMap extends AbstractMap<String, Integer> implemen
     public Collection<Integer> values() {
         return new IntArrayList();
     }
+
+    private int value(int index) {
+        if (d_values != null)
+            return d_values[index];
+
+        return fromLong(d_packedValues.get(index));
+    }
+
+    private static long toLong(int value) {
+        return value;
+    }
+
+    private static int fromLong(long value) {
+        return (int) value;
+    }
 }
@@ -15,8 +15,10 @@ package eu.danieldk.dictomaton.collections;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -27,14 +29,15 @@ import eu.danieldk.dictomaton.DictionaryBuilderException;
 import eu.danieldk.dictomaton.PerfectHashDictionary;
 
 /**
- * An immutable mapping from {@link String} to {@link String}, where both keys an values are compactly stored
- * using a finite state automaton.
+ * An immutable mapping from {@link String} to {@link String}, where both keys an values are compactly stored.
+ * Keys are stored in a finite state automaton. Values are stored either in a second automaton, which is
+ * compact for repeated values, or using front coding, which is compact and fast for mostly-unique values
+ * such as URLs. The builder picks the store with the smallest estimated size.
  */
 public class ImmutableStringStringMap extends AbstractMap<String, String>
 {
 	private final PerfectHashDictionary d_keys;
-	private final PerfectHashDictionary d_values;
-	private final int[] d_link;
+	private final StringValueStore d_values;
 
 	/**
 	 * A builder for {@link ImmutableStringStringMap}. Mappings
@@ -74,6 +77,25 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 		public synchronized ImmutableStringStringMap build() throws DictionaryBuilderException
 		{
 			PerfectHashDictionary keyDict = new DictionaryBuilder().addAll(d_map.keySet()).buildPerfectHash(false);
+
+			// The entries of the map are in key order, which is also the order of the hash codes.
+			List<String> values = new ArrayList<>(d_map.values());
+			long frontCodedSize = FrontCodedValueStore.sizeInBytes(values);
+
+			// The link table of the dictionary store uses an int per value. If the front-coded store is
+			// not larger than that, the value automaton does not have to be constructed.
+			if (frontCodedSize <= (long) values.size() * (Integer.SIZE / 8))
+				return new ImmutableStringStringMap(keyDict, new FrontCodedValueStore(values));
+
+			StringValueStore dictionaryStore = buildDictionaryStore(keyDict);
+			if (frontCodedSize < dictionaryStore.sizeInBytes())
+				return new ImmutableStringStringMap(keyDict, new FrontCodedValueStore(values));
+
+			return new ImmutableStringStringMap(keyDict, dictionaryStore);
+		}
+
+		private StringValueStore buildDictionaryStore(PerfectHashDictionary keyDict) throws DictionaryBuilderException
+		{
 			PerfectHashDictionary valueDict = new DictionaryBuilder().addAll(new TreeSet<>(d_map.values()))
 					.buildPerfectHash(false);
 
@@ -87,20 +109,42 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 				links[keyHashCode - 1] = valueHashCode;
 			}
 
-			return new ImmutableStringStringMap(keyDict, valueDict, links);
+			return new DictionaryValueStore(valueDict, links);
 		}
 
 	}
 
+	/**
+	 * A view of the mappings of a range of keys, see {@link #prefixMap(String)} and
+	 * {@link #subMap(String, String)}. Values are read directly from the value store of the map.
+	 */
+	public class SubMap extends AbstractRangeMap<String>
+	{
+		private SubMap(PerfectHashDictionary keys, int from, int to)
+		{
+			super(keys, from, to);
+		}
+
+		@Override
+		String valueByNumber(int number)
+		{
+			return d_values.get(number - 1);
+		}
+	}
+
 	private class EntrySet extends AbstractSet<Entry<String, String>>
 	{
 		private class EntrySetIterator implements Iterator<Entry<String, String>>
 		{
 			private final Iterator<String> d_keyIter;
+			private final Iterator<String> d_valueIter;
 
 			public EntrySetIterator()
 			{
+				// Keys are enumerated in the order of their perfect hash codes, which is the
+				// index order of the value store.
 				d_keyIter = d_keys.iterator();
+				d_valueIter = d_values.iterator();
 			}
 
 			@Override
@@ -112,9 +156,7 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 			@Override
 			public Entry<String, String> next()
 			{
-				String key = d_keyIter.next();
-				int idx = d_keys.number(key) - 1;
-				return new SimpleEntry<>(key, d_values.sequence(d_link[idx]));
+				return new SimpleEntry<>(d_keyIter.next(), d_valueIter.next());
 			}
 
 			@Override
@@ -151,7 +193,7 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 			if (hash == -1)
 				return false;
 
-			return d_values.sequence(d_link[hash - 1]).equals(value);
+			return d_values.get(hash - 1).equals(value);
 		}
 
 		@Override
@@ -203,7 +245,7 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 		if (hashcode == -1)
 			return null;
 
-		return d_values.sequence(d_link[hashcode - 1]);
+		return d_values.get(hashcode - 1);
 	}
 
 	@Override
@@ -218,6 +260,27 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 		return d_keys;
 	}
 
+	/**
+	 * Get a view of the mappings of which the keys start with the given prefix. The range of
+	 * hash codes of these keys is computed once, when the view is created.
+	 */
+	public SubMap prefixMap(String prefix)
+	{
+		int[] range = d_keys.hashRange(prefix);
+		return new SubMap(d_keys, range[0], range[1]);
+	}
+
+	/**
+	 * Get a view of the mappings of which the keys are in [<tt>fromKey</tt>, <tt>toKey</tt>).
+	 *
+	 * @throws IllegalArgumentException If <tt>fromKey</tt> is larger than <tt>toKey</tt>.
+	 */
+	public SubMap subMap(String fromKey, String toKey)
+	{
+		int[] range = AbstractRangeMap.keyRange(d_keys, fromKey, toKey);
+		return new SubMap(d_keys, range[0], range[1]);
+	}
+
 	@Override
 	public String put(String k, String v)
 	{
@@ -253,15 +316,20 @@ public class ImmutableStringStringMap extends AbstractMap<String, String>
 	@Override
 	public Collection<String> values()
 	{
-        // Note: check that this is in correspondence to the contract of this method. We might
-        // have to return duplicate values, although they don't exist in our case.
+		return d_values.values();
+	}
+
+	/**
+	 * Get the store that is used for the values.
+	 */
+	StringValueStore valueStore()
+	{
 		return d_values;
 	}
 
-	private ImmutableStringStringMap(PerfectHashDictionary keys, PerfectHashDictionary values, int[] link)
+	private ImmutableStringStringMap(PerfectHashDictionary keys, StringValueStore values)
 	{
 		this.d_keys = keys;
 		this.d_values = values;
-		this.d_link = link;
 	}
 }
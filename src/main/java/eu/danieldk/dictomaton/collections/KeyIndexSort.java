@@ -0,0 +1,134 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorting of keys through an index permutation, so that parallel arrays of primitive values
+ * do not have to be permuted or boxed. The sort is a stable merge sort, large inputs are sorted
+ * in parallel.
+ */
+class KeyIndexSort {
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private KeyIndexSort() {
+    }
+
+    /**
+     * Compute the permutation that sorts the first <i>n</i> keys. Keys that are equal keep their
+     * relative order.
+     *
+     * @param keys The keys.
+     * @param n    The number of keys to sort.
+     * @return The indices of the keys, in key order.
+     */
+    static int[] sortedIndex(String[] keys, int n) {
+        int[] index = new int[n];
+        for (int i = 0; i < n; ++i)
+            index[i] = i;
+
+        int[] scratch = new int[n];
+
+        if (n < PARALLEL_THRESHOLD)
+            sort(keys, index, scratch, 0, n);
+        else
+            SharedPool.INSTANCE.invoke(new SortTask(keys, index, scratch, 0, n));
+
+        return index;
+    }
+
+    private static void sort(String[] keys, int[] index, int[] scratch, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, index, from, to);
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        sort(keys, index, scratch, from, mid);
+        sort(keys, index, scratch, mid, to);
+        merge(keys, index, scratch, from, mid, to);
+    }
+
+    private static void insertionSort(String[] keys, int[] index, int from, int to) {
+        for (int i = from + 1; i < to; ++i) {
+            int idx = index[i];
+            int j = i - 1;
+            while (j >= from && keys[index[j]].compareTo(keys[idx]) > 0) {
+                index[j + 1] = index[j];
+                --j;
+            }
+            index[j + 1] = idx;
+        }
+    }
+
+    private static void merge(String[] keys, int[] index, int[] scratch, int from, int mid, int to) {
+        // Already in order.
+        if (keys[index[mid - 1]].compareTo(keys[index[mid]]) <= 0)
+            return;
+
+        System.arraycopy(index, from, scratch, from, to - from);
+
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; ++i) {
+            if (right == to || (left < mid && keys[scratch[left]].compareTo(keys[scratch[right]]) <= 0))
+                index[i] = scratch[left++];
+            else
+                index[i] = scratch[right++];
+        }
+    }
+
+    /**
+     * Holder of the pool that is used to sort large inputs. The pool is created when it is first
+     * used and is shared by all sorts.
+     */
+    private static class SharedPool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+
+    private static class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] d_keys;
+        private final int[] d_index;
+        private final int[] d_scratch;
+        private final int d_from;
+        private final int d_to;
+
+        private SortTask(String[] keys, int[] index, int[] scratch, int from, int to) {
+            d_keys = keys;
+            d_index = index;
+            d_scratch = scratch;
+            d_from = from;
+            d_to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (d_to - d_from < PARALLEL_THRESHOLD) {
+                sort(d_keys, d_index, d_scratch, d_from, d_to);
+                return;
+            }
+
+            int mid = (d_from + d_to) >>> 1;
+            invokeAll(new SortTask(d_keys, d_index, d_scratch, d_from, mid),
+                    new SortTask(d_keys, d_index, d_scratch, mid, d_to));
+            merge(d_keys, d_index, d_scratch, d_from, mid, d_to);
+        }
+    }
+}
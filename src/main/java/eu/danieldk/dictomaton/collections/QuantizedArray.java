@@ -0,0 +1,180 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.io.Serializable;
+
+/**
+ * An immutable array of quantized floating point values. The quantization codes are stored
+ * in a {@link FrameOfReferenceArray}. Arrays are constructed using {@link ValueQuantization}.
+ */
+class QuantizedArray implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final double FLOAT16_MAX = 65504;
+
+    private final ValueQuantization.Kind d_kind;
+    private final FrameOfReferenceArray d_codes;
+    private final double d_base;
+    private final double d_step;
+    private final double[] d_codebook;
+    private final double d_maxError;
+
+    /**
+     * Construct a quantized array. The original values are used to compute the maximum
+     * quantization error.
+     */
+    QuantizedArray(ValueQuantization.Kind kind, FrameOfReferenceArray codes, double base, double step,
+                   double[] codebook, double[] values) {
+        d_kind = kind;
+        d_codes = codes;
+        d_base = base;
+        d_step = step;
+        d_codebook = codebook;
+
+        double maxError = 0;
+        for (int i = 0; i < values.length; ++i) {
+            double value = values[i];
+            double decoded = get(i);
+
+            // Infinite values are represented exactly, NaN is decoded as NaN.
+            if (value != decoded && !(Double.isNaN(value) && Double.isNaN(decoded)))
+                maxError = Math.max(maxError, Math.abs(value - decoded));
+        }
+
+        d_maxError = maxError;
+    }
+
+    /**
+     * Get the value at the given index.
+     */
+    double get(int index) {
+        long code = d_codes.get(index);
+        switch (d_kind) {
+            case FLOAT16:
+                return fromFloat16((int) code);
+            case SCALED_INTEGER:
+                return d_base + code * d_step;
+            default:
+                return d_codebook[(int) code];
+        }
+    }
+
+    /**
+     * Decode the values in the index range [from, to) into an array.
+     */
+    void decode(int from, int to, double[] dest, int destOffset) {
+        switch (d_kind) {
+            case FLOAT16:
+                for (int i = from; i < to; ++i)
+                    dest[destOffset++] = fromFloat16((int) d_codes.get(i));
+                break;
+            case SCALED_INTEGER:
+                for (int i = from; i < to; ++i)
+                    dest[destOffset++] = d_base + d_codes.get(i) * d_step;
+                break;
+            default:
+                for (int i = from; i < to; ++i)
+                    dest[destOffset++] = d_codebook[(int) d_codes.get(i)];
+        }
+    }
+
+    /**
+     * Decode the values in the index range [from, to) into an array.
+     */
+    void decode(int from, int to, float[] dest, int destOffset) {
+        switch (d_kind) {
+            case FLOAT16:
+                for (int i = from; i < to; ++i)
+                    dest[destOffset++] = fromFloat16((int) d_codes.get(i));
+                break;
+            case SCALED_INTEGER:
+                for (int i = from; i < to; ++i)
+                    dest[destOffset++] = (float) (d_base + d_codes.get(i) * d_step);
+                break;
+            default:
+                for (int i = from; i < to; ++i)
+                    dest[destOffset++] = (float) d_codebook[(int) d_codes.get(i)];
+        }
+    }
+
+    /**
+     * Get the largest absolute error of a value in this array.
+     */
+    double maxError() {
+        return d_maxError;
+    }
+
+    /**
+     * Convert a float to half precision, rounding to the nearest even value.
+     */
+    static int toFloat16(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int magnitude = bits & 0x7fffffff;
+
+        // Infinity and NaN.
+        if (magnitude >= 0x7f800000)
+            return sign | 0x7c00 | (magnitude > 0x7f800000 ? 0x200 : 0);
+
+        // Values of 65520 and larger round to infinity.
+        if (magnitude >= 0x477ff000)
+            return sign | 0x7c00;
+
+        // Subnormal half-precision values.
+        if (magnitude < 0x38800000) {
+            if (magnitude < 0x33000000)
+                return sign;
+
+            int shift = 126 - (magnitude >>> 23);
+            int mantissa = (magnitude & 0x7fffff) | 0x800000;
+            int half = mantissa >>> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int midpoint = 1 << (shift - 1);
+            if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0))
+                ++half;
+
+            return sign | half;
+        }
+
+        int half = (((magnitude >>> 23) - 112) << 10) | ((magnitude & 0x7fffff) >>> 13);
+        int remainder = magnitude & 0x1fff;
+
+        // A carry into the exponent gives the correct result.
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0))
+            ++half;
+
+        return sign | half;
+    }
+
+    /**
+     * Convert a half-precision value to a float.
+     */
+    static float fromFloat16(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+
+        if (exponent == 0) {
+            float value = mantissa * 0x1p-24f;
+            return sign == 0 ? value : -value;
+        }
+
+        if (exponent == 0x1f)
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+}
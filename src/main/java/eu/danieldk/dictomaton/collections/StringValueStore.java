@@ -0,0 +1,45 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Storage for the values of an {@link ImmutableStringStringMap}. Values are retrieved by
+ * index, which is the perfect hash code of the key minus one.
+ */
+interface StringValueStore {
+    /**
+     * Get the value at the given index.
+     */
+    String get(int index);
+
+    /**
+     * Get an iterator over the values in index order. Stores should make iteration cheaper
+     * than calling {@link #get(int)} for every index.
+     */
+    Iterator<String> iterator();
+
+    /**
+     * Get an estimate of the memory used by the store in bytes.
+     */
+    long sizeInBytes();
+
+    /**
+     * Get the values in the store in index order, with one value per index.
+     */
+    Collection<String> values();
+}
@@ -0,0 +1,246 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.util.Arrays;
+
+/**
+ * A lossy storage mode for the values of {@link ImmutableStringFloatMap} and
+ * {@link ImmutableStringDoubleMap}. Quantized values are stored as small integer codes
+ * in a bit-packed array. The largest error that was introduced by quantization can be
+ * retrieved from the map after construction.
+ * <p/>
+ * The following modes are available:
+ * <ul>
+ * <li>{@link #float16()}: IEEE 754 half precision, 16 bits per value. The relative error
+ * is at most 2<sup>-11</sup> for values in the normal range.</li>
+ * <li>{@link #scaledInteger(double)}: values are stored as integer multiples of a step
+ * relative to the smallest value. The absolute error is at most the given bound.</li>
+ * <li>{@link #codebook(int)}: values are replaced by the nearest entry of a codebook of
+ * at most 2<sup>bits</sup> entries that is fitted to the values.</li>
+ * </ul>
+ */
+public final class ValueQuantization {
+    enum Kind {
+        FLOAT16,
+        SCALED_INTEGER,
+        CODEBOOK
+    }
+
+    private static final int CODEBOOK_ITERATIONS = 20;
+
+    private final Kind d_kind;
+    private final double d_maxError;
+    private final int d_bits;
+
+    private ValueQuantization(Kind kind, double maxError, int bits) {
+        d_kind = kind;
+        d_maxError = maxError;
+        d_bits = bits;
+    }
+
+    /**
+     * Store values as IEEE 754 half-precision floating point numbers. Construction of a map
+     * fails with an {@link IllegalArgumentException} if a finite value is too large to be
+     * represented.
+     */
+    public static ValueQuantization float16() {
+        return new ValueQuantization(Kind.FLOAT16, 0, 16);
+    }
+
+    /**
+     * Store values as integer multiples of <tt>2 * maxError</tt>, relative to the smallest
+     * value. Construction of a map fails with an {@link IllegalArgumentException} if a value
+     * is not finite.
+     *
+     * @param maxError The maximum absolute error.
+     */
+    public static ValueQuantization scaledInteger(double maxError) {
+        if (!(maxError > 0) || Double.isInfinite(maxError))
+            throw new IllegalArgumentException("The maximum error should be positive and finite: " + maxError);
+
+        return new ValueQuantization(Kind.SCALED_INTEGER, maxError, 0);
+    }
+
+    /**
+     * Store values as indices in a codebook. The codebook is fitted to the values using
+     * Lloyd's algorithm. If there are no more distinct values than codebook entries, values
+     * are stored without loss. Construction of a map fails with an
+     * {@link IllegalArgumentException} if a value is NaN.
+     *
+     * @param bits The number of bits per code, in the range [1, 16].
+     */
+    public static ValueQuantization codebook(int bits) {
+        if (bits < 1 || bits > 16)
+            throw new IllegalArgumentException("The number of codebook bits should be in [1, 16]: " + bits);
+
+        return new ValueQuantization(Kind.CODEBOOK, 0, bits);
+    }
+
+    /**
+     * Quantize values.
+     */
+    QuantizedArray quantize(double[] values) {
+        switch (d_kind) {
+            case FLOAT16:
+                return quantizeFloat16(values);
+            case SCALED_INTEGER:
+                return quantizeScaled(values);
+            case CODEBOOK:
+                return quantizeCodebook(values);
+            default:
+                throw new IllegalStateException("Unknown quantization: " + d_kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (d_kind) {
+            case FLOAT16:
+                return "float16";
+            case SCALED_INTEGER:
+                return String.format("scaledInteger(%s)", d_maxError);
+            default:
+                return String.format("codebook(%d)", d_bits);
+        }
+    }
+
+    private QuantizedArray quantizeFloat16(double[] values) {
+        long[] codes = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            if (Math.abs(values[i]) > QuantizedArray.FLOAT16_MAX && !Double.isInfinite(values[i]))
+                throw new IllegalArgumentException("Value cannot be represented as a float16: " + values[i]);
+
+            codes[i] = QuantizedArray.toFloat16((float) values[i]);
+        }
+
+        return new QuantizedArray(Kind.FLOAT16, new FrameOfReferenceArray(codes), 0, 0, null, values);
+    }
+
+    private QuantizedArray quantizeScaled(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            if (Double.isNaN(value) || Double.isInfinite(value))
+                throw new IllegalArgumentException("Value cannot be stored as a scaled integer: " + value);
+
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        double step = 2 * d_maxError;
+        if (values.length != 0 && (max - min) / step >= Long.MAX_VALUE / 2)
+            throw new IllegalArgumentException(String.format("Value range [%s, %s] is too large for error %s",
+                    min, max, d_maxError));
+
+        long[] codes = new long[values.length];
+        for (int i = 0; i < values.length; ++i)
+            codes[i] = Math.round((values[i] - min) / step);
+
+        return new QuantizedArray(Kind.SCALED_INTEGER, new FrameOfReferenceArray(codes), min, step, null, values);
+    }
+
+    private QuantizedArray quantizeCodebook(double[] values) {
+        for (double value : values)
+            if (Double.isNaN(value))
+                throw new IllegalArgumentException("NaN cannot be stored in a codebook");
+
+        double[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+
+        // Distinct values.
+        int nDistinct = 0;
+        for (int i = 0; i < sorted.length; ++i)
+            if (i == 0 || sorted[i] != sorted[nDistinct - 1])
+                sorted[nDistinct++] = sorted[i];
+
+        double[] codebook;
+        if (nDistinct <= 1 << d_bits)
+            codebook = Arrays.copyOf(sorted, nDistinct);
+        else
+            codebook = fitCodebook(values, 1 << d_bits);
+
+        long[] codes = new long[values.length];
+        for (int i = 0; i < values.length; ++i)
+            codes[i] = nearest(codebook, values[i]);
+
+        return new QuantizedArray(Kind.CODEBOOK, new FrameOfReferenceArray(codes), 0, 0, codebook, values);
+    }
+
+    /**
+     * Fit a codebook with Lloyd's algorithm. In one dimension, the cells of the codebook
+     * entries are intervals, so values can be assigned in a single pass over the sorted values.
+     */
+    private static double[] fitCodebook(double[] values, int size) {
+        double[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+
+        // Start with the quantiles of the values.
+        double[] codebook = new double[size];
+        for (int i = 0; i < size; ++i)
+            codebook[i] = sorted[(int) (((long) i * 2 + 1) * sorted.length / (2L * size))];
+
+        double[] sums = new double[size];
+        int[] counts = new int[size];
+
+        for (int iter = 0; iter < CODEBOOK_ITERATIONS; ++iter) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+
+            int code = 0;
+            for (double value : sorted) {
+                while (code + 1 < size && value - codebook[code] > codebook[code + 1] - value)
+                    ++code;
+
+                sums[code] += value;
+                ++counts[code];
+            }
+
+            boolean changed = false;
+            for (int i = 0; i < size; ++i) {
+                if (counts[i] == 0)
+                    continue;
+
+                double mean = sums[i] / counts[i];
+                if (mean != codebook[i]) {
+                    codebook[i] = mean;
+                    changed = true;
+                }
+            }
+
+            if (!changed)
+                break;
+
+            // Empty cells may be out of order after the means are updated.
+            Arrays.sort(codebook);
+        }
+
+        return codebook;
+    }
+
+    private static int nearest(double[] codebook, double value) {
+        int idx = Arrays.binarySearch(codebook, value);
+        if (idx >= 0)
+            return idx;
+
+        int insertion = -idx - 1;
+        if (insertion == 0)
+            return 0;
+        if (insertion == codebook.length)
+            return codebook.length - 1;
+
+        return value - codebook[insertion - 1] <= codebook[insertion] - value ? insertion - 1 : insertion;
+    }
+}
@@ -0,0 +1,222 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import eu.danieldk.dictomaton.Dictionary;
+
+/**
+ * Matcher that intersects many Levenshtein automata with a single dictionary in parallel, using a
+ * {@link ForkJoinPool}. The query words are distributed over the worker threads, each of which
+ * reuses its own traversal buffers. Expensive queries (a large edit distance compared to the length
+ * of the word) are additionally split over the subtrees of the start state of the dictionary.
+ */
+public class BatchLevenshteinMatcher {
+    // The number of queries that a task handles without forking.
+    private static final int QUERIES_PER_TASK = 8;
+
+    private final Dictionary d_dictionary;
+    private final ForkJoinPool d_pool;
+    private final LevenshteinAutomatonCache d_cache;
+    private final ThreadLocal<TraversalBuffer> d_buffers;
+
+    /**
+     * Construct a matcher for a dictionary. The matcher uses a {@link ForkJoinPool} with parallelism
+     * equal to the number of available processors, which is shared by all matchers that are
+     * constructed without a pool.
+     *
+     * @param dictionary The dictionary.
+     */
+    public BatchLevenshteinMatcher(Dictionary dictionary) {
+        this(dictionary, SharedPool.INSTANCE, null);
+    }
+
+    /**
+     * Construct a matcher for a dictionary that uses the given pool.
+     *
+     * @param dictionary The dictionary.
+     * @param pool       The pool to execute queries on.
+     */
+    public BatchLevenshteinMatcher(Dictionary dictionary, ForkJoinPool pool) {
+        this(dictionary, pool, null);
+    }
+
+    /**
+     * Construct a matcher for a dictionary that uses the given pool. Levenshtein automata are
+     * retrieved from the given cache.
+     *
+     * @param dictionary The dictionary.
+     * @param pool       The pool to execute queries on.
+     * @param cache      The automaton cache, or <tt>null</tt> if automata should not be cached.
+     */
+    public BatchLevenshteinMatcher(Dictionary dictionary, ForkJoinPool pool, LevenshteinAutomatonCache cache) {
+        d_dictionary = dictionary;
+        d_pool = pool;
+        d_cache = cache;
+        d_buffers = new ThreadLocal<TraversalBuffer>() {
+            @Override
+            protected TraversalBuffer initialValue() {
+                return new TraversalBuffer();
+            }
+        };
+    }
+
+    /**
+     * Compute the intersection languages of the dictionary and the Levenshtein automata for the
+     * given words. This amounts to finding the strings in the dictionary that are within the
+     * given edit distance of each word.
+     *
+     * @param words       The words.
+     * @param maxDistance The maximum distance, this can currently be 1 or 2.
+     * @return The intersection languages, in the order of the words.
+     */
+    public List<Set<String>> intersectionLanguages(List<String> words, int maxDistance) {
+        List<Set<String>> languages = new ArrayList<>(Collections.<Set<String>>nCopies(words.size(), null));
+
+        d_pool.invoke(new QueriesTask(new ArrayList<>(words), maxDistance, languages, 0, words.size()));
+
+        return languages;
+    }
+
+    private LevenshteinAutomaton automaton(String word, int maxDistance) {
+        if (d_cache == null)
+            return new LevenshteinAutomaton(word, maxDistance);
+
+        return d_cache.get(word, maxDistance);
+    }
+
+    /**
+     * Returns <tt>true</tt> if a query is expensive enough to split it over the subtrees of the
+     * start state. This is the case when the automaton accepts large parts of the dictionary,
+     * because the maximum distance is large compared to the word length.
+     */
+    private boolean isExpensive(String word, int maxDistance) {
+        return maxDistance >= 2 && word.length() <= 2 * maxDistance + 1;
+    }
+
+    /**
+     * Holder of the pool that is used by matchers that are constructed without a pool. The pool
+     * is created when it is first used.
+     */
+    private static class SharedPool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+
+    /**
+     * Task that processes a range of queries.
+     */
+    private class QueriesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> d_words;
+        private final int d_maxDistance;
+        private final List<Set<String>> d_languages;
+        private final int d_from;
+        private final int d_to;
+
+        private QueriesTask(List<String> words, int maxDistance, List<Set<String>> languages, int from, int to) {
+            d_words = words;
+            d_maxDistance = maxDistance;
+            d_languages = languages;
+            d_from = from;
+            d_to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (d_to - d_from > QUERIES_PER_TASK) {
+                int mid = (d_from + d_to) >>> 1;
+                invokeAll(new QueriesTask(d_words, d_maxDistance, d_languages, d_from, mid),
+                        new QueriesTask(d_words, d_maxDistance, d_languages, mid, d_to));
+                return;
+            }
+
+            for (int i = d_from; i < d_to; ++i) {
+                String word = d_words.get(i);
+                LevenshteinAutomaton automaton = automaton(word, d_maxDistance);
+
+                if (isExpensive(word, d_maxDistance))
+                    d_languages.set(i, splitQuery(automaton));
+                else {
+                    Set<String> language = new HashSet<>();
+                    automaton.intersectionLanguage(d_dictionary, d_buffers.get(), language);
+                    d_languages.set(i, language);
+                }
+            }
+        }
+
+        private Set<String> splitQuery(LevenshteinAutomaton automaton) {
+            int dictStart = d_dictionary.startState();
+            int laStart = automaton.startState();
+
+            List<SubtreeTask> tasks = new ArrayList<>();
+            for (int trans = d_dictionary.transitionsStart(dictStart);
+                 trans < d_dictionary.transitionsEnd(dictStart); ++trans) {
+                char c = d_dictionary.transitionCharacter(trans);
+
+                int laState = automaton.next(laStart, c);
+                if (laState != -1)
+                    tasks.add(new SubtreeTask(automaton, d_dictionary.transitionTarget(trans), laState, c));
+            }
+
+            invokeAll(tasks);
+
+            Set<String> language = new HashSet<>();
+
+            // The empty string is not in any of the subtrees.
+            if (automaton.isFinalState(laStart) && d_dictionary.isFinalState(dictStart))
+                language.add("");
+
+            for (SubtreeTask task : tasks)
+                language.addAll(task.d_language);
+
+            return language;
+        }
+    }
+
+    /**
+     * Task that intersects an automaton with the subtree of the dictionary that is reached
+     * through a transition from the start state.
+     */
+    private class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LevenshteinAutomaton d_automaton;
+        private final int d_dictState;
+        private final int d_laState;
+        private final char d_char;
+        private final List<String> d_language;
+
+        private SubtreeTask(LevenshteinAutomaton automaton, int dictState, int laState, char c) {
+            d_automaton = automaton;
+            d_dictState = dictState;
+            d_laState = laState;
+            d_char = c;
+            d_language = new ArrayList<>();
+        }
+
+        @Override
+        protected void compute() {
+            TraversalBuffer buffer = d_buffers.get();
+            buffer.clear();
+            buffer.push(d_dictState, d_laState, 1, 0, d_char);
+            d_automaton.traverse(d_dictionary, null, false, null, buffer,
+                    new LevenshteinAutomaton.LanguageHandler(d_language));
+        }
+    }
+}
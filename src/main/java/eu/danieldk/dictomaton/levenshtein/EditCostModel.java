@@ -0,0 +1,56 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+/**
+ * Costs of edit operations for {@link WeightedLevenshteinSearch}. Edit operations describe how a
+ * query is transformed into a dictionary sequence. Costs must not be negative.
+ */
+public interface EditCostModel {
+    /**
+     * The cost of deleting a character from the query.
+     *
+     * @param c The character.
+     * @return The cost.
+     */
+    double deletion(char c);
+
+    /**
+     * The cost of inserting a character into the query.
+     *
+     * @param c The character.
+     * @return The cost.
+     */
+    double insertion(char c);
+
+    /**
+     * The cost of substituting a character of the query by another character. This
+     * method is only called for different characters.
+     *
+     * @param from The character of the query.
+     * @param to   The character that replaces it.
+     * @return The cost.
+     */
+    double substitution(char from, char to);
+
+    /**
+     * The cost of transposing two adjacent characters of the query.
+     *
+     * @param first  The first character of the query.
+     * @param second The second character of the query.
+     * @return The cost.
+     */
+    double transposition(char first, char second);
+}
@@ -0,0 +1,116 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An edit cost model for typing errors, where substitutions of characters that are adjacent
+ * on the keyboard are cheaper than other substitutions. Characters are compared case-insensitively
+ * for adjacency.
+ */
+public class KeyboardCostModel implements EditCostModel {
+    private static final String[] QWERTY_ROWS = {"1234567890", "qwertyuiop", "asdfghjkl", "zxcvbnm"};
+
+    // Horizontal offsets of keyboard rows, in keys.
+    private static final double[] ROW_OFFSETS = {0, 0.5, 0.75, 1.25};
+
+    private final Set<Integer> d_adjacent;
+    private final double d_adjacentSubstitution;
+    private final double d_substitution;
+    private final double d_insertion;
+    private final double d_deletion;
+    private final double d_transposition;
+
+    /**
+     * Construct a cost model for a keyboard layout. Two keys are adjacent when they are
+     * neighbors on the same row, or when they overlap horizontally on neighboring rows.
+     *
+     * @param rows                 The rows of the keyboard, from top to bottom.
+     * @param adjacentSubstitution The cost of substituting a character by an adjacent character.
+     * @param substitution         The cost of substituting a character by a non-adjacent character.
+     * @param insertion            The cost of an insertion.
+     * @param deletion             The cost of a deletion.
+     * @param transposition        The cost of a transposition.
+     */
+    public KeyboardCostModel(String[] rows, double adjacentSubstitution, double substitution, double insertion,
+                             double deletion, double transposition) {
+        if (rows.length > ROW_OFFSETS.length)
+            throw new IllegalArgumentException(String.format("At most %d keyboard rows are supported",
+                    ROW_OFFSETS.length));
+
+        d_adjacent = new HashSet<>();
+        for (int row = 0; row < rows.length; ++row)
+            for (int col = 0; col < rows[row].length(); ++col)
+                for (int otherRow = Math.max(0, row - 1); otherRow < Math.min(rows.length, row + 2); ++otherRow)
+                    for (int otherCol = 0; otherCol < rows[otherRow].length(); ++otherCol) {
+                        double dx = Math.abs((col + ROW_OFFSETS[row]) - (otherCol + ROW_OFFSETS[otherRow]));
+                        if ((otherRow != row || otherCol != col) && dx <= 1.0)
+                            d_adjacent.add(pair(rows[row].charAt(col), rows[otherRow].charAt(otherCol)));
+                    }
+
+        d_adjacentSubstitution = adjacentSubstitution;
+        d_substitution = substitution;
+        d_insertion = insertion;
+        d_deletion = deletion;
+        d_transposition = transposition;
+    }
+
+    /**
+     * Construct a cost model for the QWERTY layout, where substitutions of adjacent characters and
+     * transpositions have cost 0.5 and other edit operations cost 1.
+     *
+     * @return The cost model.
+     */
+    public static KeyboardCostModel qwerty() {
+        return new KeyboardCostModel(QWERTY_ROWS, 0.5, 1, 1, 1, 0.5);
+    }
+
+    /**
+     * Returns <tt>true</tt> if two characters are adjacent on the keyboard.
+     *
+     * @param c1 The first character.
+     * @param c2 The second character.
+     * @return <tt>true</tt> if the characters are adjacent, <tt>false</tt> otherwise.
+     */
+    public boolean isAdjacent(char c1, char c2) {
+        return d_adjacent.contains(pair(Character.toLowerCase(c1), Character.toLowerCase(c2)));
+    }
+
+    @Override
+    public double deletion(char c) {
+        return d_deletion;
+    }
+
+    @Override
+    public double insertion(char c) {
+        return d_insertion;
+    }
+
+    @Override
+    public double substitution(char from, char to) {
+        return isAdjacent(from, to) ? d_adjacentSubstitution : d_substitution;
+    }
+
+    @Override
+    public double transposition(char first, char second) {
+        return d_transposition;
+    }
+
+    private static int pair(char c1, char c2) {
+        return (c1 << 16) | c2;
+    }
+}
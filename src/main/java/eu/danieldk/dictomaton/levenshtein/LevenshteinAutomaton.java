@@ -15,7 +15,9 @@ package eu.danieldk.dictomaton.levenshtein;
 
 import java.util.*;
 
+import eu.danieldk.dictomaton.CharacterFolding;
 import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.PerfectHashDictionary;
 
 /**
  * A Levenshtein automaton is an automaton that accepts a string and all strings within
@@ -23,14 +25,34 @@ import eu.danieldk.dictomaton.Dictionary;
  * tables, allowing for the construction of the automaton in <i>O(l*n)</i> time, where <i>l</i>
  * is the word length and *n* the number of edit operations. In other words, the construction
  * time grows linearly with the length of a word for a given edit distance.
+ * <p>
+ * After construction, the automaton is compiled into a compact transition table. The automaton
+ * is immutable and can be shared between threads. Since construction is relatively expensive
+ * compared to intersection with a dictionary, automata for frequent queries can be reused
+ * through a {@link LevenshteinAutomatonCache}.
+ * </p>
  */
 public class LevenshteinAutomaton {
     private final static ParametricTransitions[] d_parametricTransitions = {new ParametricTransitions1(),
             new ParametricTransitions2()};
-    private final LevenshteinAutomatonState d_startState;
-    private final Set<Character> d_alphabet;
+
+    // Pseudo-state that accepts any suffix, used for prefix intersection.
+    private final static int ACCEPT_ALL_STATE = -2;
+    private final String d_word;
+    private final int d_maxDistance;
     private final char d_otherChar;
 
+    // The automaton is compiled to a transition table, similar to the tables used by dictionaries.
+    // States are numbered in breadth-first order, the start state is 0. The transitions of state
+    // s are stored in the range [d_stateOffsets[s], d_stateOffsets[s + 1]) of the transition table,
+    // ordered by character. d_otherTo stores the target of the 'other' transition of each state
+    // or -1 if a state has no such transition.
+    private final int[] d_stateOffsets;
+    private final char[] d_transitionChars;
+    private final int[] d_transitionTo;
+    private final int[] d_otherTo;
+    private final BitSet d_finalStates;
+
     /**
      * Construct a Levenshtein automaton for a word with a maximumum permitted Levenshtein
      * distance. The maximum distance can currently be 1 or 2.
@@ -43,12 +65,115 @@ public class LevenshteinAutomaton {
             throw new IllegalArgumentException(String.format("The maximum supported edit distance is: %d",
                     d_parametricTransitions.length));
 
-        d_alphabet = extractAlphabet(word);
-        d_otherChar = findAnyChar(d_alphabet);
-        d_alphabet.add(d_otherChar);
+        d_word = word;
+        d_maxDistance = maxDistance;
+
+        Set<Character> alphabet = extractAlphabet(word);
+        d_otherChar = findAnyChar(alphabet);
+        alphabet.add(d_otherChar);
+
+        LevenshteinAutomatonState startState = createAutomaton(d_parametricTransitions[maxDistance - 1], word,
+                alphabet);
+        startState.reduce(d_otherChar);
+
+        // Compile the automaton.
+        Map<LevenshteinAutomatonState, Integer> stateNumbers = numberedStates(startState);
+        LevenshteinAutomatonState[] states = stateList(stateNumbers);
+
+        int nTransitions = 0;
+        for (LevenshteinAutomatonState state : states)
+            nTransitions += state.transitions().size();
+
+        d_stateOffsets = new int[states.length + 1];
+        d_transitionChars = new char[nTransitions];
+        d_transitionTo = new int[nTransitions];
+        d_otherTo = new int[states.length];
+        d_finalStates = new BitSet(states.length);
+
+        int trans = 0;
+        for (int state = 0; state < states.length; ++state) {
+            d_stateOffsets[state] = trans;
+            d_otherTo[state] = -1;
+
+            for (Map.Entry<Character, LevenshteinAutomatonState> t : states[state].transitions().entrySet()) {
+                d_transitionChars[trans] = t.getKey();
+                d_transitionTo[trans] = stateNumbers.get(t.getValue());
+
+                if (t.getKey() == d_otherChar)
+                    d_otherTo[state] = d_transitionTo[trans];
+
+                ++trans;
+            }
+
+            if (states[state].isFinal())
+                d_finalStates.set(state);
+        }
+
+        d_stateOffsets[states.length] = trans;
+    }
+
+    /**
+     * Get the maximum edit distance of this automaton.
+     *
+     * @return The maximum edit distance.
+     */
+    public int maxDistance() {
+        return d_maxDistance;
+    }
+
+    /**
+     * Get the word for which this automaton was constructed.
+     *
+     * @return The word.
+     */
+    public String word() {
+        return d_word;
+    }
+
+    /**
+     * Get the start state.
+     *
+     * @return The start state.
+     */
+    public int startState() {
+        return 0;
+    }
 
-        d_startState = createAutomaton(d_parametricTransitions[maxDistance - 1], word);
-        d_startState.reduce(d_otherChar);
+    /**
+     * Returns <tt>true</tt> if the state is a final state and <tt>false</tt> otherwise.
+     *
+     * @param state The state.
+     * @return Finalness of the state.
+     */
+    public boolean isFinalState(int state) {
+        return d_finalStates.get(state);
+    }
+
+    /**
+     * Get the next state, given a character. Characters that do not occur in the word
+     * follow the 'other' transition of the state.
+     *
+     * @param state The state.
+     * @param c     The character.
+     * @return The next state or <tt>-1</tt> if there is no transition for the character.
+     */
+    public int next(int state, char c) {
+        int start = d_stateOffsets[state];
+        int end = d_stateOffsets[state + 1] - 1;
+
+        // Binary search
+        while (end >= start) {
+            int mid = start + ((end - start) / 2);
+
+            if (d_transitionChars[mid] > c)
+                end = mid - 1;
+            else if (d_transitionChars[mid] < c)
+                start = mid + 1;
+            else
+                return d_transitionTo[mid];
+        }
+
+        return d_otherTo[state];
     }
 
     /**
@@ -60,25 +185,13 @@ public class LevenshteinAutomaton {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("digraph G {\n");
 
-        Map<LevenshteinAutomatonState, Integer> stateNumbers = numberedStates(d_startState);
+        for (int state = 0; state < d_otherTo.length; ++state) {
+            if (d_finalStates.get(state))
+                stringBuilder.append(String.format("%d [peripheries=2];\n", state));
 
-        // We want to traverse states a fixed order, so that the output is predictable. We
-        // could also store the numbered states in a TreeMap, but LevenshteinAutomatonState doesn't implement
-        // Comparable, and I wouldn't even know what that would mean ;).
-        LevenshteinAutomatonState[] states = new LevenshteinAutomatonState[stateNumbers.size()];
-
-        for (Map.Entry<LevenshteinAutomatonState, Integer> numberedState : stateNumbers.entrySet())
-            states[numberedState.getValue()] = numberedState.getKey();
-
-        for (int stateNumber = 0; stateNumber < states.length; ++stateNumber) {
-            LevenshteinAutomatonState s = states[stateNumber];
-
-            if (s.isFinal())
-                stringBuilder.append(String.format("%d [peripheries=2];\n", stateNumber));
-
-            for (Map.Entry<Character, LevenshteinAutomatonState> trans : s.transitions().entrySet())
-                stringBuilder.append(String.format("%d -> %d [label=\"%c\"];\n", stateNumber,
-                        stateNumbers.get(trans.getValue()), trans.getKey()));
+            for (int trans = d_stateOffsets[state]; trans < d_stateOffsets[state + 1]; ++trans)
+                stringBuilder.append(String.format("%d -> %d [label=\"%c\"];\n", state,
+                        d_transitionTo[trans], d_transitionChars[trans]));
         }
 
         stringBuilder.append("}");
@@ -96,35 +209,163 @@ public class LevenshteinAutomaton {
      */
     public Set<String> intersectionLanguage(Dictionary dictionary) {
         Set<String> language = new HashSet<>();
+        intersectionLanguage(dictionary, new TraversalBuffer(), language);
+        return language;
+    }
 
-        Queue<StatePair> q = new LinkedList<>();
-        q.add(new StatePair(dictionary.startState(), d_startState, ""));
+    /**
+     * Compute the intersection language of a dictionary and the automaton, using the given
+     * traversal buffer.
+     *
+     * @param dictionary The dictionary.
+     * @param buffer     The traversal buffer.
+     * @param language   The collection that the intersection language is added to.
+     */
+    void intersectionLanguage(Dictionary dictionary, TraversalBuffer buffer, Collection<String> language) {
+        intersect(dictionary, null, false, null, buffer, new LanguageHandler(language));
+    }
 
-        while (!q.isEmpty()) {
-            StatePair pair = q.poll();
-            int dictState = pair.getDictionaryState();
-            LevenshteinAutomatonState laState = pair.getLevenshteinAutomatonState();
-            String string = pair.getString();
+    /**
+     * Compute the intersection language of a dictionary and the automaton, where the characters
+     * of the dictionary are folded before they are matched against the automaton. This allows
+     * for case- or diacritic-insensitive matching against a dictionary that contains the original
+     * forms. The automaton should be constructed for a folded word, e.g.:
+     * <pre>
+     * {@code
+     * LevenshteinAutomaton la = new LevenshteinAutomaton(CharacterFolding.CASE.fold(word), 1);
+     * Set<String> language = la.intersectionLanguage(dictionary, CharacterFolding.CASE);
+     * }
+     * </pre>
+     *
+     * @param dictionary The dictionary.
+     * @param folding    The character folding.
+     * @return The intersection language, consisting of the original (unfolded) dictionary sequences.
+     */
+    public Set<String> intersectionLanguage(Dictionary dictionary, CharacterFolding folding) {
+        Set<String> language = new HashSet<>();
+        intersect(dictionary, null, false, folding, new TraversalBuffer(), new LanguageHandler(language));
+        return language;
+    }
 
-            for (Character c : dictionary.transitionCharacters(dictState)) {
-                LevenshteinAutomatonState laNewState = laState.move(c);
+    /**
+     * Compute the prefix intersection language of a dictionary and the automaton. This amounts
+     * to finding the strings in the dictionary that have a prefix that is within the edit distance
+     * allowed by the {@link LevenshteinAutomaton}. This can be used for typo-tolerant completion:
+     * once a prefix is accepted by the automaton, all completions of that prefix in the dictionary
+     * are enumerated.
+     *
+     * @param dictionary The dictionary.
+     * @return The prefix intersection language, in lexicographic order.
+     */
+    public Set<String> prefixIntersectionLanguage(Dictionary dictionary) {
+        Set<String> language = new LinkedHashSet<>();
+        intersect(dictionary, null, true, null, new TraversalBuffer(), new LanguageHandler(language));
+        return language;
+    }
 
-                if (laNewState == null && (laNewState = laState.move(d_otherChar)) == null)
-                    continue;
+    /**
+     * Compute the intersection of a perfect hash dictionary and the automaton. In addition to
+     * the sequences, this method returns the perfect hash code and the edit distance of each
+     * match. The perfect hash codes are computed while intersecting, so that no additional
+     * dictionary lookups are needed.
+     *
+     * @param dictionary The dictionary.
+     * @return The matches, in lexicographic order.
+     */
+    public List<LevenshteinMatch> intersectionMatches(PerfectHashDictionary dictionary) {
+        final List<LevenshteinMatch> matches = new ArrayList<>();
+
+        intersect(dictionary, dictionary, false, null, new TraversalBuffer(), new MatchHandler() {
+            @Override
+            public void match(TraversalBuffer buffer, int number) {
+                matches.add(new LevenshteinMatch(new String(buffer.path(), 0, buffer.depth()), number,
+                        buffer.distance(d_word)));
+            }
+        });
 
-                int dictNewState = dictionary.next(dictState, c);
+        return matches;
+    }
 
-                String newString = string + c;
+    /**
+     * Intersect the automaton with a dictionary using a depth-first traversal. Matches are
+     * found in lexicographic order.
+     *
+     * @param dictionary  The dictionary.
+     * @param hashNumbers The dictionary as a perfect hash dictionary if hash codes should be
+     *                    computed, <tt>null</tt> otherwise.
+     * @param prefix      If <tt>true</tt>, accept all dictionary sequences that have a prefix that
+     *                    is accepted by the automaton.
+     * @param folding     The folding that is applied to dictionary characters, <tt>null</tt> for
+     *                    no folding.
+     * @param buffer      The traversal buffer.
+     * @param handler     The handler that is called for each match.
+     */
+    private void intersect(Dictionary dictionary, PerfectHashDictionary hashNumbers, boolean prefix,
+                           CharacterFolding folding, TraversalBuffer buffer, MatchHandler handler) {
+        buffer.clear();
+        buffer.push(dictionary.startState(), startState(), 0, 0, '\0');
+        traverse(dictionary, hashNumbers, prefix, folding, buffer, handler);
+    }
 
-                if (laNewState.isFinal() && dictionary.isFinalState(dictNewState))
-                    language.add(newString);
+    /**
+     * Intersect the automaton with a dictionary, starting from the state pairs that are on the
+     * stack of the traversal buffer. This can be used to intersect the automaton with a part of
+     * the dictionary.
+     *
+     * @param dictionary  The dictionary.
+     * @param hashNumbers The dictionary as a perfect hash dictionary if hash codes should be
+     *                    computed, <tt>null</tt> otherwise.
+     * @param prefix      If <tt>true</tt>, accept all dictionary sequences that have a prefix that
+     *                    is accepted by the automaton.
+     * @param folding     The folding that is applied to dictionary characters, <tt>null</tt> for
+     *                    no folding.
+     * @param buffer      The traversal buffer.
+     * @param handler     The handler that is called for each match.
+     */
+    void traverse(Dictionary dictionary, PerfectHashDictionary hashNumbers, boolean prefix,
+                  CharacterFolding folding, TraversalBuffer buffer, MatchHandler handler) {
+        while (!buffer.isEmpty()) {
+            buffer.pop();
+            int dictState = buffer.dictState();
+            int laState = buffer.automatonState();
+            int depth = buffer.depth();
+            int number = buffer.number();
+
+            // In prefix mode, any completion of an accepted prefix is accepted.
+            if (prefix && laState != ACCEPT_ALL_STATE && d_finalStates.get(laState))
+                laState = ACCEPT_ALL_STATE;
+
+            if ((laState == ACCEPT_ALL_STATE || d_finalStates.get(laState)) && dictionary.isFinalState(dictState))
+                handler.match(buffer, hashNumbers == null ? 0 : number + 1);
+
+            int start = dictionary.transitionsStart(dictState);
+            int end = dictionary.transitionsEnd(dictState);
+
+            // Offsets are accumulated over the transitions, looking them up per transition is
+            // quadratic in the number of transitions for some dictionaries.
+            int numberOffset = hashNumbers == null || start == end ? 0 :
+                    hashNumbers.transitionNumberOffset(dictState, end - 1);
+
+            // Push in reverse order, so that transitions are popped in lexicographic order.
+            for (int trans = end - 1; trans >= start; --trans) {
+                if (hashNumbers != null && trans != end - 1)
+                    numberOffset -= hashNumbers.transitionCardinality(dictState, trans);
+
+                char c = dictionary.transitionCharacter(trans);
+
+                int laNewState;
+                if (laState == ACCEPT_ALL_STATE)
+                    laNewState = ACCEPT_ALL_STATE;
+                else
+                    laNewState = next(laState, folding == null ? c : folding.fold(c));
+                if (laNewState == -1)
+                    continue;
 
-                q.add(new StatePair(dictNewState, laNewState, newString));
-            }
+                int newNumber = hashNumbers == null ? 0 : number + numberOffset;
 
+                buffer.push(dictionary.transitionTarget(trans), laNewState, depth + 1, newNumber, c);
+            }
         }
-
-        return language;
     }
 
     /**
@@ -132,9 +373,11 @@ public class LevenshteinAutomaton {
      *
      * @param transitions The parametric transition table.
      * @param word        The word.
+     * @param alphabet    The alphabet of the word, including the 'other' character.
      * @return
      */
-    private LevenshteinAutomatonState createAutomaton(ParametricTransitions transitions, String word) {
+    private LevenshteinAutomatonState createAutomaton(ParametricTransitions transitions, String word,
+                                                      Set<Character> alphabet) {
         int n = transitions.nEditOperations();
 
         LevenshteinAutomatonState[] states = new LevenshteinAutomatonState[(word.length() + 1)
@@ -150,7 +393,7 @@ public class LevenshteinAutomaton {
             int offset = i / nParametricStates;
             int parametricState = i % nParametricStates;
 
-            for (Character c : d_alphabet) {
+            for (Character c : alphabet) {
                 int vec = characteristicVector(word, offset, c, n);
 
                 // Will be handled by the 'other' transition.
@@ -219,31 +462,41 @@ public class LevenshteinAutomaton {
         return states;
     }
 
-    /**
-     * This class stores a pair of states from a {@link LevenshteinAutomaton} and a {@link Dictionary}.
-     */
-    private class StatePair {
-        private final int d_dictionaryState;
-        private final LevenshteinAutomatonState d_laState;
-        private final String d_string;
+    private LevenshteinAutomatonState[] stateList(Map<LevenshteinAutomatonState, Integer> numberedStates) {
+        LevenshteinAutomatonState[] r = new LevenshteinAutomatonState[numberedStates.size()];
 
-        private StatePair(int dictionaryState, LevenshteinAutomatonState laState, String string) {
-            d_dictionaryState = dictionaryState;
-            d_laState = laState;
-            d_string = string;
-        }
+        for (Map.Entry<LevenshteinAutomatonState, Integer> numberedState : numberedStates.entrySet())
+            r[numberedState.getValue()] = numberedState.getKey();
 
-        private int getDictionaryState() {
-            return d_dictionaryState;
-        }
+        return r;
+    }
 
-        private LevenshteinAutomatonState getLevenshteinAutomatonState() {
-            return d_laState;
+    /**
+     * Handler that adds matches to a collection.
+     */
+    static class LanguageHandler implements MatchHandler {
+        private final Collection<String> d_language;
+
+        LanguageHandler(Collection<String> language) {
+            d_language = language;
         }
 
-        private String getString() {
-            return d_string;
+        @Override
+        public void match(TraversalBuffer buffer, int number) {
+            d_language.add(new String(buffer.path(), 0, buffer.depth()));
         }
     }
 
+    /**
+     * Handler for matches that are found during intersection.
+     */
+    interface MatchHandler {
+        /**
+         * Called for every match. The matched sequence is the path of the traversal buffer.
+         *
+         * @param buffer The traversal buffer.
+         * @param number The perfect hash code of the match or <tt>0</tt> if hash codes are not computed.
+         */
+        void match(TraversalBuffer buffer, int number);
+    }
 }
@@ -0,0 +1,126 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of {@link LevenshteinAutomaton} instances, keyed by the word and the maximum
+ * edit distance. When the cache is full, the least recently used automaton is evicted. This
+ * class is thread-safe.
+ */
+public class LevenshteinAutomatonCache {
+    private final Map<Key, LevenshteinAutomaton> d_cache;
+
+    /**
+     * Construct a cache that holds at most the given number of automata.
+     *
+     * @param maxSize The maximum number of automata.
+     */
+    public LevenshteinAutomatonCache(final int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("The cache size should at least be 1.");
+
+        d_cache = new LinkedHashMap<Key, LevenshteinAutomaton>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, LevenshteinAutomaton> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Remove all automata from the cache.
+     */
+    public void clear() {
+        synchronized (d_cache) {
+            d_cache.clear();
+        }
+    }
+
+    /**
+     * Get the Levenshtein automaton for a word and maximum edit distance. If the automaton
+     * is not in the cache, it is constructed and added to the cache.
+     *
+     * @param word        The word.
+     * @param maxDistance The maximum distance.
+     * @return The automaton.
+     */
+    public LevenshteinAutomaton get(String word, int maxDistance) {
+        Key key = new Key(word, maxDistance);
+
+        synchronized (d_cache) {
+            LevenshteinAutomaton automaton = d_cache.get(key);
+            if (automaton != null)
+                return automaton;
+        }
+
+        // Construct the automaton without holding the lock, so that other threads are
+        // not blocked by construction.
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, maxDistance);
+
+        synchronized (d_cache) {
+            LevenshteinAutomaton cached = d_cache.get(key);
+            if (cached != null)
+                return cached;
+
+            d_cache.put(key, automaton);
+        }
+
+        return automaton;
+    }
+
+    /**
+     * Get the number of automata in the cache.
+     *
+     * @return The number of automata.
+     */
+    public int size() {
+        synchronized (d_cache) {
+            return d_cache.size();
+        }
+    }
+
+    private static class Key {
+        private final String d_word;
+        private final int d_maxDistance;
+
+        private Key(String word, int maxDistance) {
+            d_word = word;
+            d_maxDistance = maxDistance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            Key other = (Key) o;
+
+            return d_maxDistance == other.d_maxDistance && d_word.equals(other.d_word);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * d_word.hashCode() + d_maxDistance;
+        }
+    }
+}
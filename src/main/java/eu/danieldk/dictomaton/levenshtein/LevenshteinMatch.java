@@ -0,0 +1,63 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+/**
+ * A sequence from a {@link eu.danieldk.dictomaton.PerfectHashDictionary} that was matched by a
+ * {@link LevenshteinAutomaton}, together with its perfect hash code and edit distance.
+ */
+public class LevenshteinMatch {
+    private final String d_sequence;
+    private final int d_number;
+    private final int d_distance;
+
+    LevenshteinMatch(String sequence, int number, int distance) {
+        d_sequence = sequence;
+        d_number = number;
+        d_distance = distance;
+    }
+
+    /**
+     * Get the Levenshtein distance between the sequence and the word of the automaton.
+     *
+     * @return The edit distance.
+     */
+    public int getDistance() {
+        return d_distance;
+    }
+
+    /**
+     * Get the perfect hash code of the sequence.
+     *
+     * @return The perfect hash code.
+     */
+    public int getNumber() {
+        return d_number;
+    }
+
+    /**
+     * Get the matched sequence.
+     *
+     * @return The sequence.
+     */
+    public String getSequence() {
+        return d_sequence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d, %d)", d_sequence, d_number, d_distance);
+    }
+}
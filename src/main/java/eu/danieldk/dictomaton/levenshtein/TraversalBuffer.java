@@ -0,0 +1,168 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffers for the depth-first intersection of an automaton with a dictionary. The
+ * buffer holds a stack of (dictionary state, automaton state, depth, number) tuples and the
+ * characters of the path that is currently explored. A buffer can be reused for many
+ * intersections, but should not be shared between threads.
+ */
+class TraversalBuffer {
+    private static final int INITIAL_SIZE = 64;
+
+    private int[] d_dictStates;
+    private int[] d_automatonStates;
+    private int[] d_depths;
+    private int[] d_numbers;
+    private char[] d_chars;
+    private int d_size;
+
+    private char[] d_path;
+
+    // Rows for the computation of edit distances.
+    private int[] d_prevRow;
+    private int[] d_curRow;
+
+    TraversalBuffer() {
+        d_dictStates = new int[INITIAL_SIZE];
+        d_automatonStates = new int[INITIAL_SIZE];
+        d_depths = new int[INITIAL_SIZE];
+        d_numbers = new int[INITIAL_SIZE];
+        d_chars = new char[INITIAL_SIZE];
+        d_size = 0;
+
+        d_path = new char[INITIAL_SIZE];
+
+        d_prevRow = new int[INITIAL_SIZE];
+        d_curRow = new int[INITIAL_SIZE];
+    }
+
+    /**
+     * Clear the stack.
+     */
+    void clear() {
+        d_size = 0;
+    }
+
+    boolean isEmpty() {
+        return d_size == 0;
+    }
+
+    /**
+     * Push a tuple on the stack.
+     *
+     * @param dictState      The dictionary state.
+     * @param automatonState The automaton state.
+     * @param depth          The depth of the states, the length of their path.
+     * @param number         The sum of the number offsets on the path.
+     * @param c              The last character of the path.
+     */
+    void push(int dictState, int automatonState, int depth, int number, char c) {
+        if (d_size == d_dictStates.length) {
+            int newSize = d_size * 2;
+            d_dictStates = Arrays.copyOf(d_dictStates, newSize);
+            d_automatonStates = Arrays.copyOf(d_automatonStates, newSize);
+            d_depths = Arrays.copyOf(d_depths, newSize);
+            d_numbers = Arrays.copyOf(d_numbers, newSize);
+            d_chars = Arrays.copyOf(d_chars, newSize);
+        }
+
+        d_dictStates[d_size] = dictState;
+        d_automatonStates[d_size] = automatonState;
+        d_depths[d_size] = depth;
+        d_numbers[d_size] = number;
+        d_chars[d_size] = c;
+        ++d_size;
+    }
+
+    /**
+     * Pop the top of the stack. The fields of the popped tuple can be retrieved using the
+     * accessors. The path is updated with the character of the popped tuple.
+     */
+    void pop() {
+        --d_size;
+
+        int depth = d_depths[d_size];
+        if (depth > 0) {
+            if (depth > d_path.length)
+                d_path = Arrays.copyOf(d_path, Math.max(depth, d_path.length * 2));
+
+            d_path[depth - 1] = d_chars[d_size];
+        }
+    }
+
+    int automatonState() {
+        return d_automatonStates[d_size];
+    }
+
+    int depth() {
+        return d_depths[d_size];
+    }
+
+    int dictState() {
+        return d_dictStates[d_size];
+    }
+
+    int number() {
+        return d_numbers[d_size];
+    }
+
+    /**
+     * The path of the most recently popped tuple, its length is given by {@link #depth()}.
+     *
+     * @return The path.
+     */
+    char[] path() {
+        return d_path;
+    }
+
+    /**
+     * Compute the Levenshtein distance between a word and the path of the most recently
+     * popped tuple.
+     *
+     * @param word The word.
+     * @return The Levenshtein distance.
+     */
+    int distance(String word) {
+        int depth = depth();
+
+        if (word.length() + 1 > d_prevRow.length) {
+            d_prevRow = new int[word.length() + 1];
+            d_curRow = new int[word.length() + 1];
+        }
+
+        for (int i = 0; i <= word.length(); ++i)
+            d_prevRow[i] = i;
+
+        for (int j = 1; j <= depth; ++j) {
+            char c = d_path[j - 1];
+            d_curRow[0] = j;
+
+            for (int i = 1; i <= word.length(); ++i) {
+                int cost = word.charAt(i - 1) == c ? 0 : 1;
+                d_curRow[i] = Math.min(Math.min(d_curRow[i - 1] + 1, d_prevRow[i] + 1), d_prevRow[i - 1] + cost);
+            }
+
+            int[] tmp = d_prevRow;
+            d_prevRow = d_curRow;
+            d_curRow = tmp;
+        }
+
+        return d_prevRow[word.length()];
+    }
+}
@@ -0,0 +1,212 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import eu.danieldk.dictomaton.Dictionary;
+
+/**
+ * <p>
+ * Search for sequences in a {@link Dictionary} that are within a maximum weighted edit distance
+ * of a query. The costs of edit operations (substitution, insertion, deletion, and transposition
+ * of adjacent characters) are given by an {@link EditCostModel}. For instance,
+ * {@link KeyboardCostModel} makes substitutions of adjacent keys cheaper than other substitutions,
+ * which gives a better ranking of corrections for typing errors.
+ * </p>
+ * <p>
+ * The dictionary is traversed best-first, computing a row of the edit distance table for every
+ * prefix. The minimum of a row, together with the costs of the transpositions that can still
+ * complete from the previous row, is a lower bound of the cost of all sequences that start with the
+ * prefix, so prefixes are pruned as soon as this bound exceeds the maximum cost. Since prefixes
+ * are expanded in order of their lower bounds, matches are found in order of increasing cost,
+ * and a search for the <i>n</i> best matches can stop after finding <i>n</i> matches.
+ * </p>
+ */
+public class WeightedLevenshteinSearch {
+    private final EditCostModel d_costs;
+
+    /**
+     * Construct a search with the given cost model.
+     *
+     * @param costs The cost model.
+     */
+    public WeightedLevenshteinSearch(EditCostModel costs) {
+        d_costs = costs;
+    }
+
+    /**
+     * Find the sequences in a dictionary that are within the maximum cost of a query.
+     *
+     * @param dictionary The dictionary.
+     * @param query      The query.
+     * @param maxCost    The maximum cost.
+     * @return The matches, ordered by increasing cost.
+     */
+    public List<WeightedMatch> search(Dictionary dictionary, String query, double maxCost) {
+        return search(dictionary, query, maxCost, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find at most <i>maxResults</i> sequences in a dictionary that are within the maximum cost
+     * of a query. If there are more matches, the matches with the lowest costs are returned.
+     *
+     * @param dictionary The dictionary.
+     * @param query      The query.
+     * @param maxCost    The maximum cost.
+     * @param maxResults The maximum number of results.
+     * @return The matches, ordered by increasing cost.
+     */
+    public List<WeightedMatch> search(Dictionary dictionary, String query, double maxCost, int maxResults) {
+        List<WeightedMatch> matches = new ArrayList<>();
+
+        int n = query.length();
+
+        // The first row: the cost of deleting prefixes of the query.
+        double[] row = new double[n + 1];
+        for (int i = 1; i <= n; ++i)
+            row[i] = row[i - 1] + d_costs.deletion(query.charAt(i - 1));
+
+        PriorityQueue<Node> queue = new PriorityQueue<>();
+        queue.add(new Node(null, dictionary.startState(), '\0', row, row[0], false));
+
+        while (!queue.isEmpty() && matches.size() < maxResults) {
+            Node node = queue.poll();
+
+            // Matches are queued as separate entries, so that they are retrieved in order of cost.
+            if (node.d_match) {
+                matches.add(new WeightedMatch(node.sequence(), node.d_priority));
+                continue;
+            }
+
+            if (dictionary.isFinalState(node.d_state) && node.d_row[n] <= maxCost)
+                queue.add(new Node(node, node.d_state, node.d_char, node.d_row, node.d_row[n], true));
+
+            for (int trans = dictionary.transitionsStart(node.d_state);
+                 trans < dictionary.transitionsEnd(node.d_state); ++trans) {
+                char c = dictionary.transitionCharacter(trans);
+                double[] newRow = nextRow(query, node, c);
+                double lowerBound = lowerBound(query, node.d_row, c, newRow);
+
+                if (lowerBound <= maxCost)
+                    queue.add(new Node(node, dictionary.transitionTarget(trans), c, newRow, lowerBound, false));
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Compute a lower bound of the cost of all sequences that start with a prefix. Every cell of the
+     * rows of longer prefixes is computed from the cells of the row of the prefix, or from the row of
+     * its parent through a transposition. The transposition can only be completed at the cells where
+     * the query character equals the last character of the prefix. Since costs are not negative,
+     * the minimum over these cells is a lower bound. The minimum of the row alone is not a lower
+     * bound when transpositions are cheaper than other edit operations.
+     *
+     * @param query     The query.
+     * @param parentRow The row of the prefix without its last character.
+     * @param c         The last character of the prefix.
+     * @param row       The row of the prefix.
+     */
+    private double lowerBound(String query, double[] parentRow, char c, double[] row) {
+        double bound = Double.POSITIVE_INFINITY;
+        for (double cost : row)
+            bound = Math.min(bound, cost);
+
+        for (int i = 2; i < row.length; ++i) {
+            char qc = query.charAt(i - 1);
+            if (qc == c)
+                bound = Math.min(bound, parentRow[i - 2] + d_costs.transposition(query.charAt(i - 2), qc));
+        }
+
+        return bound;
+    }
+
+    /**
+     * Compute the row of the edit distance table for the prefix of a node extended with a character.
+     */
+    private double[] nextRow(String query, Node node, char c) {
+        double[] prev = node.d_row;
+        double[] row = new double[prev.length];
+
+        row[0] = prev[0] + d_costs.insertion(c);
+
+        for (int i = 1; i < row.length; ++i) {
+            char qc = query.charAt(i - 1);
+
+            double cost = Math.min(prev[i] + d_costs.insertion(c), row[i - 1] + d_costs.deletion(qc));
+            cost = Math.min(cost, prev[i - 1] + (qc == c ? 0 : d_costs.substitution(qc, c)));
+
+            // Transposition of the previous query character and this query character.
+            if (i > 1 && node.d_parent != null && qc == node.d_char && query.charAt(i - 2) == c)
+                cost = Math.min(cost, node.d_parent.d_row[i - 2] + d_costs.transposition(query.charAt(i - 2), qc));
+
+            row[i] = cost;
+        }
+
+        return row;
+    }
+
+    /**
+     * A prefix in the search space.
+     */
+    private static class Node implements Comparable<Node> {
+        private final Node d_parent;
+        private final int d_state;
+        private final char d_char;
+        private final double[] d_row;
+        private final double d_priority;
+        private final boolean d_match;
+
+        private Node(Node parent, int state, char c, double[] row, double priority, boolean match) {
+            d_parent = parent;
+            d_state = state;
+            d_char = c;
+            d_row = row;
+            d_priority = priority;
+            d_match = match;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            int cmp = Double.compare(d_priority, other.d_priority);
+            if (cmp != 0)
+                return cmp;
+
+            // Prefer matches over prefixes with the same bound, so that matches are returned early.
+            if (d_match != other.d_match)
+                return d_match ? -1 : 1;
+
+            return 0;
+        }
+
+        /**
+         * Reconstruct the sequence of the node.
+         */
+        private String sequence() {
+            // Match entries share the state and character of the node that they were created for.
+            Node node = d_match ? d_parent : this;
+
+            StringBuilder sb = new StringBuilder();
+            for (; node.d_parent != null; node = node.d_parent)
+                sb.append(node.d_char);
+
+            return sb.reverse().toString();
+        }
+    }
+}
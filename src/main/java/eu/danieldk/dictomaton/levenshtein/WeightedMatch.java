@@ -0,0 +1,51 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.levenshtein;
+
+/**
+ * A sequence that was found by {@link WeightedLevenshteinSearch}, together with its edit cost.
+ */
+public class WeightedMatch {
+    private final String d_sequence;
+    private final double d_cost;
+
+    WeightedMatch(String sequence, double cost) {
+        d_sequence = sequence;
+        d_cost = cost;
+    }
+
+    /**
+     * Get the cost of transforming the query into the sequence.
+     *
+     * @return The edit cost.
+     */
+    public double getCost() {
+        return d_cost;
+    }
+
+    /**
+     * Get the matched sequence.
+     *
+     * @return The sequence.
+     */
+    public String getSequence() {
+        return d_sequence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%f)", d_sequence, d_cost);
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A non-deterministic automaton with epsilon transitions and transitions on character ranges. This
+ * automaton is only used during the construction of a {@link PatternAutomaton}.
+ */
+class Nfa {
+    private final List<List<Integer>> d_epsilons;
+    private final List<List<int[]>> d_ranges;
+
+    Nfa() {
+        d_epsilons = new ArrayList<>();
+        d_ranges = new ArrayList<>();
+    }
+
+    /**
+     * Add a state.
+     *
+     * @return The number of the new state.
+     */
+    int addState() {
+        d_epsilons.add(new ArrayList<Integer>());
+        d_ranges.add(new ArrayList<int[]>());
+        return d_epsilons.size() - 1;
+    }
+
+    /**
+     * Add an epsilon transition.
+     *
+     * @param from The from-state.
+     * @param to   The to-state.
+     */
+    void addEpsilon(int from, int to) {
+        d_epsilons.get(from).add(to);
+    }
+
+    /**
+     * Add a transition on a character range.
+     *
+     * @param from The from-state.
+     * @param lo   The lower bound of the range (inclusive).
+     * @param hi   The upper bound of the range (inclusive).
+     * @param to   The to-state.
+     */
+    void addRange(int from, char lo, char hi, int to) {
+        d_ranges.get(from).add(new int[]{lo, hi, to});
+    }
+
+    /**
+     * Get the epsilon transitions of a state.
+     *
+     * @param state The state.
+     * @return The to-states of the epsilon transitions.
+     */
+    List<Integer> epsilons(int state) {
+        return d_epsilons.get(state);
+    }
+
+    /**
+     * Get the range transitions of a state.
+     *
+     * @param state The state.
+     * @return The range transitions, as <i>(lo, hi, to)</i> triples.
+     */
+    List<int[]> ranges(int state) {
+        return d_ranges.get(state);
+    }
+
+    /**
+     * Get the number of states.
+     *
+     * @return The number of states.
+     */
+    int size() {
+        return d_epsilons.size();
+    }
+}
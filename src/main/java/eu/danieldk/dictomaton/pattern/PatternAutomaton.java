@@ -0,0 +1,463 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.pattern;
+
+import eu.danieldk.dictomaton.Dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A deterministic automaton for a glob pattern or regular expression. The automaton can be intersected
+ * with a {@link Dictionary} to find all sequences in the dictionary that match the pattern.
+ * <p/>
+ * Glob patterns support <tt>?</tt> (any character), <tt>*</tt> (any sequence of characters), character
+ * classes such as <tt>[abc]</tt>, <tt>[a-z]</tt>, and <tt>[!a-z]</tt>, and backslash escapes. Regular
+ * expressions support literals, <tt>.</tt>, character classes, the escapes <tt>\d</tt>, <tt>\w</tt>,
+ * and <tt>\s</tt>, the operators <tt>*</tt>, <tt>+</tt>, <tt>?</tt>, and <tt>|</tt>, and grouping.
+ */
+public class PatternAutomaton {
+    private final String d_pattern;
+
+    // The automaton is stored as a transition table. States are numbered in breadth-first order,
+    // the start state is 0. The transitions of state s are stored in the range
+    // [d_stateOffsets[s], d_stateOffsets[s + 1]) of the transition table. Transitions are on
+    // disjoint character ranges and are ordered by character. Transitions to states from which
+    // no final state can be reached are removed, so that intersection never enters dead states.
+    private final int[] d_stateOffsets;
+    private final char[] d_rangeLo;
+    private final char[] d_rangeHi;
+    private final int[] d_rangeTo;
+    private final BitSet d_finalStates;
+
+    // States that accept any suffix (e.g. the state after a trailing '*').
+    private final BitSet d_universalStates;
+
+    /**
+     * Construct an automaton for a glob pattern.
+     *
+     * @param pattern The glob pattern.
+     * @return The automaton.
+     * @throws IllegalArgumentException If the pattern is malformed.
+     */
+    public static PatternAutomaton glob(String pattern) {
+        return new PatternAutomaton(pattern, PatternParser.parseGlob(pattern));
+    }
+
+    /**
+     * Construct an automaton for a regular expression. The expression must match a complete sequence.
+     *
+     * @param pattern The regular expression.
+     * @return The automaton.
+     * @throws IllegalArgumentException If the regular expression is malformed.
+     */
+    public static PatternAutomaton regex(String pattern) {
+        return new PatternAutomaton(pattern, PatternParser.parseRegex(pattern));
+    }
+
+    private PatternAutomaton(String pattern, Nfa nfa) {
+        d_pattern = pattern;
+
+        // Subset construction.
+        List<int[]> subsets = new ArrayList<>();
+        List<List<int[]>> transitions = new ArrayList<>();
+        Map<IntSet, Integer> subsetNumbers = new HashMap<>();
+        Queue<Integer> queue = new LinkedList<>();
+
+        int[] start = closure(nfa, new int[]{0});
+        subsets.add(start);
+        subsetNumbers.put(new IntSet(start), 0);
+        queue.add(0);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<int[]> stateTransitions = new ArrayList<>();
+            transitions.add(stateTransitions);
+
+            int[] subset = subsets.get(state);
+
+            // Split the alphabet in intervals, such that each NFA range transition either
+            // covers an interval completely or not at all.
+            List<int[]> ranges = new ArrayList<>();
+            for (int nfaState : subset)
+                ranges.addAll(nfa.ranges(nfaState));
+
+            int[] bounds = new int[ranges.size() * 2];
+            for (int i = 0; i < ranges.size(); ++i) {
+                bounds[i * 2] = ranges.get(i)[0];
+                bounds[i * 2 + 1] = ranges.get(i)[1] + 1;
+            }
+            Arrays.sort(bounds);
+
+            for (int i = 0; i + 1 < bounds.length; ++i) {
+                int lo = bounds[i];
+                int hi = bounds[i + 1] - 1;
+                if (hi < lo)
+                    continue;
+
+                int[] targets = new int[ranges.size()];
+                int nTargets = 0;
+                for (int[] range : ranges)
+                    if (range[0] <= lo && range[1] >= hi)
+                        targets[nTargets++] = range[2];
+
+                if (nTargets == 0)
+                    continue;
+
+                int[] targetSubset = closure(nfa, Arrays.copyOf(targets, nTargets));
+                IntSet key = new IntSet(targetSubset);
+                Integer to = subsetNumbers.get(key);
+                if (to == null) {
+                    to = subsets.size();
+                    subsets.add(targetSubset);
+                    subsetNumbers.put(key, to);
+                    queue.add(to);
+                }
+
+                // Merge with the previous transition if possible.
+                int[] last = stateTransitions.isEmpty() ? null : stateTransitions.get(stateTransitions.size() - 1);
+                if (last != null && last[1] + 1 == lo && last[2] == to)
+                    last[1] = hi;
+                else
+                    stateTransitions.add(new int[]{lo, hi, to});
+            }
+        }
+
+        int nStates = subsets.size();
+
+        d_finalStates = new BitSet(nStates);
+        for (int state = 0; state < nStates; ++state)
+            if (Arrays.binarySearch(subsets.get(state), 1) >= 0)
+                d_finalStates.set(state);
+
+        BitSet live = liveStates(transitions, d_finalStates);
+
+        int nTransitions = 0;
+        for (List<int[]> stateTransitions : transitions)
+            for (int[] t : stateTransitions)
+                if (live.get(t[2]))
+                    ++nTransitions;
+
+        d_stateOffsets = new int[nStates + 1];
+        d_rangeLo = new char[nTransitions];
+        d_rangeHi = new char[nTransitions];
+        d_rangeTo = new int[nTransitions];
+        d_universalStates = new BitSet(nStates);
+
+        int trans = 0;
+        for (int state = 0; state < nStates; ++state) {
+            d_stateOffsets[state] = trans;
+
+            for (int[] t : transitions.get(state)) {
+                if (!live.get(t[2]))
+                    continue;
+
+                d_rangeLo[trans] = (char) t[0];
+                d_rangeHi[trans] = (char) t[1];
+                d_rangeTo[trans] = t[2];
+                ++trans;
+            }
+
+            if (d_finalStates.get(state) && trans - d_stateOffsets[state] == 1 &&
+                    d_rangeLo[trans - 1] == Character.MIN_VALUE && d_rangeHi[trans - 1] == Character.MAX_VALUE &&
+                    d_rangeTo[trans - 1] == state)
+                d_universalStates.set(state);
+        }
+
+        d_stateOffsets[nStates] = trans;
+    }
+
+    /**
+     * Get the pattern for which this automaton was constructed.
+     *
+     * @return The pattern.
+     */
+    public String pattern() {
+        return d_pattern;
+    }
+
+    /**
+     * Get the start state.
+     *
+     * @return The start state.
+     */
+    public int startState() {
+        return 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the state is a final state and <tt>false</tt> otherwise.
+     *
+     * @param state The state.
+     * @return Finalness of the state.
+     */
+    public boolean isFinalState(int state) {
+        return d_finalStates.get(state);
+    }
+
+    /**
+     * Get the next state, given a character.
+     *
+     * @param state The state.
+     * @param c     The character.
+     * @return The next state or <tt>-1</tt> if there is no transition for the character.
+     */
+    public int next(int state, char c) {
+        int start = d_stateOffsets[state];
+        int end = d_stateOffsets[state + 1] - 1;
+
+        // Binary search
+        while (end >= start) {
+            int mid = start + ((end - start) / 2);
+
+            if (d_rangeLo[mid] > c)
+                end = mid - 1;
+            else if (d_rangeHi[mid] < c)
+                start = mid + 1;
+            else
+                return d_rangeTo[mid];
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the automaton accepts the sequence.
+     *
+     * @param seq The sequence.
+     * @return <tt>true</tt> if the sequence matches the pattern, <tt>false</tt> otherwise.
+     */
+    public boolean matches(CharSequence seq) {
+        int state = startState();
+        for (int i = 0; i < seq.length() && state != -1; ++i)
+            state = next(state, seq.charAt(i));
+
+        return state != -1 && isFinalState(state);
+    }
+
+    /**
+     * Compute the intersection of the automaton and a dictionary: all the sequences in the dictionary
+     * that match the pattern.
+     *
+     * @param dictionary The dictionary.
+     * @return The matching sequences, in lexicographic order.
+     */
+    public List<String> intersectionLanguage(Dictionary dictionary) {
+        List<String> language = new ArrayList<>();
+
+        // Depth-first traversal of the product automaton. Transitions are pushed in reverse order,
+        // so that the sequences are found in lexicographic order. The stacks are reused, the only
+        // allocations are the matching sequences.
+        int[] dictStates = new int[16];
+        int[] patternStates = new int[16];
+        int[] depths = new int[16];
+        char[] chars = new char[16];
+        char[] path = new char[16];
+
+        int top = 0;
+        dictStates[top] = dictionary.startState();
+        patternStates[top] = startState();
+        depths[top] = 0;
+        ++top;
+
+        while (top != 0) {
+            --top;
+            int dictState = dictStates[top];
+            int patternState = patternStates[top];
+            int depth = depths[top];
+
+            if (depth > 0) {
+                if (depth > path.length)
+                    path = Arrays.copyOf(path, path.length * 2);
+                path[depth - 1] = chars[top];
+            }
+
+            // Pattern states that accept any suffix match all the sequences in the dictionary state's
+            // right language, so the pattern does not need to be consulted anymore.
+            boolean universal = patternState != -1 && d_universalStates.get(patternState);
+            if (universal)
+                patternState = -1;
+
+            if ((patternState == -1 || d_finalStates.get(patternState)) && dictionary.isFinalState(dictState))
+                language.add(new String(path, 0, depth));
+
+            int transStart = dictionary.transitionsStart(dictState);
+            int transEnd = dictionary.transitionsEnd(dictState);
+
+            // Make sure that all transitions fit on the stack.
+            if (top + (transEnd - transStart) > dictStates.length) {
+                int newSize = Math.max(dictStates.length * 2, top + (transEnd - transStart));
+                dictStates = Arrays.copyOf(dictStates, newSize);
+                patternStates = Arrays.copyOf(patternStates, newSize);
+                depths = Arrays.copyOf(depths, newSize);
+                chars = Arrays.copyOf(chars, newSize);
+            }
+
+            if (patternState == -1) {
+                for (int trans = transEnd - 1; trans >= transStart; --trans) {
+                    dictStates[top] = dictionary.transitionTarget(trans);
+                    patternStates[top] = -1;
+                    depths[top] = depth + 1;
+                    chars[top] = dictionary.transitionCharacter(trans);
+                    ++top;
+                }
+            } else {
+                // Walk the (ordered) transitions of both states in reverse, like a merge.
+                int rangeIdx = d_stateOffsets[patternState + 1] - 1;
+                int rangeStart = d_stateOffsets[patternState];
+                int trans = transEnd - 1;
+                while (trans >= transStart && rangeIdx >= rangeStart) {
+                    char c = dictionary.transitionCharacter(trans);
+                    if (c > d_rangeHi[rangeIdx])
+                        --trans;
+                    else if (c < d_rangeLo[rangeIdx])
+                        --rangeIdx;
+                    else {
+                        dictStates[top] = dictionary.transitionTarget(trans);
+                        patternStates[top] = d_rangeTo[rangeIdx];
+                        depths[top] = depth + 1;
+                        chars[top] = c;
+                        ++top;
+                        --trans;
+                    }
+                }
+            }
+        }
+
+        return language;
+    }
+
+    /**
+     * Return the automaton in Graphviz dot format.
+     *
+     * @return Dot representation.
+     */
+    public String toDot() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("digraph G {\n");
+
+        for (int state = 0; state + 1 < d_stateOffsets.length; ++state) {
+            if (d_finalStates.get(state))
+                stringBuilder.append(String.format("%d [peripheries=2];\n", state));
+
+            for (int trans = d_stateOffsets[state]; trans < d_stateOffsets[state + 1]; ++trans) {
+                String label = d_rangeLo[trans] == d_rangeHi[trans] ? String.valueOf(d_rangeLo[trans]) :
+                        String.format("%s-%s", escape(d_rangeLo[trans]), escape(d_rangeHi[trans]));
+                stringBuilder.append(String.format("%d -> %d [label=\"%s\"];\n", state, d_rangeTo[trans], label));
+            }
+        }
+
+        stringBuilder.append("}");
+
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return d_pattern;
+    }
+
+    private static String escape(char c) {
+        return Character.isLetterOrDigit(c) ? String.valueOf(c) : String.format("\\\\u%04x", (int) c);
+    }
+
+    /**
+     * Compute the epsilon closure of a set of NFA states.
+     *
+     * @return The closure as a sorted array.
+     */
+    private static int[] closure(Nfa nfa, int[] states) {
+        BitSet seen = new BitSet(nfa.size());
+        int[] stack = new int[nfa.size()];
+        int top = 0;
+
+        for (int state : states)
+            if (!seen.get(state)) {
+                seen.set(state);
+                stack[top++] = state;
+            }
+
+        while (top != 0) {
+            int state = stack[--top];
+            for (int to : nfa.epsilons(state))
+                if (!seen.get(to)) {
+                    seen.set(to);
+                    stack[top++] = to;
+                }
+        }
+
+        int[] closure = new int[seen.cardinality()];
+        int i = 0;
+        for (int state = seen.nextSetBit(0); state >= 0; state = seen.nextSetBit(state + 1))
+            closure[i++] = state;
+
+        return closure;
+    }
+
+    /**
+     * Find the states from which a final state can be reached.
+     */
+    private static BitSet liveStates(List<List<int[]>> transitions, BitSet finalStates) {
+        BitSet live = (BitSet) finalStates.clone();
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int state = 0; state < transitions.size(); ++state) {
+                if (live.get(state))
+                    continue;
+
+                for (int[] t : transitions.get(state))
+                    if (live.get(t[2])) {
+                        live.set(state);
+                        changed = true;
+                        break;
+                    }
+            }
+        }
+
+        return live;
+    }
+
+    /**
+     * Set of NFA states, used as a key during subset construction.
+     */
+    private static class IntSet {
+        private final int[] d_elems;
+
+        private IntSet(int[] elems) {
+            d_elems = elems;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            return Arrays.equals(d_elems, ((IntSet) o).d_elems);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(d_elems);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.pattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Parser for glob and regular expression patterns, that constructs a Thompson automaton
+ * ({@link Nfa}) for a pattern.
+ */
+class PatternParser {
+    private final String d_pattern;
+    private final boolean d_glob;
+    private final Nfa d_nfa;
+    private int d_pos;
+
+    private PatternParser(String pattern, boolean glob) {
+        d_pattern = pattern;
+        d_glob = glob;
+        d_nfa = new Nfa();
+        d_pos = 0;
+    }
+
+    /**
+     * Parse a glob pattern. Supported are: <tt>?</tt> (any character), <tt>*</tt> (any sequence),
+     * character classes (<tt>[abc]</tt>, <tt>[a-z]</tt>, negated: <tt>[!abc]</tt> or <tt>[^abc]</tt>),
+     * and escapes using a backslash.
+     *
+     * @param pattern The glob pattern.
+     * @return An automaton, its start state is 0 and its final state is 1.
+     */
+    static Nfa parseGlob(String pattern) {
+        return new PatternParser(pattern, true).parse();
+    }
+
+    /**
+     * Parse a regular expression. Supported are: literals, <tt>.</tt>, character classes,
+     * the escapes <tt>\d</tt>, <tt>\w</tt>, and <tt>\s</tt>, the operators <tt>*</tt>,
+     * <tt>+</tt>, <tt>?</tt>, and <tt>|</tt>, and grouping using parentheses.
+     *
+     * @param pattern The regular expression.
+     * @return An automaton, its start state is 0 and its final state is 1.
+     */
+    static Nfa parseRegex(String pattern) {
+        return new PatternParser(pattern, false).parse();
+    }
+
+    private Nfa parse() {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+
+        int[] fragment = d_glob ? parseGlobSequence() : parseAlternation();
+        if (d_pos != d_pattern.length())
+            throw error("Unexpected character");
+
+        d_nfa.addEpsilon(start, fragment[0]);
+        d_nfa.addEpsilon(fragment[1], end);
+
+        return d_nfa;
+    }
+
+    private int[] parseGlobSequence() {
+        int[] fragment = empty();
+
+        while (d_pos < d_pattern.length()) {
+            char c = d_pattern.charAt(d_pos++);
+
+            int[] atom;
+            switch (c) {
+                case '*':
+                    atom = star(any());
+                    break;
+                case '?':
+                    atom = any();
+                    break;
+                case '[':
+                    atom = ranges(parseClass());
+                    break;
+                case '\\':
+                    atom = literal(escaped());
+                    break;
+                default:
+                    atom = literal(c);
+            }
+
+            fragment = concat(fragment, atom);
+        }
+
+        return fragment;
+    }
+
+    private int[] parseAlternation() {
+        int[] fragment = parseConcatenation();
+
+        while (d_pos < d_pattern.length() && d_pattern.charAt(d_pos) == '|') {
+            ++d_pos;
+            int[] alternative = parseConcatenation();
+
+            int start = d_nfa.addState();
+            int end = d_nfa.addState();
+            d_nfa.addEpsilon(start, fragment[0]);
+            d_nfa.addEpsilon(start, alternative[0]);
+            d_nfa.addEpsilon(fragment[1], end);
+            d_nfa.addEpsilon(alternative[1], end);
+
+            fragment = new int[]{start, end};
+        }
+
+        return fragment;
+    }
+
+    private int[] parseConcatenation() {
+        int[] fragment = empty();
+
+        while (d_pos < d_pattern.length() && d_pattern.charAt(d_pos) != '|' && d_pattern.charAt(d_pos) != ')')
+            fragment = concat(fragment, parseRepetition());
+
+        return fragment;
+    }
+
+    private int[] parseRepetition() {
+        int[] fragment = parseAtom();
+
+        while (d_pos < d_pattern.length()) {
+            char c = d_pattern.charAt(d_pos);
+            if (c == '*')
+                fragment = star(fragment);
+            else if (c == '+')
+                fragment = plus(fragment);
+            else if (c == '?')
+                fragment = optional(fragment);
+            else
+                break;
+
+            ++d_pos;
+        }
+
+        return fragment;
+    }
+
+    private int[] parseAtom() {
+        char c = d_pattern.charAt(d_pos++);
+
+        switch (c) {
+            case '(': {
+                int[] fragment = parseAlternation();
+                if (d_pos == d_pattern.length() || d_pattern.charAt(d_pos) != ')')
+                    throw error("Missing closing parenthesis");
+                ++d_pos;
+                return fragment;
+            }
+            case '.':
+                return any();
+            case '[':
+                return ranges(parseClass());
+            case '\\':
+                if (d_pos == d_pattern.length())
+                    throw error("Incomplete escape");
+                List<char[]> shorthand = shorthandClass(d_pattern.charAt(d_pos));
+                if (shorthand != null) {
+                    ++d_pos;
+                    return ranges(shorthand);
+                }
+                return literal(escaped());
+            case '*':
+            case '+':
+            case '?':
+            case ')':
+                throw error("Unexpected character");
+            default:
+                return literal(c);
+        }
+    }
+
+    /**
+     * Parse a character class, the opening bracket should already be consumed.
+     *
+     * @return The (normalized) ranges of the class.
+     */
+    private List<char[]> parseClass() {
+        boolean negated = false;
+        if (d_pos < d_pattern.length() && (d_pattern.charAt(d_pos) == '^' ||
+                (d_glob && d_pattern.charAt(d_pos) == '!'))) {
+            negated = true;
+            ++d_pos;
+        }
+
+        List<char[]> ranges = new ArrayList<>();
+
+        boolean first = true;
+        while (true) {
+            if (d_pos == d_pattern.length())
+                throw error("Missing closing bracket");
+
+            char c = d_pattern.charAt(d_pos++);
+            if (c == ']' && !first)
+                break;
+
+            first = false;
+
+            if (c == '\\') {
+                List<char[]> shorthand = d_glob || d_pos == d_pattern.length() ? null :
+                        shorthandClass(d_pattern.charAt(d_pos));
+                if (shorthand != null) {
+                    ++d_pos;
+                    ranges.addAll(shorthand);
+                    continue;
+                }
+
+                c = escaped();
+            }
+
+            char hi = c;
+            if (d_pos + 1 < d_pattern.length() && d_pattern.charAt(d_pos) == '-' &&
+                    d_pattern.charAt(d_pos + 1) != ']') {
+                ++d_pos;
+                hi = d_pattern.charAt(d_pos++);
+                if (hi == '\\')
+                    hi = escaped();
+
+                if (hi < c)
+                    throw error("Invalid character range");
+            }
+
+            ranges.add(new char[]{c, hi});
+        }
+
+        ranges = normalize(ranges);
+
+        return negated ? complement(ranges) : ranges;
+    }
+
+    private char escaped() {
+        if (d_pos == d_pattern.length())
+            throw error("Incomplete escape");
+
+        return d_pattern.charAt(d_pos++);
+    }
+
+    private List<char[]> shorthandClass(char c) {
+        List<char[]> ranges = new ArrayList<>();
+
+        switch (c) {
+            case 'd':
+                ranges.add(new char[]{'0', '9'});
+                break;
+            case 'w':
+                ranges.add(new char[]{'0', '9'});
+                ranges.add(new char[]{'A', 'Z'});
+                ranges.add(new char[]{'_', '_'});
+                ranges.add(new char[]{'a', 'z'});
+                break;
+            case 's':
+                ranges.add(new char[]{'\t', '\r'});
+                ranges.add(new char[]{' ', ' '});
+                break;
+            default:
+                return null;
+        }
+
+        return ranges;
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException(String.format("%s at position %d in pattern: %s", msg, d_pos,
+                d_pattern));
+    }
+
+    private int[] any() {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+        d_nfa.addRange(start, Character.MIN_VALUE, Character.MAX_VALUE, end);
+        return new int[]{start, end};
+    }
+
+    private int[] concat(int[] first, int[] second) {
+        d_nfa.addEpsilon(first[1], second[0]);
+        return new int[]{first[0], second[1]};
+    }
+
+    private int[] empty() {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+        d_nfa.addEpsilon(start, end);
+        return new int[]{start, end};
+    }
+
+    private int[] literal(char c) {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+        d_nfa.addRange(start, c, c, end);
+        return new int[]{start, end};
+    }
+
+    private int[] optional(int[] fragment) {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+        d_nfa.addEpsilon(start, fragment[0]);
+        d_nfa.addEpsilon(start, end);
+        d_nfa.addEpsilon(fragment[1], end);
+        return new int[]{start, end};
+    }
+
+    private int[] plus(int[] fragment) {
+        int end = d_nfa.addState();
+        d_nfa.addEpsilon(fragment[1], fragment[0]);
+        d_nfa.addEpsilon(fragment[1], end);
+        return new int[]{fragment[0], end};
+    }
+
+    private int[] ranges(List<char[]> ranges) {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+        for (char[] range : ranges)
+            d_nfa.addRange(start, range[0], range[1], end);
+        return new int[]{start, end};
+    }
+
+    private int[] star(int[] fragment) {
+        int start = d_nfa.addState();
+        int end = d_nfa.addState();
+        d_nfa.addEpsilon(start, fragment[0]);
+        d_nfa.addEpsilon(start, end);
+        d_nfa.addEpsilon(fragment[1], fragment[0]);
+        d_nfa.addEpsilon(fragment[1], end);
+        return new int[]{start, end};
+    }
+
+    /**
+     * Sort and merge overlapping or adjacent ranges.
+     */
+    private static List<char[]> normalize(List<char[]> ranges) {
+        Collections.sort(ranges, new Comparator<char[]>() {
+            @Override
+            public int compare(char[] r1, char[] r2) {
+                return r1[0] - r2[0];
+            }
+        });
+
+        List<char[]> merged = new ArrayList<>();
+        for (char[] range : ranges) {
+            char[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1)
+                last[1] = (char) Math.max(last[1], range[1]);
+            else
+                merged.add(new char[]{range[0], range[1]});
+        }
+
+        return merged;
+    }
+
+    /**
+     * Complement normalized ranges.
+     */
+    private static List<char[]> complement(List<char[]> ranges) {
+        List<char[]> complement = new ArrayList<>();
+
+        int lo = Character.MIN_VALUE;
+        for (char[] range : ranges) {
+            if (range[0] > lo)
+                complement.add(new char[]{(char) lo, (char) (range[0] - 1)});
+            lo = range[1] + 1;
+        }
+
+        if (lo <= Character.MAX_VALUE)
+            complement.add(new char[]{(char) lo, Character.MAX_VALUE});
+
+        return complement;
+    }
+}
@@ -0,0 +1,260 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.segmentation;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.PrefixMatchHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Splits compound words into dictionary words, for languages such as German and Dutch. Parts of a
+ * compound can be joined by linking morphemes, such as <i>s</i> in <i>werkstuk</i> /
+ * <i>Arbeitszimmer</i> or <i>en</i> in <i>boekenkast</i>.
+ * <p/>
+ * The dictionary words that start at each position of a word are found in a single walk over the
+ * automaton. A decomposition exists if the word can be covered by two or more dictionary words,
+ * optionally separated by linking morphemes. Which positions can start the remainder of a
+ * decomposition is computed right-to-left, so that enumeration only follows paths that lead to a
+ * decomposition. Words that are not compounds are rejected without allocations after warm-up.
+ * <p/>
+ * Decompounders are thread-safe.
+ */
+public class Decompounder {
+    private static final int DEFAULT_MIN_PART_LENGTH = 3;
+
+    private final Dictionary d_dictionary;
+    private final Dictionary d_linkingMorphemes;
+    private final int d_minPartLength;
+    private final ThreadLocal<Chart> d_charts;
+
+    /**
+     * Construct a decompounder without linking morphemes and a minimum part length of three characters.
+     *
+     * @param dictionary The dictionary of words that can be parts of compounds.
+     */
+    public Decompounder(Dictionary dictionary) {
+        this(dictionary, Collections.<String>emptyList());
+    }
+
+    /**
+     * Construct a decompounder with a minimum part length of three characters.
+     *
+     * @param dictionary       The dictionary of words that can be parts of compounds.
+     * @param linkingMorphemes Linking morphemes that can occur between parts.
+     */
+    public Decompounder(Dictionary dictionary, Collection<String> linkingMorphemes) {
+        this(dictionary, linkingMorphemes, DEFAULT_MIN_PART_LENGTH);
+    }
+
+    /**
+     * Construct a decompounder.
+     *
+     * @param dictionary       The dictionary of words that can be parts of compounds.
+     * @param linkingMorphemes Linking morphemes that can occur between parts.
+     * @param minPartLength    The minimum length of a part.
+     * @throws IllegalArgumentException If a linking morpheme is empty or the minimum part length is
+     *                                  smaller than one.
+     */
+    public Decompounder(Dictionary dictionary, Collection<String> linkingMorphemes, int minPartLength) {
+        if (minPartLength < 1)
+            throw new IllegalArgumentException(String.format("Minimum part length should be at least 1: %d",
+                    minPartLength));
+
+        for (String morpheme : linkingMorphemes)
+            if (morpheme.isEmpty())
+                throw new IllegalArgumentException("Linking morphemes cannot be empty");
+
+        d_dictionary = dictionary;
+        d_minPartLength = minPartLength;
+
+        try {
+            d_linkingMorphemes = new DictionaryBuilder().addAll(new TreeSet<>(linkingMorphemes)).build();
+        } catch (DictionaryBuilderException e) {
+            // Cannot happen, the morphemes are added in sorted order.
+            throw new IllegalStateException(e);
+        }
+
+        d_charts = new ThreadLocal<Chart>() {
+            @Override
+            protected Chart initialValue() {
+                return new Chart();
+            }
+        };
+    }
+
+    /**
+     * Check whether a word can be decomposed in two or more parts.
+     *
+     * @param word The word.
+     * @return <tt>true</tt> if the word is a compound, <tt>false</tt> otherwise.
+     */
+    public boolean isCompound(CharSequence word) {
+        Chart chart = d_charts.get();
+        fill(chart, word);
+        return chart.d_compoundFrom[0];
+    }
+
+    /**
+     * Get all decompositions of a word in two or more parts. Linking morphemes are not included in
+     * the parts.
+     *
+     * @param word The word.
+     * @return The decompositions, the empty list if the word is not a compound.
+     */
+    public List<List<String>> decompositions(CharSequence word) {
+        Chart chart = d_charts.get();
+        fill(chart, word);
+
+        if (!chart.d_compoundFrom[0])
+            return Collections.emptyList();
+
+        List<List<String>> decompositions = new ArrayList<>();
+        enumerate(chart, word, 0, new ArrayList<String>(), decompositions);
+        return decompositions;
+    }
+
+    /**
+     * Fill the chart with the dictionary words at each position and compute from which positions
+     * the remainder of the word can be decomposed.
+     */
+    private void fill(Chart chart, CharSequence word) {
+        int len = word.length();
+        chart.reset(len);
+
+        for (int i = 0; i < len; ++i) {
+            chart.d_partsStart[i] = chart.d_nParts;
+            d_dictionary.allPrefixMatches(word, i, chart);
+        }
+        chart.d_partsStart[len] = chart.d_nParts;
+
+        // partsFrom[i]: the suffix starting at i is a sequence of one or more parts.
+        chart.d_partsFrom[len] = false;
+        chart.d_compoundFrom[len] = false;
+        for (int i = len - 1; i >= 0; --i) {
+            boolean parts = false;
+            boolean compound = false;
+
+            for (int p = chart.d_partsStart[i]; p < chart.d_partsStart[i + 1]; ++p) {
+                int end = i + chart.d_partLengths[p];
+
+                if (end == len)
+                    parts = true;
+                else if (continues(chart, word, end)) {
+                    parts = true;
+                    compound = true;
+                }
+            }
+
+            chart.d_partsFrom[i] = parts;
+            chart.d_compoundFrom[i] = compound;
+        }
+    }
+
+    /**
+     * Check whether a decomposition can continue after a part that ends at the given position,
+     * either directly or after a linking morpheme.
+     */
+    private boolean continues(Chart chart, CharSequence word, int end) {
+        if (chart.d_partsFrom[end])
+            return true;
+
+        int state = d_linkingMorphemes.startState();
+        for (int i = end; i < word.length(); ++i) {
+            state = d_linkingMorphemes.next(state, word.charAt(i));
+            if (state == -1)
+                return false;
+
+            if (d_linkingMorphemes.isFinalState(state) && i + 1 < word.length() && chart.d_partsFrom[i + 1])
+                return true;
+        }
+
+        return false;
+    }
+
+    private void enumerate(Chart chart, CharSequence word, int start, List<String> parts,
+                           List<List<String>> decompositions) {
+        int len = word.length();
+
+        for (int p = chart.d_partsStart[start]; p < chart.d_partsStart[start + 1]; ++p) {
+            int end = start + chart.d_partLengths[p];
+
+            parts.add(word.subSequence(start, end).toString());
+
+            if (end == len) {
+                if (parts.size() > 1)
+                    decompositions.add(new ArrayList<>(parts));
+            } else {
+                if (chart.d_partsFrom[end])
+                    enumerate(chart, word, end, parts, decompositions);
+
+                // Linking morphemes.
+                int state = d_linkingMorphemes.startState();
+                for (int i = end; i < len; ++i) {
+                    state = d_linkingMorphemes.next(state, word.charAt(i));
+                    if (state == -1)
+                        break;
+
+                    if (d_linkingMorphemes.isFinalState(state) && i + 1 < len && chart.d_partsFrom[i + 1])
+                        enumerate(chart, word, i + 1, parts, decompositions);
+                }
+            }
+
+            parts.remove(parts.size() - 1);
+        }
+    }
+
+    /**
+     * The dictionary words at each position of a word. The chart is the handler of the dictionary
+     * matches, so that no handler needs to be allocated for each position.
+     */
+    private class Chart implements PrefixMatchHandler {
+        // The lengths of the parts that start at position i are stored in
+        // d_partLengths[d_partsStart[i]..d_partsStart[i + 1]).
+        private int[] d_partsStart = new int[0];
+        private int[] d_partLengths = new int[16];
+        private int d_nParts;
+        private boolean[] d_partsFrom = new boolean[0];
+        private boolean[] d_compoundFrom = new boolean[0];
+
+        @Override
+        public void match(int length, int number) {
+            if (length < d_minPartLength)
+                return;
+
+            if (d_nParts == d_partLengths.length)
+                d_partLengths = Arrays.copyOf(d_partLengths, d_partLengths.length * 2);
+
+            d_partLengths[d_nParts++] = length;
+        }
+
+        private void reset(int length) {
+            if (d_partsStart.length < length + 1) {
+                d_partsStart = new int[length + 1];
+                d_partsFrom = new boolean[length + 1];
+                d_compoundFrom = new boolean[length + 1];
+            }
+
+            d_nParts = 0;
+        }
+    }
+}
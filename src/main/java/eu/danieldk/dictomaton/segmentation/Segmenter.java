@@ -0,0 +1,254 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.segmentation;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.PrefixMatchHandler;
+import eu.danieldk.dictomaton.collections.ImmutableStringDoubleMap;
+
+import java.util.TreeSet;
+
+/**
+ * Dictionary-based segmentation of text without word separators, such as CJK text or hashtags.
+ * <p/>
+ * Three segmentation methods are provided:
+ * <ul>
+ * <li>Forward maximum matching: repeatedly take the longest dictionary word at the start of the
+ * remaining text.</li>
+ * <li>Backward maximum matching: repeatedly take the longest dictionary word at the end of the
+ * remaining text.</li>
+ * <li>Most probable segmentation: the segmentation that maximizes the sum of the log-probabilities of
+ * the words (requires the {@link #Segmenter(ImmutableStringDoubleMap, double)} constructor).</li>
+ * </ul>
+ * Characters that do not start (or, for backward matching, end) a dictionary word form a segment of
+ * their own. All methods find the dictionary words at a position in a single walk over the automaton.
+ * Segmentations are written to a caller-provided array as the end offsets of the segments, so that
+ * segmentation does not allocate memory after warm-up.
+ * <p/>
+ * Segmenters are thread-safe.
+ */
+public class Segmenter {
+    private final Dictionary d_dictionary;
+    private final Dictionary d_reversedDictionary;
+    private final ImmutableStringDoubleMap d_logProbs;
+    private final double d_unknownLogProb;
+    private final ThreadLocal<Lattice> d_lattices;
+
+    /**
+     * Construct a segmenter that supports maximum matching.
+     *
+     * @param dictionary The dictionary.
+     */
+    public Segmenter(Dictionary dictionary) {
+        this(dictionary, null, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Construct a segmenter that supports maximum matching and most probable segmentations.
+     *
+     * @param logProbs       The log-probabilities of the words.
+     * @param unknownLogProb The log-probability of a character that is not part of a known word.
+     * @throws IllegalArgumentException If the unknown log-probability is not finite.
+     */
+    public Segmenter(ImmutableStringDoubleMap logProbs, double unknownLogProb) {
+        this(logProbs.keySet(), logProbs, unknownLogProb);
+
+        if (Double.isNaN(unknownLogProb) || Double.isInfinite(unknownLogProb))
+            throw new IllegalArgumentException(String.format("Unknown log-probability is not finite: %f",
+                    unknownLogProb));
+    }
+
+    private Segmenter(Dictionary dictionary, ImmutableStringDoubleMap logProbs, double unknownLogProb) {
+        d_dictionary = dictionary;
+        d_reversedDictionary = reversedDictionary(dictionary);
+        d_logProbs = logProbs;
+        d_unknownLogProb = unknownLogProb;
+        d_lattices = new ThreadLocal<Lattice>() {
+            @Override
+            protected Lattice initialValue() {
+                return new Lattice();
+            }
+        };
+    }
+
+    /**
+     * Segment a text using forward maximum matching.
+     *
+     * @param text     The text.
+     * @param segments The array to store the end offsets of the segments in. The array must have
+     *                 at least the length of the text.
+     * @return The number of segments.
+     */
+    public int forwardMaximumMatching(CharSequence text, int[] segments) {
+        checkSegmentsLength(text, segments);
+
+        int nSegments = 0;
+        for (int i = 0; i < text.length(); ) {
+            int len = d_dictionary.longestPrefixMatch(text, i);
+            i += len > 0 ? len : 1;
+            segments[nSegments++] = i;
+        }
+
+        return nSegments;
+    }
+
+    /**
+     * Segment a text using backward maximum matching.
+     *
+     * @param text     The text.
+     * @param segments The array to store the end offsets of the segments in. The array must have
+     *                 at least the length of the text.
+     * @return The number of segments.
+     */
+    public int backwardMaximumMatching(CharSequence text, int[] segments) {
+        checkSegmentsLength(text, segments);
+
+        // Segments are found from right to left, store the start offsets and reverse afterwards.
+        int nSegments = 0;
+        for (int end = text.length(); end > 0; ) {
+            int longest = 1;
+
+            int state = d_reversedDictionary.startState();
+            for (int i = end - 1; i >= 0; --i) {
+                state = d_reversedDictionary.next(state, text.charAt(i));
+                if (state == -1)
+                    break;
+
+                if (d_reversedDictionary.isFinalState(state))
+                    longest = end - i;
+            }
+
+            end -= longest;
+            segments[nSegments++] = end;
+        }
+
+        // Convert start offsets to end offsets in left-to-right order.
+        for (int i = 0, j = nSegments - 1; i < j; ++i, --j) {
+            int tmp = segments[i];
+            segments[i] = segments[j];
+            segments[j] = tmp;
+        }
+
+        for (int i = 0; i < nSegments - 1; ++i)
+            segments[i] = segments[i + 1];
+        if (nSegments > 0)
+            segments[nSegments - 1] = text.length();
+
+        return nSegments;
+    }
+
+    /**
+     * Find the segmentation of a text that maximizes the sum of the log-probabilities of its
+     * segments. Every character also forms a candidate segment of its own, with the unknown
+     * log-probability, so that texts with unknown words can be segmented.
+     *
+     * @param text     The text.
+     * @param segments The array to store the end offsets of the segments in. The array must have
+     *                 at least the length of the text.
+     * @return The number of segments.
+     * @throws IllegalStateException If the segmenter was not constructed with log-probabilities.
+     */
+    public int mostProbableSegmentation(CharSequence text, int[] segments) {
+        if (d_logProbs == null)
+            throw new IllegalStateException("Most probable segmentation requires log-probabilities");
+
+        checkSegmentsLength(text, segments);
+
+        Lattice lattice = d_lattices.get();
+        lattice.reset(text.length());
+
+        for (int i = 0; i < text.length(); ++i) {
+            if (lattice.d_scores[i] == Double.NEGATIVE_INFINITY)
+                continue;
+
+            lattice.d_start = i;
+
+            // Single-character segment for unknown characters.
+            lattice.update(i + 1, lattice.d_scores[i] + d_unknownLogProb);
+
+            // Dictionary words that start at this position.
+            d_logProbs.keySet().allPrefixMatches(text, i, lattice);
+        }
+
+        // Follow back pointers, storing the end offsets from right to left.
+        int nSegments = 0;
+        for (int end = text.length(); end > 0; end = lattice.d_backPointers[end])
+            segments[nSegments++] = end;
+
+        for (int i = 0, j = nSegments - 1; i < j; ++i, --j) {
+            int tmp = segments[i];
+            segments[i] = segments[j];
+            segments[j] = tmp;
+        }
+
+        return nSegments;
+    }
+
+    private void checkSegmentsLength(CharSequence text, int[] segments) {
+        if (segments.length < text.length())
+            throw new IllegalArgumentException(String.format("Segment array has length %d, text has length %d",
+                    segments.length, text.length()));
+    }
+
+    private static Dictionary reversedDictionary(Dictionary dictionary) {
+        TreeSet<String> reversed = new TreeSet<>();
+        for (String word : dictionary)
+            reversed.add(new StringBuilder(word).reverse().toString());
+
+        try {
+            return new DictionaryBuilder().addAll(reversed).build();
+        } catch (DictionaryBuilderException e) {
+            // Cannot happen, the words are added in sorted order.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Scores and back pointers of the best segmentations of text prefixes. The lattice is the handler
+     * of the dictionary matches starting at a position, so that no handler needs to be allocated for
+     * each position.
+     */
+    private class Lattice implements PrefixMatchHandler {
+        private double[] d_scores = new double[0];
+        private int[] d_backPointers = new int[0];
+        private int d_start;
+
+        @Override
+        public void match(int length, int number) {
+            if (length != 0)
+                update(d_start + length, d_scores[d_start] + d_logProbs.getByNumber(number));
+        }
+
+        private void reset(int length) {
+            if (d_scores.length < length + 1) {
+                d_scores = new double[length + 1];
+                d_backPointers = new int[length + 1];
+            }
+
+            d_scores[0] = 0;
+            for (int i = 1; i <= length; ++i)
+                d_scores[i] = Double.NEGATIVE_INFINITY;
+        }
+
+        private void update(int end, double score) {
+            if (score > d_scores[end]) {
+                d_scores[end] = score;
+                d_backPointers[end] = d_start;
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package eu.danieldk.dictomaton;
+
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+@Category(Tests.class)
+public class AhoCorasickScannerTest {
+    private final char[] d_characters = {'a', 'b', 'c'};
+
+    @Test
+    public void scanTest() throws DictionaryBuilderException {
+        PerfectHashDictionary dict = new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("he", "her",
+                "hers", "his", "she"))).buildPerfectHash();
+        AhoCorasickScanner scanner = new AhoCorasickScanner(dict);
+
+        List<String> matches = new ArrayList<>();
+        scanner.scan("ushers", new CollectingHandler(matches));
+
+        Assert.assertEquals(Arrays.asList("1-4:5", "2-4:1", "2-5:2", "2-6:3"), matches);
+    }
+
+    @Test
+    public void randomScanTest() throws DictionaryBuilderException, IOException {
+        Random rng = new Random(42);
+
+        for (int attempt = 0; attempt < 20; ++attempt) {
+            TreeSet<String> words = new TreeSet<>();
+            for (int i = 0; i < 50; ++i)
+                words.add(randomString(rng, rng.nextInt(5) + 1));
+
+            PerfectHashDictionary dict = new DictionaryBuilder().addAll(words).buildPerfectHash(attempt % 2 == 0);
+            AhoCorasickScanner scanner = new AhoCorasickScanner(dict);
+
+            String text = randomString(rng, 10000);
+
+            // Naive matching, ordered by end offset and decreasing length.
+            List<String> expected = new ArrayList<>();
+            for (int end = 1; end <= text.length(); ++end)
+                for (int start = Math.max(0, end - 5); start < end; ++start) {
+                    String sub = text.substring(start, end);
+                    if (words.contains(sub))
+                        expected.add(String.format("%d-%d:%d", start, end, dict.number(sub)));
+                }
+
+            List<String> matches = new ArrayList<>();
+            scanner.scan(text, new CollectingHandler(matches));
+            Assert.assertEquals(expected, matches);
+
+            matches.clear();
+            scanner.scan(new StringReader(text), new CollectingHandler(matches));
+            Assert.assertEquals(expected, matches);
+        }
+    }
+
+    @Test
+    public void emptyTest() {
+        AhoCorasickScanner scanner = new AhoCorasickScanner(new DictionaryBuilder().buildPerfectHash());
+        List<String> matches = new ArrayList<>();
+        scanner.scan("foo", new CollectingHandler(matches));
+        Assert.assertTrue(matches.isEmpty());
+    }
+
+    private String randomString(Random rng, int len) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < len; ++j)
+            sb.append(d_characters[rng.nextInt(d_characters.length)]);
+        return sb.toString();
+    }
+
+    private static class CollectingHandler implements TextMatchHandler {
+        private final List<String> d_matches;
+
+        private CollectingHandler(List<String> matches) {
+            d_matches = matches;
+        }
+
+        @Override
+        public void match(long start, long end, int number) {
+            d_matches.add(String.format("%d-%d:%d", start, end, number));
+        }
+    }
+}
@@ -21,9 +21,11 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeSet;
 
 @Category(Tests.class)
 public class DictionaryTest {
@@ -72,6 +74,77 @@ public class DictionaryTest {
         d_dict.clear();
     }
 
+    @Test
+    public void prefixMatchesTest() {
+        String text = "de zeemeeuwen alleen";
+
+        Assert.assertEquals(8, d_dict.longestPrefixMatch(text, 3));
+        Assert.assertEquals(6, d_dict.longestPrefixMatch(text, 14));
+        Assert.assertEquals(-1, d_dict.longestPrefixMatch(text, 0));
+        Assert.assertEquals(-1, d_dict.longestPrefixMatch(text, text.length()));
+        Assert.assertEquals(2, d_dict.longestPrefixMatch("al", 0));
+
+        final List<Integer> lengths = new ArrayList<>();
+        d_dict.allPrefixMatches(text, 14, new PrefixMatchHandler() {
+            @Override
+            public void match(int length, int number) {
+                Assert.assertEquals(-1, number);
+                lengths.add(length);
+            }
+        });
+        Assert.assertEquals(Arrays.asList(2, 6), lengths);
+    }
+
+    @Test
+    public void completionsTest() {
+        List<String> completions = new ArrayList<>();
+        for (Iterator<String> iter = d_dict.completions("ze"); iter.hasNext(); )
+            completions.add(iter.next());
+        Assert.assertEquals(Arrays.asList("zeemeeuw", "zeker", "zeven"), completions);
+
+        completions.clear();
+        for (Iterator<String> iter = d_dict.completions(""); iter.hasNext(); )
+            completions.add(iter.next());
+        Assert.assertEquals(d_words1, completions);
+
+        completions.clear();
+        for (Iterator<String> iter = d_dict.completions("al"); iter.hasNext(); )
+            completions.add(iter.next());
+        Assert.assertEquals(Arrays.asList("al", "alleen"), completions);
+
+        Assert.assertFalse(d_dict.completions("zz").hasNext());
+        Assert.assertFalse(d_dict.completions("zoevens").hasNext());
+    }
+
+    @Test
+    public void containsFoldedTest() throws DictionaryBuilderException {
+        Dictionary dict = new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("Cafe", "Caf\u00e9", "caf\u00e8", "cafes")))
+                .build();
+
+        Assert.assertTrue(dict.containsFolded("CAFE", CharacterFolding.CASE));
+        Assert.assertFalse(dict.containsFolded("CAFE", CharacterFolding.DIACRITICS));
+        Assert.assertTrue(dict.containsFolded("CAF\u00c9", CharacterFolding.CASE));
+        Assert.assertTrue(dict.containsFolded("Cafe", CharacterFolding.DIACRITICS));
+        Assert.assertFalse(dict.containsFolded("caf", CharacterFolding.CASE_AND_DIACRITICS));
+
+        Assert.assertEquals(Arrays.asList("Cafe", "Caf\u00e9", "caf\u00e8"),
+                dict.foldedMatches("CAF\u00c8", CharacterFolding.CASE_AND_DIACRITICS));
+        Assert.assertEquals(Arrays.asList("Cafe", "Caf\u00e9"), dict.foldedMatches("Cafe", CharacterFolding.DIACRITICS));
+        Assert.assertTrue(dict.foldedMatches("koffie", CharacterFolding.CASE).isEmpty());
+    }
+
+    @Test
+    public void foldedNonLatinTest() throws DictionaryBuilderException {
+        // Hangul syllables decompose into several jamo and should not be folded, Greek
+        // characters with a tonos should.
+        Dictionary dict = new DictionaryBuilder().addAll(Arrays.asList("\u03ac\u03b1", "\uac00", "\uace0")).build();
+
+        Assert.assertEquals(Arrays.asList("\uac00"), dict.foldedMatches("\uac00", CharacterFolding.DIACRITICS));
+        Assert.assertFalse(dict.containsFolded("\u1100", CharacterFolding.DIACRITICS));
+        Assert.assertEquals(Arrays.asList("\u03ac\u03b1"),
+                dict.foldedMatches("\u03b1\u03b1", CharacterFolding.DIACRITICS));
+    }
+
     @Test
     public void containsTest() {
         for (String word : d_words1)
@@ -0,0 +1,67 @@
+package eu.danieldk.dictomaton;
+
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+@Category(Tests.class)
+public class InfixIndexTest {
+    @Test
+    public void infixTest() throws DictionaryBuilderException {
+        InfixIndex index = new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("banana", "bandana", "cabana",
+                "nab", "nan"))).buildInfixIndex();
+
+        Assert.assertEquals(Arrays.asList("banana", "bandana", "cabana"), index.containing("ana"));
+        Assert.assertEquals(Arrays.asList("banana", "bandana", "cabana"), index.containing("ba"));
+        Assert.assertEquals(Arrays.asList("cabana", "nab"), index.containing("ab"));
+        Assert.assertEquals(Arrays.asList("banana", "nan"), index.containing("nan"));
+        Assert.assertTrue(index.containing("x").isEmpty());
+        Assert.assertEquals(5, index.containing("").size());
+
+        Assert.assertEquals(Arrays.asList("banana", "bandana", "cabana"), index.endingWith("ana"));
+        Assert.assertEquals(Arrays.asList("nab"), index.endingWith("ab"));
+        Assert.assertTrue(index.endingWith("ban").isEmpty());
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, index.endingWithNumbers("na"));
+    }
+
+    @Test
+    public void randomInfixTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        TreeSet<String> words = new TreeSet<>();
+        for (int i = 0; i < 1000; ++i)
+            words.add(randomString(rng, rng.nextInt(8) + 1));
+
+        InfixIndex index = new DictionaryBuilder().addAll(words).buildInfixIndex();
+
+        for (int i = 0; i < 200; ++i) {
+            String query = randomString(rng, rng.nextInt(4) + 1);
+
+            List<String> containing = new ArrayList<>();
+            List<String> endingWith = new ArrayList<>();
+            for (String word : words) {
+                if (word.contains(query))
+                    containing.add(word);
+                if (word.endsWith(query))
+                    endingWith.add(word);
+            }
+
+            Assert.assertEquals(containing, index.containing(query));
+            Assert.assertEquals(endingWith, index.endingWith(query));
+        }
+    }
+
+    private String randomString(Random rng, int len) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < len; ++j)
+            sb.append((char) ('a' + rng.nextInt(4)));
+        return sb.toString();
+    }
+}
@@ -22,8 +22,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
 
 @Category(Tests.class)
 public class PerfectHashDictionaryTest {
@@ -82,6 +89,135 @@ public class PerfectHashDictionaryTest {
         Assert.assertEquals(0, dict.size());
     }
 
+    @Test
+    public void hashRangeTest() {
+        for (PerfectHashDictionary dict : Arrays.asList(d_dict, d_dictTransitionCardinality)) {
+            Assert.assertArrayEquals(new int[]{4, 7}, dict.hashRange("ze"));
+            Assert.assertEquals(3, dict.countWithPrefix("ze"));
+            Assert.assertArrayEquals(new int[]{1, 3}, dict.hashRange("al"));
+            Assert.assertEquals(2, dict.countWithPrefix("al"));
+            Assert.assertArrayEquals(new int[]{1, 8}, dict.hashRange(""));
+            Assert.assertEquals(7, dict.countWithPrefix(""));
+
+            // Prefixes that are not in the dictionary.
+            Assert.assertArrayEquals(new int[]{3, 3}, dict.hashRange("am"));
+            Assert.assertArrayEquals(new int[]{4, 4}, dict.hashRange("b"));
+            Assert.assertArrayEquals(new int[]{8, 8}, dict.hashRange("zz"));
+            Assert.assertArrayEquals(new int[]{8, 8}, dict.hashRange("zoevens"));
+            Assert.assertEquals(0, dict.countWithPrefix("b"));
+
+            // Compare to the lexicographic order.
+            for (String prefix : Arrays.asList("a", "av", "z", "zee", "zo", "alleen")) {
+                int[] range = dict.hashRange(prefix);
+                for (int i = 1; i <= dict.size(); ++i)
+                    Assert.assertEquals(i >= range[0] && i < range[1], dict.sequence(i).startsWith(prefix));
+            }
+        }
+    }
+
+    @Test
+    public void prefixMatchesTest() {
+        for (PerfectHashDictionary dict : Arrays.asList(d_dict, d_dictTransitionCardinality)) {
+            Assert.assertEquals(2, dict.longestPrefixMatchNumber("de alleen", 3));
+            Assert.assertEquals(6, dict.longestPrefixMatch("de alleen", 3));
+            Assert.assertEquals(-1, dict.longestPrefixMatchNumber("de alleen", 0));
+
+            final List<Integer> lengths = new ArrayList<>();
+            final List<Integer> numbers = new ArrayList<>();
+            dict.allPrefixMatches("allee alleen", 6, new PrefixMatchHandler() {
+                @Override
+                public void match(int length, int number) {
+                    lengths.add(length);
+                    numbers.add(number);
+                }
+            });
+            Assert.assertEquals(Arrays.asList(2, 6), lengths);
+            Assert.assertEquals(Arrays.asList(1, 2), numbers);
+        }
+    }
+
+    @Test
+    public void numbersTest() {
+        List<String> queries = new ArrayList<>(d_words1);
+        queries.addAll(d_words2);
+        queries.add("");
+        queries.add("a");
+        Collections.shuffle(queries, new Random(42));
+
+        CharSequence[] seqs = queries.toArray(new CharSequence[queries.size()]);
+        for (PerfectHashDictionary dict : Arrays.asList(d_dict, d_dictTransitionCardinality)) {
+            int[] numbers = new int[seqs.length];
+            dict.numbers(seqs, numbers);
+
+            for (int i = 0; i < seqs.length; ++i)
+                Assert.assertEquals(dict.number(seqs[i]), numbers[i]);
+        }
+    }
+
+    @Test
+    public void transitionCardinalityTest() {
+        for (PerfectHashDictionary dict : Arrays.asList(d_dict, d_dictTransitionCardinality)) {
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(dict.startState());
+            while (!stack.isEmpty()) {
+                int state = stack.pop();
+
+                int offset = dict.isFinalState(state) ? 1 : 0;
+                for (int trans = dict.transitionsStart(state); trans < dict.transitionsEnd(state); ++trans) {
+                    Assert.assertEquals(dict.transitionNumberOffset(state, trans), offset);
+                    offset += dict.transitionCardinality(state, trans);
+                    stack.push(dict.transitionTarget(trans));
+                }
+
+                if (state == dict.startState())
+                    Assert.assertEquals(dict.size(), offset);
+            }
+        }
+    }
+
+    @Test
+    public void navigableSetTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+        TreeSet<String> words = new TreeSet<>();
+        for (int i = 0; i < 500; ++i)
+            words.add(randomWord(rng));
+
+        for (boolean stateCard : new boolean[]{true, false}) {
+            PerfectHashDictionary dict = new DictionaryBuilder().addAll(words).buildPerfectHash(stateCard);
+            checkNavigableSet(rng, words, dict);
+            checkNavigableSet(rng, words.descendingSet(), dict.descendingSet());
+
+            for (int i = 0; i < 20; ++i) {
+                String from = randomWord(rng);
+                String to = randomWord(rng);
+                if (from.compareTo(to) > 0) {
+                    String tmp = from;
+                    from = to;
+                    to = tmp;
+                }
+
+                boolean fromInclusive = rng.nextBoolean();
+                boolean toInclusive = rng.nextBoolean();
+
+                checkNavigableSet(rng, words.subSet(from, fromInclusive, to, toInclusive),
+                        dict.subSet(from, fromInclusive, to, toInclusive));
+                checkNavigableSet(rng, words.headSet(to, toInclusive), dict.headSet(to, toInclusive));
+                checkNavigableSet(rng, words.tailSet(from, fromInclusive), dict.tailSet(from, fromInclusive));
+                checkNavigableSet(rng, words.descendingSet().subSet(to, toInclusive, from, fromInclusive),
+                        dict.descendingSet().subSet(to, toInclusive, from, fromInclusive));
+                checkNavigableSet(rng, words.descendingSet().headSet(to, toInclusive),
+                        dict.descendingSet().headSet(to, toInclusive));
+                checkNavigableSet(rng, words.descendingSet().tailSet(from, fromInclusive),
+                        dict.descendingSet().tailSet(from, fromInclusive));
+            }
+        }
+    }
+
+    @Test(expected = java.util.NoSuchElementException.class)
+    public void emptyFirstTest() {
+        new DictionaryBuilder().buildPerfectHash().first();
+    }
+
     @Test
     public void sizeTest() {
         Assert.assertEquals(7, d_dict.size());
@@ -235,4 +371,38 @@ public class PerfectHashDictionaryTest {
         Assert.assertNull(d_dict.sequence(0));
         Assert.assertNull(d_dict.sequence(d_words1.size() + 1));
     }
+
+    private void checkNavigableSet(Random rng, NavigableSet<String> expected, NavigableSet<String> check) {
+        Assert.assertEquals(expected.size(), check.size());
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(check));
+        Assert.assertEquals(new ArrayList<>(expected.descendingSet()), new ArrayList<>(check.descendingSet()));
+
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(expected.first(), check.first());
+            Assert.assertEquals(expected.last(), check.last());
+        }
+
+        for (int i = 0; i < 50; ++i) {
+            String word = randomWord(rng);
+            Assert.assertEquals(expected.ceiling(word), check.ceiling(word));
+            Assert.assertEquals(expected.floor(word), check.floor(word));
+            Assert.assertEquals(expected.higher(word), check.higher(word));
+            Assert.assertEquals(expected.lower(word), check.lower(word));
+            Assert.assertEquals(expected.contains(word), check.contains(word));
+        }
+
+        for (String word : expected) {
+            Assert.assertEquals(expected.higher(word), check.higher(word));
+            Assert.assertEquals(expected.lower(word), check.lower(word));
+            Assert.assertTrue(check.contains(word));
+        }
+    }
+
+    private String randomWord(Random rng) {
+        int len = rng.nextInt(5) + 1;
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < len; ++j)
+            sb.append((char) ('a' + rng.nextInt(4)));
+        return sb.toString();
+    }
 }
@@ -0,0 +1,97 @@
+package eu.danieldk.dictomaton;
+
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+@Category(Tests.class)
+public class WeightedDictionaryTest {
+    private final char[] d_characters = {'a', 'b', 'c', 'd'};
+
+    private TreeMap<String, Integer> d_weights;
+    private WeightedDictionary d_dict;
+
+    @Before
+    public void initialize() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        d_weights = new TreeMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            int len = rng.nextInt(6) + 1;
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < len; ++j)
+                sb.append(d_characters[rng.nextInt(d_characters.length)]);
+            d_weights.put(sb.toString(), rng.nextInt(100));
+        }
+
+        d_dict = new WeightedDictionary.Builder().putAll(d_weights).build();
+    }
+
+    @Test
+    public void weightTest() {
+        Assert.assertEquals(d_weights.size(), d_dict.size());
+
+        for (Map.Entry<String, Integer> entry : d_weights.entrySet())
+            Assert.assertEquals(entry.getValue().intValue(), d_dict.weight(entry.getKey()));
+
+        Assert.assertEquals(-1, d_dict.weight("e"));
+    }
+
+    @Test
+    public void topCompletionsTest() {
+        for (String prefix : new String[]{"", "a", "ab", "dcb", "abcd", "e"})
+            for (int k : new int[]{0, 1, 5, 50, 2000})
+                checkTopCompletions(prefix, k);
+    }
+
+    @Test
+    public void topCompletionsOrderTest() throws DictionaryBuilderException {
+        WeightedDictionary dict = new WeightedDictionary.Builder().put("the", 100).put("then", 20).put("there", 40)
+                .put("they", 40).put("this", 90).build();
+
+        List<WeightedDictionary.Completion> completions = dict.topCompletions("the", 3);
+        Assert.assertEquals(3, completions.size());
+        Assert.assertEquals("the", completions.get(0).getSequence());
+        Assert.assertEquals(100, completions.get(0).getWeight());
+        Assert.assertEquals("there", completions.get(1).getSequence());
+        Assert.assertEquals("they", completions.get(2).getSequence());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeWeightTest() {
+        new WeightedDictionary.Builder().put("foo", -1);
+    }
+
+    private void checkTopCompletions(String prefix, int k) {
+        List<Map.Entry<String, Integer>> expected = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : d_weights.entrySet())
+            if (entry.getKey().startsWith(prefix))
+                expected.add(entry);
+
+        // Stable sort, sequences with equal weights remain in lexicographic order.
+        Collections.sort(expected, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+
+        List<WeightedDictionary.Completion> completions = d_dict.topCompletions(prefix, k);
+        Assert.assertEquals(Math.min(k, expected.size()), completions.size());
+
+        for (int i = 0; i < completions.size(); ++i) {
+            Assert.assertEquals(expected.get(i).getKey(), completions.get(i).getSequence());
+            Assert.assertEquals(expected.get(i).getValue().intValue(), completions.get(i).getWeight());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+@Category(Tests.class)
+public class FrameOfReferenceArrayTest {
+    @Test
+    public void emptyTest() {
+        FrameOfReferenceArray array = new FrameOfReferenceArray(new long[0]);
+        Assert.assertEquals(0, array.size());
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void outOfBoundsTest() {
+        // The index is within the first block, but past the last value.
+        new FrameOfReferenceArray(new long[]{7, 7, 7}).get(3);
+    }
+
+    @Test
+    public void getTest() {
+        Random rng = new Random(42);
+
+        for (int width = 0; width <= 64; ++width) {
+            long[] values = new long[1000];
+            long base = rng.nextLong();
+            for (int i = 0; i < values.length; ++i) {
+                long delta = width == 64 ? rng.nextLong() : (width == 0 ? 0 : rng.nextLong() & ((1L << width) - 1));
+                values[i] = base + delta;
+            }
+
+            FrameOfReferenceArray array = new FrameOfReferenceArray(values);
+            Assert.assertEquals(values.length, array.size());
+
+            for (int i = 0; i < values.length; ++i)
+                Assert.assertEquals(values[i], array.get(i));
+        }
+    }
+
+    @Test
+    public void extremesTest() {
+        long[] values = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1, Long.MIN_VALUE};
+        FrameOfReferenceArray array = new FrameOfReferenceArray(values);
+
+        for (int i = 0; i < values.length; ++i)
+            Assert.assertEquals(values[i], array.get(i));
+    }
+
+    @Test
+    public void blockCompressionTest() {
+        // Narrow ranges around very different bases should be stored with few bits per value.
+        long[] values = new long[FrameOfReferenceArray.BLOCK_SIZE * 8];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = (i / FrameOfReferenceArray.BLOCK_SIZE) * 1000000000000L + (i % 4);
+
+        FrameOfReferenceArray array = new FrameOfReferenceArray(values);
+        for (int i = 0; i < values.length; ++i)
+            Assert.assertEquals(values[i], array.get(i));
+
+        Assert.assertTrue(array.sizeInBytes() < values.length);
+    }
+}
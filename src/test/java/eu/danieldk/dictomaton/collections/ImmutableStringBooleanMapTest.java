@@ -0,0 +1,72 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+@Category(Tests.class)
+public class ImmutableStringBooleanMapTest {
+    @Test
+    public void bitsetTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        TreeMap<String, Boolean> check = new TreeMap<>();
+        for (int i = 0; i < 1000; ++i)
+            check.put(Integer.toString(rng.nextInt(100000)), rng.nextInt(5) == 0);
+
+        List<String> trueKeys = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : check.entrySet())
+            if (entry.getValue())
+                trueKeys.add(entry.getKey());
+
+        ImmutableStringBooleanMap unordered = new ImmutableStringBooleanMap.Builder().putAll(check).build();
+        ImmutableStringBooleanMap ordered = new ImmutableStringBooleanMap.OrderedBuilder().putAll(check).build();
+
+        for (ImmutableStringBooleanMap test : Arrays.asList(unordered, ordered)) {
+            Assert.assertEquals(check, test);
+            Assert.assertEquals(new ArrayList<>(check.values()), new ArrayList<>(test.values()));
+            Assert.assertEquals(new ArrayList<>(check.entrySet()), new ArrayList<>(test.entrySet()));
+            Assert.assertEquals(trueKeys.size(), test.countTrue());
+
+            final List<String> visitedTrueKeys = new ArrayList<>();
+            test.forEachEntry(new ImmutableStringBooleanMap.EntryVisitor() {
+                @Override
+                public void visit(String key, boolean value) {
+                    if (value)
+                        visitedTrueKeys.add(key);
+                }
+            });
+            Assert.assertEquals(trueKeys, visitedTrueKeys);
+
+            List<String> iterated = new ArrayList<>();
+            for (Iterator<String> iter = test.trueKeyIterator(); iter.hasNext(); )
+                iterated.add(iter.next());
+            Assert.assertEquals(trueKeys, iterated);
+
+            for (int number = 1; number <= test.size(); ++number) {
+                int next = test.nextTrueNumber(number);
+                if (next == -1)
+                    Assert.assertTrue(number > test.keySet().number(trueKeys.get(trueKeys.size() - 1)));
+                else {
+                    Assert.assertTrue(next >= number);
+                    Assert.assertTrue(test.getByNumber(next));
+                    for (int i = number; i < next; ++i)
+                        Assert.assertFalse(test.getByNumber(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyTest() throws DictionaryBuilderException {
+        ImmutableStringBooleanMap test = new ImmutableStringBooleanMap.Builder().build();
+        Assert.assertEquals(0, test.countTrue());
+        Assert.assertEquals(-1, test.nextTrueNumber(1));
+        Assert.assertFalse(test.trueKeyIterator().hasNext());
+        Assert.assertTrue(test.getOrElse("foo", true));
+    }
+}
@@ -0,0 +1,106 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.PerfectHashDictionary;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+@Category(Tests.class)
+public class ImmutableStringIntFstMapTest {
+    @Test
+    public void getTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        TreeMap<String, Integer> check = new TreeMap<>();
+        for (int i = 0; i < 2000; ++i)
+            check.put(Integer.toString(rng.nextInt(100000), 7), rng.nextInt());
+        check.put("", -3);
+        check.put("1", Integer.MAX_VALUE);
+        check.put("12", Integer.MIN_VALUE);
+
+        ImmutableStringIntFstMap unordered = new ImmutableStringIntFstMap.Builder().putAll(check).build();
+        ImmutableStringIntFstMap ordered = new ImmutableStringIntFstMap.OrderedBuilder().putAll(check).build();
+
+        for (ImmutableStringIntFstMap map : Arrays.asList(unordered, ordered)) {
+            Assert.assertEquals(check.size(), map.size());
+            for (Map.Entry<String, Integer> entry : check.entrySet())
+                Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+
+            Assert.assertNull(map.get("missing"));
+            Assert.assertEquals(-1, map.getOrElse("13x", -1));
+            Assert.assertEquals(new ArrayList<>(check.entrySet()), new ArrayList<>(map.entrySet()));
+            Assert.assertEquals(check, map);
+        }
+    }
+
+    @Test
+    public void duplicateKeyTest() throws DictionaryBuilderException {
+        ImmutableStringIntFstMap map = new ImmutableStringIntFstMap.Builder().put("b", 1).put("a", 2).put("b", 3)
+                .build();
+
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(2, map.getOrElse("a", -1));
+        Assert.assertEquals(3, map.getOrElse("b", -1));
+    }
+
+    @Test(expected = DictionaryBuilderException.class)
+    public void invalidOrderTest() throws DictionaryBuilderException {
+        new ImmutableStringIntFstMap.OrderedBuilder().put("b", 1).put("a", 2);
+    }
+
+    @Test
+    public void emptyTest() throws DictionaryBuilderException {
+        ImmutableStringIntFstMap map = new ImmutableStringIntFstMap.Builder().build();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(""));
+        Assert.assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void monotoneTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        TreeSet<String> words = new TreeSet<>();
+        for (int i = 0; i < 2000; ++i)
+            words.add(Integer.toString(rng.nextInt(100000), 5));
+
+        // Ranks as values: the outputs coincide with the transition offsets of a perfect hash
+        // automaton, so the transducer should be as small as the key automaton.
+        ImmutableStringIntFstMap.OrderedBuilder builder = new ImmutableStringIntFstMap.OrderedBuilder();
+        int rank = 0;
+        for (String word : words)
+            builder.put(word, rank++);
+        ImmutableStringIntFstMap map = builder.build();
+
+        PerfectHashDictionary dict = new DictionaryBuilder().addAll(words).buildPerfectHash(false);
+        for (String word : words)
+            Assert.assertEquals(dict.number(word) - 1, map.getOrElse(word, -1));
+
+        Assert.assertEquals(stateCount(dict), map.stateCount());
+    }
+
+    private static int stateCount(PerfectHashDictionary dict) {
+        BitSet seen = new BitSet();
+        Deque<Integer> agenda = new ArrayDeque<>();
+        agenda.push(dict.startState());
+        seen.set(dict.startState());
+
+        while (!agenda.isEmpty()) {
+            int state = agenda.pop();
+            for (int trans = dict.transitionsStart(state); trans < dict.transitionsEnd(state); ++trans) {
+                int to = dict.transitionTarget(trans);
+                if (!seen.get(to)) {
+                    seen.set(to);
+                    agenda.push(to);
+                }
+            }
+        }
+
+        return seen.cardinality();
+    }
+}
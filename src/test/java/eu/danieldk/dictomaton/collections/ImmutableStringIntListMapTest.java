@@ -0,0 +1,110 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+@Category(Tests.class)
+public class ImmutableStringIntListMapTest {
+    private TreeMap<String, int[]> d_index;
+
+    @Before
+    public void initialize() {
+        Random rng = new Random(42);
+
+        d_index = new TreeMap<>();
+        for (int i = 0; i < 500; ++i) {
+            TreeSet<Integer> docs = new TreeSet<>();
+            int n = rng.nextInt(200);
+            for (int j = 0; j < n; ++j)
+                docs.add(rng.nextInt(1000));
+
+            int[] list = new int[docs.size()];
+            int k = 0;
+            for (int doc : docs)
+                list[k++] = doc;
+
+            d_index.put("term" + i, list);
+        }
+
+        d_index.put("empty", new int[0]);
+    }
+
+    @Test
+    public void getTest() throws DictionaryBuilderException {
+        ImmutableStringIntListMap map = new ImmutableStringIntListMap.Builder().putAll(d_index).build();
+
+        Assert.assertEquals(d_index.size(), map.size());
+        Assert.assertTrue(map.isAscending());
+        Assert.assertNull(map.get("missing"));
+        Assert.assertNull(map.postings("missing"));
+
+        for (Map.Entry<String, int[]> entry : d_index.entrySet()) {
+            Assert.assertArrayEquals(entry.getValue(), map.get(entry.getKey()));
+
+            ImmutableStringIntListMap.PostingsIterator iter = map.postings(entry.getKey());
+            Assert.assertEquals(entry.getValue().length, iter.length());
+            for (int value : entry.getValue())
+                Assert.assertEquals(value, iter.next());
+            Assert.assertFalse(iter.hasNext());
+        }
+
+        for (Map.Entry<String, int[]> entry : map.entrySet())
+            Assert.assertArrayEquals(d_index.get(entry.getKey()), entry.getValue());
+    }
+
+    @Test
+    public void unorderedTest() throws DictionaryBuilderException {
+        int[] list = {5, -3, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 0, 128, -129};
+        ImmutableStringIntListMap map = new ImmutableStringIntListMap.Builder().put("a", new int[]{1})
+                .put("b", list).put("a", new int[]{2, 3}).build();
+
+        Assert.assertEquals(2, map.size());
+        Assert.assertFalse(map.isAscending());
+        Assert.assertArrayEquals(new int[]{2, 3}, map.get("a"));
+        Assert.assertArrayEquals(list, map.get("b"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unorderedIntersectionTest() throws DictionaryBuilderException {
+        ImmutableStringIntListMap map = new ImmutableStringIntListMap.Builder().put("a", new int[]{3, 1}).build();
+        map.intersection("a", "a");
+    }
+
+    @Test
+    public void intersectionTest() throws DictionaryBuilderException {
+        ImmutableStringIntListMap map = new ImmutableStringIntListMap.Builder().putAll(d_index).build();
+
+        Random rng = new Random(43);
+        for (int i = 0; i < 200; ++i) {
+            List<String> keys = new ArrayList<>();
+            int n = 1 + rng.nextInt(3);
+            for (int j = 0; j < n; ++j)
+                keys.add("term" + rng.nextInt(500));
+
+            Set<Integer> expected = new TreeSet<>();
+            for (int doc : d_index.get(keys.get(0)))
+                expected.add(doc);
+            for (String key : keys.subList(1, keys.size())) {
+                Set<Integer> docs = new HashSet<>();
+                for (int doc : d_index.get(key))
+                    docs.add(doc);
+                expected.retainAll(docs);
+            }
+
+            int[] result = map.intersection(keys);
+            Assert.assertEquals(expected.size(), result.length);
+            int k = 0;
+            for (int doc : expected)
+                Assert.assertEquals(doc, result[k++]);
+        }
+
+        Assert.assertEquals(0, map.intersection("term1", "missing").length);
+        Assert.assertEquals(0, map.intersection("term1", "empty").length);
+    }
+}
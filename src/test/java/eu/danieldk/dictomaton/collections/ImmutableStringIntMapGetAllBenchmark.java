@@ -0,0 +1,109 @@
+// Copyright 2013 Daniel de Kok
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package eu.danieldk.dictomaton.collections;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Benchmarks;
+
+/**
+ * Compares lookups of single keys with batched lookups through
+ * {@link ImmutableStringIntMap#getAll(CharSequence[], int[], int, int[])}. The keys are random
+ * strings, which share few suffixes, so that the automaton is much larger than the processor
+ * caches and most transitions are cache misses.
+ */
+@Category(Benchmarks.class)
+public class ImmutableStringIntMapGetAllBenchmark extends AbstractBenchmark
+{
+	private static final int N_KEYS = 500000;
+
+	// The number of keys per batch, e.g. the tokens of a document.
+	private static final int BATCH_SIZE = 1024;
+
+	private static String[] d_queries;
+	private static ImmutableStringIntMap d_map;
+
+	@BeforeClass
+	public static void initializeExpensive() throws DictionaryBuilderException
+	{
+		Random rng = new Random(42);
+
+		TreeSet<String> keys = new TreeSet<>();
+		while (keys.size() < N_KEYS)
+			keys.add(randomString(rng, 8 + rng.nextInt(9)));
+
+		ImmutableStringIntMap.OrderedBuilder builder = new ImmutableStringIntMap.OrderedBuilder();
+		for (String key : keys)
+			builder.put(key, key.length());
+		d_map = builder.build();
+
+		// Look up the keys in random order.
+		d_queries = keys.toArray(new String[keys.size()]);
+		for (int i = d_queries.length - 1; i > 0; --i)
+		{
+			int j = rng.nextInt(i + 1);
+			String tmp = d_queries[i];
+			d_queries[i] = d_queries[j];
+			d_queries[j] = tmp;
+		}
+	}
+
+	@Test
+	public void getOrElseBenchmark()
+	{
+		long sum = 0;
+		for (String query : d_queries)
+			sum += d_map.getOrElse(query, -1);
+
+		Assert.assertTrue(sum > 0);
+	}
+
+	@Test
+	public void getAllBenchmark()
+	{
+		CharSequence[] batch = new CharSequence[BATCH_SIZE];
+		int[] values = new int[BATCH_SIZE];
+		int[] numbers = new int[BATCH_SIZE];
+
+		long sum = 0;
+		for (int from = 0; from + BATCH_SIZE <= d_queries.length; from += BATCH_SIZE)
+		{
+			System.arraycopy(d_queries, from, batch, 0, BATCH_SIZE);
+			d_map.getAll(batch, values, -1, numbers);
+
+			for (int value : values)
+				sum += value;
+		}
+
+		Assert.assertTrue(sum > 0);
+	}
+
+	private static String randomString(Random rng, int length)
+	{
+		char[] chars = new char[length];
+		for (int i = 0; i < length; ++i)
+			chars[i] = (char) ('a' + rng.nextInt(26));
+
+		return new String(chars);
+	}
+}
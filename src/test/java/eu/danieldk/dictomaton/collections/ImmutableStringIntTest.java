@@ -42,6 +42,56 @@ public class ImmutableStringIntTest {
         Assert.assertEquals(0, test.size());
     }
 
+    @Test
+    public void duplicateKeyTest() throws DictionaryBuilderException {
+        ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().put("b", 1).put("a", 2).put("b", 3)
+                .put("c", 4).put("b", 5).build();
+
+        Assert.assertEquals(3, test.size());
+        Assert.assertEquals(2, test.getOrElse("a", -1));
+        Assert.assertEquals(5, test.getOrElse("b", -1));
+        Assert.assertEquals(4, test.getOrElse("c", -1));
+    }
+
+    @Test
+    public void packedValuesTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        Map<String, Integer> check = new HashMap<>();
+        for (int i = 0; i < 1000; ++i)
+            check.put(Integer.toString(i), -500 + rng.nextInt(16));
+
+        ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().packValues().putAll(check).build();
+        Assert.assertEquals(check, test);
+
+        test = new ImmutableStringIntMap.OrderedBuilder().packValues().putAll(new TreeMap<>(check)).build();
+        Assert.assertEquals(check, test);
+        Assert.assertEquals(new ArrayList<>(new TreeMap<>(check).values()), new ArrayList<>(test.values()));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void packedValuesOutOfBoundsTest() throws DictionaryBuilderException {
+        // All values are equal, so the values are packed using zero bits.
+        Map<String, Integer> check = new HashMap<>();
+        for (int i = 0; i < 100; ++i)
+            check.put(Integer.toString(i), 42);
+
+        ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().packValues().putAll(check).build();
+        Assert.assertEquals(42, test.getByNumber(test.size()));
+        test.getByNumber(test.size() + 1);
+    }
+
+    @Test
+    public void getAllTest() throws DictionaryBuilderException {
+        ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().putAll(d_check1).build();
+
+        String[] keys = {"Pulp Fiction", "Miles Davis", "Dumb and Dumber", "", "The Godfather", "Pulp"};
+        int[] values = new int[keys.length];
+        test.getAll(keys, values, -1);
+
+        Assert.assertArrayEquals(new int[]{9, -1, 3, -1, 9, -1}, values);
+    }
+
     @Test
     public void containsTest() throws DictionaryBuilderException {
         // Unordered
@@ -90,6 +140,24 @@ public class ImmutableStringIntTest {
             Assert.assertEquals(-1, test.getOrElse(entry.getKey(), -1));
     }
 
+    @Test
+    public void fuzzyGetTest() throws DictionaryBuilderException {
+        ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().putAll(d_check1).putAll(d_check2).build();
+
+        List<ImmutableStringIntMap.FuzzyEntry> entries = test.fuzzyGet("John Zorm", 2);
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("John Zorn", entries.get(0).getKey());
+        Assert.assertEquals(9, entries.get(0).getValue());
+        Assert.assertEquals(1, entries.get(0).getDistance());
+
+        entries = test.fuzzyGet("The Godfathers", 1);
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("The Godfather", entries.get(0).getKey());
+        Assert.assertEquals(9, entries.get(0).getValue());
+
+        Assert.assertTrue(test.fuzzyGet("Canned Meat Heat", 2).isEmpty());
+    }
+
     @Test
     public void iteratorTest() throws DictionaryBuilderException {
         ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().putAll(d_check1).build();
@@ -103,6 +171,26 @@ public class ImmutableStringIntTest {
         Assert.assertEquals(d_check1.keySet(), isiKeys);
     }
 
+    @Test
+    public void forEachEntryTest() throws DictionaryBuilderException {
+        TreeMap<String, Integer> check = new TreeMap<>(d_check2);
+        ImmutableStringIntMap test = new ImmutableStringIntMap.Builder().putAll(check).packValues().build();
+
+        final List<String> keys = new ArrayList<>();
+        final List<Integer> values = new ArrayList<>();
+        test.forEachEntry(new ImmutableStringIntMap.EntryVisitor() {
+            @Override
+            public void visit(String key, int value) {
+                keys.add(key);
+                values.add(value);
+            }
+        });
+
+        Assert.assertEquals(new ArrayList<>(check.keySet()), keys);
+        Assert.assertEquals(new ArrayList<>(check.values()), values);
+        Assert.assertEquals(new ArrayList<>(check.entrySet()), new ArrayList<>(test.entrySet()));
+    }
+
     @Test(expected = DictionaryBuilderException.class)
     public void invalidOrderTest() throws DictionaryBuilderException {
         ImmutableStringIntMap test = new ImmutableStringIntMap.OrderedBuilder()
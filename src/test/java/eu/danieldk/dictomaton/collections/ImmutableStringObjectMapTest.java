@@ -22,6 +22,7 @@ import org.junit.experimental.categories.Category;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -44,6 +45,20 @@ public class ImmutableStringObjectMapTest {
         Assert.assertEquals(0, test.size());
     }
 
+    @Test
+    public void fuzzyGetTest() throws DictionaryBuilderException {
+        ImmutableStringObjectMap<String> iso = new ImmutableStringObjectMap.Builder<String>().putAll(d_locations)
+                .build();
+
+        List<ImmutableStringObjectMap.FuzzyEntry<String>> entries = iso.fuzzyGet("Pariss", 1);
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("Paris", entries.get(0).getKey());
+        Assert.assertEquals("France", entries.get(0).getValue());
+        Assert.assertEquals(1, entries.get(0).getDistance());
+
+        Assert.assertTrue(iso.fuzzyGet("Rotterdam", 2).isEmpty());
+    }
+
     @Test
     public void getTest() throws DictionaryBuilderException {
         // Unordered
@@ -1,7 +1,10 @@
 package eu.danieldk.dictomaton.collections;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 import eu.danieldk.dictomaton.categories.Tests;
 import org.junit.Assert;
@@ -40,4 +43,47 @@ public class ImmutableStringStringMapTest
 		Map<String, String> iss = new ImmutableStringStringMap.Builder().putAll(locations).build();
 		Assert.assertEquals(locations, iss);
 	}
+
+	@Test
+	public void frontCodedTest() throws DictionaryBuilderException
+	{
+		// Mostly-unique values that share prefixes.
+		Random rng = new Random(42);
+		TreeMap<String, String> urls = new TreeMap<>();
+		for (int i = 0; i < 1000; ++i)
+		{
+			String page = Integer.toString(rng.nextInt(1000000));
+			urls.put(page, "http://www.example.com/pages/" + page + "/index.html?session=" + rng.nextLong());
+		}
+
+		// Long values need more than one length group.
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 70000; ++i)
+			sb.append((char) ('a' + i % 26));
+		urls.put("long", sb.toString());
+
+		ImmutableStringStringMap iss = new ImmutableStringStringMap.Builder().putAll(urls).build();
+		Assert.assertTrue(iss.valueStore() instanceof FrontCodedValueStore);
+		Assert.assertEquals(FrontCodedValueStore.sizeInBytes(new ArrayList<>(urls.values())),
+				iss.valueStore().sizeInBytes());
+		Assert.assertEquals(urls, iss);
+		Assert.assertEquals(new ArrayList<>(urls.values()), new ArrayList<>(iss.values()));
+		Assert.assertEquals(new ArrayList<>(urls.entrySet()), new ArrayList<>(iss.entrySet()));
+	}
+
+	@Test
+	public void repeatedValuesTest() throws DictionaryBuilderException
+	{
+		Map<String, String> countries = new HashMap<>();
+		for (int i = 0; i < 1000; ++i)
+			countries.put("city" + i, i % 2 == 0 ? "The Netherlands" : "Germany");
+
+		ImmutableStringStringMap iss = new ImmutableStringStringMap.Builder().putAll(countries).build();
+		Assert.assertTrue(iss.valueStore() instanceof DictionaryValueStore);
+		Assert.assertEquals(countries, iss);
+		Assert.assertEquals(new ArrayList<>(new TreeMap<>(countries).entrySet()), new ArrayList<>(iss.entrySet()));
+
+		// There is a value for every key, also when the values are deduplicated.
+		Assert.assertEquals(new ArrayList<>(new TreeMap<>(countries).values()), new ArrayList<>(iss.values()));
+	}
 }
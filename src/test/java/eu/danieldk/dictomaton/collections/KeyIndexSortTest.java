@@ -0,0 +1,41 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+@Category(Tests.class)
+public class KeyIndexSortTest {
+    @Test
+    public void sortTest() {
+        Random rng = new Random(42);
+
+        // Sizes below and above the parallel threshold.
+        for (int n : new int[]{0, 1, 31, 1000, 200000}) {
+            String[] keys = new String[n + 10];
+            for (int i = 0; i < n; ++i)
+                keys[i] = Integer.toString(rng.nextInt(n / 2 + 1));
+
+            int[] index = KeyIndexSort.sortedIndex(keys, n);
+            Assert.assertEquals(n, index.length);
+
+            boolean[] seen = new boolean[n];
+            for (int i = 0; i < n; ++i) {
+                Assert.assertFalse(seen[index[i]]);
+                seen[index[i]] = true;
+
+                if (i > 0) {
+                    int cmp = keys[index[i - 1]].compareTo(keys[index[i]]);
+                    Assert.assertTrue(cmp <= 0);
+
+                    // Stability
+                    if (cmp == 0)
+                        Assert.assertTrue(index[i - 1] < index[i]);
+                }
+            }
+        }
+    }
+}
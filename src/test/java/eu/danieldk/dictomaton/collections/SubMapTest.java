@@ -0,0 +1,154 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+@Category(Tests.class)
+public class SubMapTest {
+    private static final String[] PREFIXES = {"", "1", "12", "123", "9", "99999", "x"};
+
+    private TreeMap<String, Integer> d_counts;
+
+    @Before
+    public void initialize() {
+        Random rng = new Random(42);
+
+        d_counts = new TreeMap<>();
+        for (int i = 0; i < 1000; ++i)
+            d_counts.put(Integer.toString(rng.nextInt(100000)), rng.nextInt(100));
+    }
+
+    @Test
+    public void intPrefixMapTest() throws DictionaryBuilderException {
+        ImmutableStringIntMap map = new ImmutableStringIntMap.Builder().putAll(d_counts).build();
+
+        for (String prefix : PREFIXES) {
+            SortedMap<String, Integer> expected = prefixMap(d_counts, prefix);
+            ImmutableStringIntMap.SubMap view = map.prefixMap(prefix);
+
+            Assert.assertEquals(expected.size(), view.size());
+            Assert.assertEquals(expected, view);
+            Assert.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(view.entrySet()));
+            Assert.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(view.keySet()));
+            Assert.assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(view.values()));
+
+            long expectedSum = 0;
+            for (int count : expected.values())
+                expectedSum += count;
+
+            long sum = 0;
+            for (int count : view.toValueArray())
+                sum += count;
+
+            Assert.assertEquals(expectedSum, sum);
+        }
+
+        ImmutableStringIntMap.SubMap view = map.prefixMap("1");
+        String outside = d_counts.firstKey().startsWith("1") ? d_counts.lastKey() : d_counts.firstKey();
+        Assert.assertFalse(view.containsKey(outside));
+        Assert.assertNull(view.get(outside));
+        Assert.assertEquals(-1, view.getOrElse(outside, -1));
+    }
+
+    @Test
+    public void intSubMapTest() throws DictionaryBuilderException {
+        ImmutableStringIntMap map = new ImmutableStringIntMap.OrderedBuilder().putAll(d_counts).build();
+
+        String[][] ranges = {{"", "5"}, {"2", "3"}, {"25", "25"}, {"33333", "7"}, {"9", "~"}};
+        for (String[] range : ranges) {
+            SortedMap<String, Integer> expected = d_counts.subMap(range[0], range[1]);
+            ImmutableStringIntMap.SubMap view = map.subMap(range[0], range[1]);
+            Assert.assertEquals(expected, view);
+            Assert.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(view.keySet()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSubMapTest() throws DictionaryBuilderException {
+        new ImmutableStringIntMap.Builder().putAll(d_counts).build().subMap("5", "4");
+    }
+
+    @Test
+    public void booleanPrefixMapTest() throws DictionaryBuilderException {
+        TreeMap<String, Boolean> flags = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : d_counts.entrySet())
+            flags.put(entry.getKey(), entry.getValue() % 3 == 0);
+
+        ImmutableStringBooleanMap map = new ImmutableStringBooleanMap.Builder().putAll(flags).build();
+
+        for (String prefix : PREFIXES) {
+            SortedMap<String, Boolean> expected = prefixMap(flags, prefix);
+            ImmutableStringBooleanMap.SubMap view = map.prefixMap(prefix);
+            Assert.assertEquals(expected, view);
+
+            int expectedTrue = 0;
+            for (boolean flag : expected.values())
+                if (flag)
+                    ++expectedTrue;
+
+            Assert.assertEquals(expectedTrue, view.countTrue());
+
+            boolean[] values = view.toValueArray();
+            Assert.assertEquals(expected.size(), values.length);
+            int i = 0;
+            for (boolean flag : expected.values())
+                Assert.assertEquals(flag, values[i++]);
+        }
+
+        // Ranges within a single word and over word boundaries.
+        List<String> keys = new ArrayList<>(flags.keySet());
+        for (int from = 0; from < 200; from += 7)
+            for (int to = from; to < 300; to += 13) {
+                String toKey = to < keys.size() ? keys.get(to) : "~";
+                int expectedTrue = 0;
+                for (boolean flag : flags.subMap(keys.get(from), toKey).values())
+                    if (flag)
+                        ++expectedTrue;
+
+                Assert.assertEquals(expectedTrue, map.subMap(keys.get(from), toKey).countTrue());
+            }
+    }
+
+    @Test
+    public void otherMapsTest() throws DictionaryBuilderException {
+        TreeMap<String, String> strings = new TreeMap<>();
+        TreeMap<String, int[]> lists = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : d_counts.entrySet()) {
+            strings.put(entry.getKey(), "value" + entry.getValue());
+            lists.put(entry.getKey(), new int[]{entry.getValue(), entry.getValue() + 1});
+        }
+
+        ImmutableStringStringMap stringMap = new ImmutableStringStringMap.Builder().putAll(strings).build();
+        ImmutableStringObjectMap<String> objectMap = new ImmutableStringObjectMap.Builder<String>().putAll(strings)
+                .build();
+        ImmutableStringIntListMap listMap = new ImmutableStringIntListMap.Builder().putAll(lists).build();
+
+        for (String prefix : PREFIXES) {
+            SortedMap<String, String> expected = prefixMap(strings, prefix);
+            Assert.assertEquals(expected, stringMap.prefixMap(prefix));
+            Assert.assertEquals(expected, objectMap.prefixMap(prefix));
+
+            ImmutableStringIntListMap.SubMap listView = listMap.prefixMap(prefix);
+            Assert.assertEquals(expected.size(), listView.size());
+            for (Map.Entry<String, int[]> entry : listView.entrySet())
+                Assert.assertArrayEquals(lists.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private static <V> SortedMap<String, V> prefixMap(TreeMap<String, V> map, String prefix) {
+        TreeMap<String, V> result = new TreeMap<>();
+        for (Map.Entry<String, V> entry : map.tailMap(prefix).entrySet()) {
+            if (!entry.getKey().startsWith(prefix))
+                break;
+            result.put(entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+}
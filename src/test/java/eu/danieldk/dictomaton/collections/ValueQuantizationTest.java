@@ -0,0 +1,132 @@
+package eu.danieldk.dictomaton.collections;
+
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+@Category(Tests.class)
+public class ValueQuantizationTest {
+    private TreeMap<String, Double> d_probabilities;
+
+    @Before
+    public void initialize() {
+        Random rng = new Random(42);
+
+        d_probabilities = new TreeMap<>();
+        for (int i = 0; i < 2000; ++i)
+            d_probabilities.put(Integer.toString(rng.nextInt(1000000)), rng.nextDouble());
+    }
+
+    @Test
+    public void float16RoundTripTest() {
+        // All half-precision values, except NaNs, should survive a round trip.
+        for (int half = 0; half < 0x10000; ++half) {
+            float value = QuantizedArray.fromFloat16(half);
+            if (!Float.isNaN(value))
+                Assert.assertEquals(half, QuantizedArray.toFloat16(value));
+        }
+
+        Assert.assertEquals(0x3c00, QuantizedArray.toFloat16(1f));
+        Assert.assertEquals(0x7bff, QuantizedArray.toFloat16(65504f));
+        Assert.assertEquals(0x7c00, QuantizedArray.toFloat16(65520f));
+        Assert.assertEquals(0x0001, QuantizedArray.toFloat16(0x1p-24f));
+        Assert.assertTrue(Float.isNaN(QuantizedArray.fromFloat16(QuantizedArray.toFloat16(Float.NaN))));
+    }
+
+    @Test
+    public void float16Test() throws DictionaryBuilderException {
+        ImmutableStringDoubleMap map = new ImmutableStringDoubleMap.Builder().quantizeValues(ValueQuantization.float16())
+                .putAll(d_probabilities).build();
+
+        // Values are in [0, 1), so the absolute error is bounded by the relative error.
+        Assert.assertTrue(map.maxQuantizationError() <= 0x1p-11);
+        assertWithinError(map, map.maxQuantizationError());
+    }
+
+    @Test
+    public void float16NaNTest() throws DictionaryBuilderException {
+        ImmutableStringFloatMap map = new ImmutableStringFloatMap.Builder().quantizeValues(ValueQuantization.float16())
+                .put("a", 0.5f).put("b", Float.NaN).put("c", Float.POSITIVE_INFINITY).build();
+
+        Assert.assertEquals(0.5f, map.get("a"), 0);
+        Assert.assertTrue(Float.isNaN(map.get("b")));
+        Assert.assertEquals(Float.POSITIVE_INFINITY, map.get("c"), 0);
+        Assert.assertEquals(0, map.maxQuantizationError(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void float16OverflowTest() throws DictionaryBuilderException {
+        new ImmutableStringDoubleMap.Builder().quantizeValues(ValueQuantization.float16()).put("large", 100000.0)
+                .build();
+    }
+
+    @Test
+    public void scaledIntegerTest() throws DictionaryBuilderException {
+        ImmutableStringDoubleMap map = new ImmutableStringDoubleMap.OrderedBuilder()
+                .quantizeValues(ValueQuantization.scaledInteger(1e-4)).putAll(d_probabilities).build();
+
+        Assert.assertTrue(map.maxQuantizationError() <= 1e-4 + 1e-12);
+        assertWithinError(map, map.maxQuantizationError());
+    }
+
+    @Test
+    public void codebookTest() throws DictionaryBuilderException {
+        ImmutableStringDoubleMap map = new ImmutableStringDoubleMap.Builder()
+                .quantizeValues(ValueQuantization.codebook(8)).putAll(d_probabilities).build();
+
+        // 256 cells over uniform values in [0, 1).
+        Assert.assertTrue(map.maxQuantizationError() < 0.01);
+        assertWithinError(map, map.maxQuantizationError());
+    }
+
+    @Test
+    public void codebookLosslessTest() throws DictionaryBuilderException {
+        ImmutableStringFloatMap map = new ImmutableStringFloatMap.Builder()
+                .quantizeValues(ValueQuantization.codebook(2)).put("a", 0.25f).put("b", -3f).put("c", 0.25f)
+                .put("d", 7.5f).build();
+
+        Assert.assertEquals(0.0, map.maxQuantizationError(), 0.0);
+        Assert.assertEquals(0.25f, map.getOrElse("a", 0), 0f);
+        Assert.assertEquals(-3f, map.getOrElse("b", 0), 0f);
+        Assert.assertEquals(7.5f, map.getOrElse("d", 0), 0f);
+    }
+
+    @Test
+    public void getRangeByNumberTest() throws DictionaryBuilderException {
+        ImmutableStringDoubleMap plain = new ImmutableStringDoubleMap.Builder().putAll(d_probabilities).build();
+        ImmutableStringDoubleMap quantized = new ImmutableStringDoubleMap.Builder()
+                .quantizeValues(ValueQuantization.scaledInteger(1e-3)).putAll(d_probabilities).build();
+
+        int[] range = plain.keySet().hashRange("1");
+        double[] plainValues = new double[range[1] - range[0] + 1];
+        double[] quantizedValues = new double[range[1] - range[0] + 1];
+        plain.getRangeByNumber(range[0], range[1], plainValues, 1);
+        quantized.getRangeByNumber(range[0], range[1], quantizedValues, 1);
+
+        for (int number = range[0]; number < range[1]; ++number) {
+            String key = plain.keySet().sequence(number);
+            Assert.assertTrue(key.startsWith("1"));
+            Assert.assertEquals(d_probabilities.get(key), plainValues[number - range[0] + 1], 0.0);
+            Assert.assertEquals(d_probabilities.get(key), quantizedValues[number - range[0] + 1], 1e-3 + 1e-12);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getRangeByNumberInvalidTest() throws DictionaryBuilderException {
+        ImmutableStringDoubleMap map = new ImmutableStringDoubleMap.Builder().putAll(d_probabilities).build();
+        map.getRangeByNumber(0, 2, new double[2], 0);
+    }
+
+    private void assertWithinError(ImmutableStringDoubleMap map, double maxError) {
+        Assert.assertEquals(d_probabilities.size(), map.size());
+        for (Map.Entry<String, Double> entry : d_probabilities.entrySet())
+            Assert.assertEquals(entry.getValue(), map.get(entry.getKey()), maxError);
+    }
+}
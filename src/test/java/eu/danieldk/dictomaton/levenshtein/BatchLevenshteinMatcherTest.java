@@ -0,0 +1,88 @@
+package eu.danieldk.dictomaton.levenshtein;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+@Category(Tests.class)
+public class BatchLevenshteinMatcherTest {
+    private final char[] d_characters = {'a', 'b', 'c', 'd', 'e'};
+
+    private Random d_rng;
+
+    private Dictionary d_dict;
+
+    private List<String> d_queries;
+
+    private ForkJoinPool d_pool;
+
+    @Before
+    public void initialize() throws DictionaryBuilderException {
+        d_rng = new Random(42);
+
+        TreeSet<String> words = new TreeSet<>();
+        for (int i = 0; i < 5000; ++i)
+            words.add(randomString(1 + d_rng.nextInt(8)));
+
+        d_dict = new DictionaryBuilder().addAll(words).build();
+
+        d_queries = new ArrayList<>();
+        for (int i = 0; i < 200; ++i)
+            d_queries.add(randomString(1 + d_rng.nextInt(8)));
+
+        d_pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void shutdown() {
+        d_pool.shutdown();
+    }
+
+    @Test
+    public void intersectionLanguagesTest() {
+        checkMatcher(new BatchLevenshteinMatcher(d_dict, d_pool));
+    }
+
+    @Test
+    public void intersectionLanguagesSharedPoolTest() {
+        checkMatcher(new BatchLevenshteinMatcher(d_dict));
+    }
+
+    @Test
+    public void intersectionLanguagesCachedTest() {
+        checkMatcher(new BatchLevenshteinMatcher(d_dict, d_pool, new LevenshteinAutomatonCache(16)));
+    }
+
+    private void checkMatcher(BatchLevenshteinMatcher matcher) {
+        for (int distance = 1; distance <= 2; ++distance) {
+            List<Set<String>> languages = matcher.intersectionLanguages(d_queries, distance);
+            Assert.assertEquals(d_queries.size(), languages.size());
+
+            for (int i = 0; i < d_queries.size(); ++i)
+                Assert.assertEquals(new LevenshteinAutomaton(d_queries.get(i), distance).intersectionLanguage(d_dict),
+                        languages.get(i));
+        }
+    }
+
+    private String randomString(int length) {
+        StringBuilder string = new StringBuilder();
+
+        for (int i = 0; i < length; ++i)
+            string.append(d_characters[d_rng.nextInt(d_characters.length)]);
+
+        return string.toString();
+    }
+}
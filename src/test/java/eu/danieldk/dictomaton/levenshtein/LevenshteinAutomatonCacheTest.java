@@ -0,0 +1,57 @@
+package eu.danieldk.dictomaton.levenshtein;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+
+@Category(Tests.class)
+public class LevenshteinAutomatonCacheTest {
+    @Test
+    public void cachedTest() {
+        LevenshteinAutomatonCache cache = new LevenshteinAutomatonCache(2);
+
+        LevenshteinAutomaton la = cache.get("zeven", 1);
+        Assert.assertSame(la, cache.get("zeven", 1));
+        Assert.assertNotSame(la, cache.get("zeven", 2));
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void evictionTest() {
+        LevenshteinAutomatonCache cache = new LevenshteinAutomatonCache(2);
+
+        LevenshteinAutomaton zeven = cache.get("zeven", 1);
+        LevenshteinAutomaton zeker = cache.get("zeker", 1);
+
+        // Use "zeven", so that "zeker" is the least recently used automaton.
+        Assert.assertSame(zeven, cache.get("zeven", 1));
+
+        cache.get("zoeven", 1);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(zeven, cache.get("zeven", 1));
+        Assert.assertNotSame(zeker, cache.get("zeker", 1));
+    }
+
+    @Test
+    public void intersectionTest() throws DictionaryBuilderException {
+        Dictionary dict = new DictionaryBuilder().addAll(Arrays.asList("zeemeeuw", "zeker", "zeven", "zoeven"))
+                .build();
+
+        LevenshteinAutomatonCache cache = new LevenshteinAutomatonCache(1);
+        Assert.assertEquals(new LevenshteinAutomaton("zeven", 1).intersectionLanguage(dict),
+                cache.get("zeven", 1).intersectionLanguage(dict));
+        Assert.assertEquals(new LevenshteinAutomaton("zeven", 1).intersectionLanguage(dict),
+                cache.get("zeven", 1).intersectionLanguage(dict));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeTest() {
+        new LevenshteinAutomatonCache(0);
+    }
+}
@@ -1,8 +1,10 @@
 package eu.danieldk.dictomaton.levenshtein;
 
+import eu.danieldk.dictomaton.CharacterFolding;
 import eu.danieldk.dictomaton.Dictionary;
 import eu.danieldk.dictomaton.DictionaryBuilder;
 import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.PerfectHashDictionary;
 import eu.danieldk.dictomaton.categories.Tests;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
@@ -10,6 +12,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
@@ -44,6 +48,44 @@ public class LevenshteinAutomatonTest {
             generateAndCheckPermutations(MIN_LENGTH, MAX_LENGTH, N_PERMUTED_STRINGS, 4, 2);
     }
 
+    @Test
+    public void foldedIntersectionLanguageTest() throws DictionaryBuilderException {
+        Dictionary dict = new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("Zeeman", "zeemeeuw", "Z\u00e9\u00e9meeuwen",
+                "zeker"))).build();
+
+        LevenshteinAutomaton la = new LevenshteinAutomaton(CharacterFolding.CASE_AND_DIACRITICS.fold("ZEEMEEUWE"), 1);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("zeemeeuw", "Z\u00e9\u00e9meeuwen")),
+                la.intersectionLanguage(dict, CharacterFolding.CASE_AND_DIACRITICS));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("zeemeeuw")),
+                la.intersectionLanguage(dict, CharacterFolding.CASE));
+    }
+
+    @Test
+    public void prefixIntersectionLanguageTest() throws DictionaryBuilderException {
+        for (int attempt = 0; attempt < N_REPETITIONS / 10; ++attempt) {
+            String str = randomString(MIN_LENGTH);
+
+            TreeSet<String> all = new TreeSet<>();
+            for (int i = 0; i < N_PERMUTED_STRINGS; ++i)
+                all.add(randomString(MIN_LENGTH - 2 + d_rng.nextInt(MAX_LENGTH - MIN_LENGTH)));
+
+            for (int distance = 1; distance <= 2; ++distance) {
+                Set<String> shouldHave = new TreeSet<>();
+                for (String word : all)
+                    for (int i = 0; i <= word.length(); ++i)
+                        if (StringUtils.getLevenshteinDistance(str, word.substring(0, i)) <= distance) {
+                            shouldHave.add(word);
+                            break;
+                        }
+
+                Dictionary dict = new DictionaryBuilder().addAll(all).build();
+                LevenshteinAutomaton la = new LevenshteinAutomaton(str, distance);
+
+                Assert.assertEquals(new ArrayList<>(shouldHave), new ArrayList<>(la.prefixIntersectionLanguage(dict)));
+            }
+        }
+    }
+
     /**
      * Generate a word, create a dictionary of permutations permutations that are created using random edit operations,
      * and check that Levenshtein automaton for that word finds permutations within its edit distance.
@@ -81,6 +123,16 @@ public class LevenshteinAutomatonTest {
         LevenshteinAutomaton la = new LevenshteinAutomaton(str, distance);
 
         Assert.assertEquals(shouldHave, la.intersectionLanguage(dict));
+
+        PerfectHashDictionary phDict = new DictionaryBuilder().addAll(all).buildPerfectHash(d_rng.nextBoolean());
+        Set<String> matched = new HashSet<>();
+        for (LevenshteinMatch match : la.intersectionMatches(phDict)) {
+            matched.add(match.getSequence());
+            Assert.assertEquals(phDict.number(match.getSequence()), match.getNumber());
+            Assert.assertEquals(StringUtils.getLevenshteinDistance(str, match.getSequence()), match.getDistance());
+        }
+
+        Assert.assertEquals(shouldHave, matched);
     }
 
     private interface RandomEditOperation {
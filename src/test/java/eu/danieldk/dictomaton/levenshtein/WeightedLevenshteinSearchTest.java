@@ -0,0 +1,139 @@
+package eu.danieldk.dictomaton.levenshtein;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+@Category(Tests.class)
+public class WeightedLevenshteinSearchTest {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Unit costs, with transpositions that are as expensive as two substitutions. This
+     * gives the ordinary Levenshtein distance.
+     */
+    private static class UnitCostModel implements EditCostModel {
+        @Override
+        public double deletion(char c) {
+            return 1;
+        }
+
+        @Override
+        public double insertion(char c) {
+            return 1;
+        }
+
+        @Override
+        public double substitution(char from, char to) {
+            return 1;
+        }
+
+        @Override
+        public double transposition(char first, char second) {
+            return 2;
+        }
+    }
+
+    @Test
+    public void unitCostTest() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+        char[] characters = {'a', 'b', 'c', 'd'};
+
+        TreeSet<String> words = new TreeSet<>();
+        for (int i = 0; i < 2000; ++i) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = rng.nextInt(8); j >= 0; --j)
+                sb.append(characters[rng.nextInt(characters.length)]);
+            words.add(sb.toString());
+        }
+
+        Dictionary dict = new DictionaryBuilder().addAll(words).build();
+        WeightedLevenshteinSearch search = new WeightedLevenshteinSearch(new UnitCostModel());
+
+        for (String query : Arrays.asList("abcd", "dcba", "aaaaa", "b")) {
+            Set<String> shouldHave = new HashSet<>();
+            for (String word : words)
+                if (StringUtils.getLevenshteinDistance(query, word) <= 2)
+                    shouldHave.add(word);
+
+            List<WeightedMatch> matches = search.search(dict, query, 2);
+
+            Set<String> found = new HashSet<>();
+            double prevCost = 0;
+            for (WeightedMatch match : matches) {
+                found.add(match.getSequence());
+                Assert.assertEquals(StringUtils.getLevenshteinDistance(query, match.getSequence()), match.getCost(),
+                        DELTA);
+                Assert.assertTrue(match.getCost() >= prevCost);
+                prevCost = match.getCost();
+            }
+
+            Assert.assertEquals(shouldHave, found);
+        }
+    }
+
+    @Test
+    public void keyboardTest() throws DictionaryBuilderException {
+        Dictionary dict = new DictionaryBuilder().addAll(Arrays.asList("rest", "tess", "test", "text")).build();
+        WeightedLevenshteinSearch search = new WeightedLevenshteinSearch(KeyboardCostModel.qwerty());
+
+        List<WeightedMatch> matches = search.search(dict, "tesy", 0.75);
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals("test", matches.get(0).getSequence());
+        Assert.assertEquals(0.5, matches.get(0).getCost(), DELTA);
+
+        // "rest" and "text" need two substitutions of adjacent keys, "tess" one substitution
+        // of a non-adjacent key.
+        matches = search.search(dict, "tesy", 1);
+        Assert.assertEquals(4, matches.size());
+        Assert.assertEquals("test", matches.get(0).getSequence());
+        for (int i = 1; i < matches.size(); ++i)
+            Assert.assertEquals(1, matches.get(i).getCost(), DELTA);
+
+        matches = search.search(dict, "tset", 1, 1);
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals("test", matches.get(0).getSequence());
+        Assert.assertEquals(0.5, matches.get(0).getCost(), DELTA);
+    }
+
+    @Test
+    public void cheapTranspositionTest() throws DictionaryBuilderException {
+        WeightedLevenshteinSearch search = new WeightedLevenshteinSearch(KeyboardCostModel.qwerty());
+
+        // The transposition is cheaper than the substitutions of the non-adjacent 'a' and 'b'.
+        Dictionary dict = new DictionaryBuilder().addAll(Arrays.asList("ba")).build();
+        List<WeightedMatch> matches = search.search(dict, "ab", 0.5);
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals("ba", matches.get(0).getSequence());
+        Assert.assertEquals(0.5, matches.get(0).getCost(), DELTA);
+
+        dict = new DictionaryBuilder().addAll(Arrays.asList("a", "ba")).build();
+        matches = search.search(dict, "ab", 1);
+        Assert.assertEquals(2, matches.size());
+        Assert.assertEquals("ba", matches.get(0).getSequence());
+        Assert.assertEquals(0.5, matches.get(0).getCost(), DELTA);
+        Assert.assertEquals("a", matches.get(1).getSequence());
+        Assert.assertEquals(1, matches.get(1).getCost(), DELTA);
+
+        matches = search.search(dict, "ab", 1, 1);
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals("ba", matches.get(0).getSequence());
+    }
+
+    @Test
+    public void adjacencyTest() {
+        KeyboardCostModel costs = KeyboardCostModel.qwerty();
+        Assert.assertTrue(costs.isAdjacent('t', 'y'));
+        Assert.assertTrue(costs.isAdjacent('g', 'T'));
+        Assert.assertTrue(costs.isAdjacent('b', 'g'));
+        Assert.assertFalse(costs.isAdjacent('a', 'l'));
+        Assert.assertFalse(costs.isAdjacent('s', 'y'));
+    }
+}
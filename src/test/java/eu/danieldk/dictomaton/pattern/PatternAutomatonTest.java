@@ -0,0 +1,116 @@
+package eu.danieldk.dictomaton.pattern;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+@Category(Tests.class)
+public class PatternAutomatonTest {
+    private final char[] d_characters = {'a', 'b', 'c', 'd', 'e'};
+
+    private TreeSet<String> d_words;
+    private Dictionary d_dictionary;
+
+    @Before
+    public void initialize() throws DictionaryBuilderException {
+        Random rng = new Random(42);
+
+        d_words = new TreeSet<>();
+        d_words.add("");
+        for (int i = 0; i < 2000; ++i) {
+            int len = rng.nextInt(8) + 1;
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < len; ++j)
+                sb.append(d_characters[rng.nextInt(d_characters.length)]);
+            d_words.add(sb.toString());
+        }
+
+        d_dictionary = new DictionaryBuilder().addAll(d_words).build();
+    }
+
+    @Test
+    public void globTest() {
+        check(PatternAutomaton.glob("a?c*"), "a.c.*");
+        check(PatternAutomaton.glob("*"), ".*");
+        check(PatternAutomaton.glob("??"), "..");
+        check(PatternAutomaton.glob("*de"), ".*de");
+        check(PatternAutomaton.glob("[a-c]*[!a-c]"), "[a-c].*[^a-c]");
+        check(PatternAutomaton.glob("a*b*c"), "a.*b.*c");
+        check(PatternAutomaton.glob("x*"), "x.*");
+        check(PatternAutomaton.glob(""), "");
+    }
+
+    @Test
+    public void regexTest() {
+        for (String regex : Arrays.asList("a+b*", "(ab|cd)+e?", "[^a]*a", "(a|b)(c|d)(e|)", ".*(aa|ee).*",
+                "\\w\\w", "a(b(c(d)?)?)?", "[b-d]+", "()", "ab|", "a\\.b"))
+            check(PatternAutomaton.regex(regex), regex);
+    }
+
+    @Test
+    public void matchesTest() {
+        PatternAutomaton pa = PatternAutomaton.glob("[Hh]ello\\*");
+        Assert.assertTrue(pa.matches("Hello*"));
+        Assert.assertTrue(pa.matches("hello*"));
+        Assert.assertFalse(pa.matches("hello"));
+        Assert.assertFalse(pa.matches("Hello*!"));
+
+        pa = PatternAutomaton.regex("\\d+(\\.\\d+)?");
+        Assert.assertTrue(pa.matches("3.14"));
+        Assert.assertTrue(pa.matches("42"));
+        Assert.assertFalse(pa.matches("3."));
+        Assert.assertFalse(pa.matches(".5"));
+    }
+
+    @Test
+    public void crosswordTest() throws DictionaryBuilderException {
+        Dictionary dict = new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("clock", "cloak", "cluck",
+                "crook", "croak", "clack", "flock"))).build();
+
+        Assert.assertEquals(Arrays.asList("clack", "cloak", "clock", "cluck"),
+                PatternAutomaton.glob("cl??k").intersectionLanguage(dict));
+        Assert.assertEquals(Arrays.asList("cloak", "croak"),
+                PatternAutomaton.regex("c(l|r)oak").intersectionLanguage(dict));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unbalancedRegexTest() {
+        PatternAutomaton.regex("(ab");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unclosedClassTest() {
+        PatternAutomaton.glob("[ab");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRangeTest() {
+        PatternAutomaton.glob("[z-a]");
+    }
+
+    private void check(PatternAutomaton pa, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+
+        List<String> expected = new ArrayList<>();
+        for (String word : d_words)
+            if (pattern.matcher(word).matches())
+                expected.add(word);
+
+        Assert.assertEquals(expected, pa.intersectionLanguage(d_dictionary));
+
+        for (String word : d_words)
+            Assert.assertEquals(pattern.matcher(word).matches(), pa.matches(word));
+    }
+}
@@ -0,0 +1,84 @@
+package eu.danieldk.dictomaton.segmentation;
+
+import eu.danieldk.dictomaton.Dictionary;
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Category(Tests.class)
+public class DecompounderTest {
+    private Dictionary d_dict;
+
+    @Before
+    public void initialize() throws DictionaryBuilderException {
+        d_dict = new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("arbeit", "zimmer", "boek", "kast",
+                "boeken", "zee", "meeuw", "zeemeeuw", "ee", "land", "werk", "stuk"))).build();
+    }
+
+    @Test
+    public void decompositionsTest() {
+        Decompounder decompounder = new Decompounder(d_dict, Arrays.asList("s", "en"));
+
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("arbeit", "zimmer")),
+                decompounder.decompositions("arbeitszimmer"));
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("werk", "stuk")),
+                decompounder.decompositions("werkstuk"));
+
+        // Both with 'boeken' as a part and 'boek' with the linking morpheme 'en'.
+        Set<List<String>> expected = new HashSet<>();
+        expected.add(Arrays.asList("boek", "kast"));
+        expected.add(Arrays.asList("boeken", "kast"));
+        Assert.assertEquals(expected, new HashSet<>(decompounder.decompositions("boekenkast")));
+
+        // The minimum part length excludes 'ee'.
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("zee", "meeuw")),
+                decompounder.decompositions("zeemeeuw"));
+
+        expected.clear();
+        expected.add(Arrays.asList("zee", "meeuw", "land"));
+        expected.add(Arrays.asList("zeemeeuw", "land"));
+        Assert.assertEquals(expected, new HashSet<>(decompounder.decompositions("zeemeeuwland")));
+    }
+
+    @Test
+    public void isCompoundTest() {
+        Decompounder decompounder = new Decompounder(d_dict, Collections.singletonList("s"));
+
+        Assert.assertTrue(decompounder.isCompound("arbeitszimmer"));
+        Assert.assertTrue(decompounder.isCompound("boekenkast"));
+        Assert.assertFalse(decompounder.isCompound("boekxkast"));
+        Assert.assertTrue(decompounder.isCompound("boekkast"));
+        Assert.assertFalse(decompounder.isCompound("boek"));
+        Assert.assertFalse(decompounder.isCompound("boeks"));
+        Assert.assertFalse(decompounder.isCompound("sboekkast"));
+        Assert.assertFalse(decompounder.isCompound(""));
+        Assert.assertTrue(decompounder.decompositions("kastje").isEmpty());
+    }
+
+    @Test
+    public void minPartLengthTest() {
+        Decompounder decompounder = new Decompounder(d_dict, Collections.<String>emptyList(), 2);
+
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("zee", "meeuw")),
+                decompounder.decompositions("zeemeeuw"));
+
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("zee", "ee")),
+                decompounder.decompositions("zeeee"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyMorphemeTest() {
+        new Decompounder(d_dict, Collections.singletonList(""));
+    }
+}
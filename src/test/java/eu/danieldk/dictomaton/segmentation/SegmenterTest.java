@@ -0,0 +1,90 @@
+package eu.danieldk.dictomaton.segmentation;
+
+import eu.danieldk.dictomaton.DictionaryBuilder;
+import eu.danieldk.dictomaton.DictionaryBuilderException;
+import eu.danieldk.dictomaton.categories.Tests;
+import eu.danieldk.dictomaton.collections.ImmutableStringDoubleMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+@Category(Tests.class)
+public class SegmenterTest {
+    @Test
+    public void maximumMatchingTest() throws DictionaryBuilderException {
+        Segmenter segmenter = new Segmenter(new DictionaryBuilder().addAll(new TreeSet<>(Arrays.asList("the",
+                "them", "there", "theres", "table", "me", "men", "mend", "end", "s", "at"))).build());
+
+        int[] segments = new int[64];
+
+        String text = "themend";
+        Assert.assertEquals(Arrays.asList("them", "end"),
+                split(text, segments, segmenter.forwardMaximumMatching(text, segments)));
+        Assert.assertEquals(Arrays.asList("the", "mend"),
+                split(text, segments, segmenter.backwardMaximumMatching(text, segments)));
+
+        // Unknown characters form their own segments.
+        text = "xthereatx";
+        Assert.assertEquals(Arrays.asList("x", "there", "at", "x"),
+                split(text, segments, segmenter.forwardMaximumMatching(text, segments)));
+        Assert.assertEquals(Arrays.asList("x", "there", "at", "x"),
+                split(text, segments, segmenter.backwardMaximumMatching(text, segments)));
+
+        Assert.assertEquals(0, segmenter.forwardMaximumMatching("", segments));
+        Assert.assertEquals(0, segmenter.backwardMaximumMatching("", segments));
+    }
+
+    @Test
+    public void mostProbableSegmentationTest() throws DictionaryBuilderException {
+        ImmutableStringDoubleMap logProbs = new ImmutableStringDoubleMap.Builder()
+                .put("dictionary", Math.log(0.01))
+                .put("dict", Math.log(0.001))
+                .put("ionary", Math.log(0.0001))
+                .put("based", Math.log(0.01))
+                .put("bas", Math.log(0.001))
+                .put("ed", Math.log(0.01))
+                .put("segmentation", Math.log(0.01)).build();
+        Segmenter segmenter = new Segmenter(logProbs, Math.log(1e-8));
+
+        int[] segments = new int[64];
+
+        String text = "dictionarybasedsegmentation";
+        Assert.assertEquals(Arrays.asList("dictionary", "based", "segmentation"),
+                split(text, segments, segmenter.mostProbableSegmentation(text, segments)));
+
+        text = "dictionaryxbased";
+        Assert.assertEquals(Arrays.asList("dictionary", "x", "based"),
+                split(text, segments, segmenter.mostProbableSegmentation(text, segments)));
+
+        Assert.assertEquals(0, segmenter.mostProbableSegmentation("", segments));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentsLengthTest() throws DictionaryBuilderException {
+        Segmenter segmenter = new Segmenter(new DictionaryBuilder().add("a").build());
+        segmenter.forwardMaximumMatching("aaa", new int[2]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noProbabilitiesTest() throws DictionaryBuilderException {
+        Segmenter segmenter = new Segmenter(new DictionaryBuilder().add("a").build());
+        segmenter.mostProbableSegmentation("aaa", new int[3]);
+    }
+
+    private List<String> split(String text, int[] segments, int nSegments) {
+        List<String> words = new ArrayList<>();
+
+        int start = 0;
+        for (int i = 0; i < nSegments; ++i) {
+            words.add(text.substring(start, segments[i]));
+            start = segments[i];
+        }
+
+        return words;
+    }
+}
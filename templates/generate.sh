@@ -9,18 +9,43 @@ generate()
   BOXED=$3
   NAME=$4
   OUT=$5
+  BYTES=$6
+  TO_LONG=$7
+  FROM_LONG=$8
+  FLOATING=$9
+  FROM_DOUBLE=${10}
 
-  cat $1 | sed "s/##UNBOXED_TYPE##/$UNBOXED/g" | \
+  # Sections between ##BEGIN_FLOATING## and ##END_FLOATING## are only used for floating point types.
+  if [ "$FLOATING" = "floating" ]; then
+    SECTIONS='/##\(BEGIN\|END\)_FLOATING##/d'
+  else
+    SECTIONS='/##BEGIN_FLOATING##/,/##END_FLOATING##/d'
+  fi
+
+  cat $1 | sed "$SECTIONS" | \
+    sed "s/##UNBOXED_TYPE##/$UNBOXED/g" | \
     sed "s/##BOXED_TYPE##/$BOXED/g" | \
-    sed "s/##TYPE_NAME##/$NAME/g" > "$BASEDIR/$OUT"
+    sed "s/##TYPE_NAME##/$NAME/g" | \
+    sed "s/##BYTES_PER_VALUE##/$BYTES/g" | \
+    sed "s/##TO_LONG##/$TO_LONG/g" | \
+    sed "s/##FROM_LONG##/$FROM_LONG/g" | \
+    sed "s/##FROM_DOUBLE##/$FROM_DOUBLE/g" > "$BASEDIR/$OUT"
 }
 
 
-generate 'ImmutableStringTYPEMap.t' 'boolean' 'Boolean' 'Boolean' 'ImmutableStringBooleanMap.java'
-generate 'ImmutableStringTYPEMap.t' 'byte' 'Byte' 'Byte' 'ImmutableStringByteMap.java'
-generate 'ImmutableStringTYPEMap.t' 'char' 'Character' 'Char' 'ImmutableStringCharMap.java'
-generate 'ImmutableStringTYPEMap.t' 'int' 'Integer' 'Int' 'ImmutableStringIntMap.java'
-generate 'ImmutableStringTYPEMap.t' 'long' 'Long' 'Long' 'ImmutableStringLongMap.java'
-generate 'ImmutableStringTYPEMap.t' 'short' 'Short' 'Short' 'ImmutableStringShortMap.java'
-generate 'ImmutableStringTYPEMap.t' 'float' 'Float' 'Float' 'ImmutableStringFloatMap.java'
-generate 'ImmutableStringTYPEMap.t' 'double' 'Double' 'Double' 'ImmutableStringDoubleMap.java'
+generate 'ImmutableStringTYPEMap.t' 'byte' 'Byte' 'Byte' 'ImmutableStringByteMap.java' \
+  1 'value' '(byte) value'
+generate 'ImmutableStringTYPEMap.t' 'char' 'Character' 'Char' 'ImmutableStringCharMap.java' \
+  2 'value' '(char) value'
+generate 'ImmutableStringTYPEMap.t' 'int' 'Integer' 'Int' 'ImmutableStringIntMap.java' \
+  4 'value' '(int) value'
+generate 'ImmutableStringTYPEMap.t' 'long' 'Long' 'Long' 'ImmutableStringLongMap.java' \
+  8 'value' 'value'
+generate 'ImmutableStringTYPEMap.t' 'short' 'Short' 'Short' 'ImmutableStringShortMap.java' \
+  2 'value' '(short) value'
+generate 'ImmutableStringTYPEMap.t' 'float' 'Float' 'Float' 'ImmutableStringFloatMap.java' \
+  4 'Float.floatToRawIntBits(value)' 'Float.intBitsToFloat((int) value)' floating \
+  '(float) value'
+generate 'ImmutableStringTYPEMap.t' 'double' 'Double' 'Double' 'ImmutableStringDoubleMap.java' \
+  8 'Double.doubleToRawLongBits(value)' 'Double.longBitsToDouble(value)' floating \
+  'value'